@@ -1,16 +1,36 @@
 package com.kenzie.appserver;
 
 
+import com.kenzie.appserver.service.WarmUpService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 
 @Component
 public class ApplicationStartUpListener {
 
+    private WarmUpService warmUpService;
+
+    private boolean warmUpEnabled;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public ApplicationStartUpListener(WarmUpService warmUpService,
+                                      @Value("${app.warmup.enabled:true}") boolean warmUpEnabled) {
+        this.warmUpService = warmUpService;
+        this.warmUpEnabled = warmUpEnabled;
+    }
+
+    // Runs before the application is marked ready, so the readiness probe waits for the warm-up.
+    // The context can be refreshed more than once; warm up only the first time.
     @EventListener
     public void onApplicationEvent(ContextRefreshedEvent event) {
-        // Perform any application start-up tasks
+        if (warmUpEnabled && started.compareAndSet(false, true)) {
+            warmUpService.warmUp();
+        }
     }
 }
@@ -0,0 +1,126 @@
+package com.kenzie.appserver.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Attendee sets of events, cached apart from the rest of the event in the {@link Keyspace#ATTENDEES}
+ * keyspace. The event itself is small and rarely changes, while its attendees grow with every join;
+ * keeping them apart lets a join add one member to the cached set instead of rewriting or evicting
+ * the event.
+ *
+ * Every membership change moves the set to a new version, so anything rendered from an older
+ * attendee list can tell it is out of date, and a load that raced with a join cannot overwrite the
+ * set with an attendee list that misses the new member.
+ */
+public class AttendeeCache {
+
+    private final CacheClient cacheClient;
+    private final int ttlSeconds;
+
+    public AttendeeCache(CacheClient cacheClient, int ttlSeconds) {
+        this.cacheClient = cacheClient;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * @return the cache key of the event's attendees
+     */
+    public static String key(String eventId) {
+        return Keyspace.ATTENDEES.key(eventId);
+    }
+
+    /**
+     * @return the cached attendees of the event, or an empty Optional if they are not cached
+     */
+    public Optional<Set<String>> get(String eventId) {
+        return cacheClient.getMembers(key(eventId));
+    }
+
+    /**
+     * @return Map from event id to its cached attendees, containing only the events that were found
+     */
+    public Map<String, Set<String>> getAll(Collection<String> eventIds) {
+        List<String> keys = new ArrayList<>(eventIds.size());
+        for (String eventId : eventIds) {
+            keys.add(key(eventId));
+        }
+        Map<String, Set<String>> cached = cacheClient.getMembers(keys);
+        Map<String, Set<String>> attendees = new HashMap<>();
+        for (String eventId : eventIds) {
+            Set<String> members = cached.get(key(eventId));
+            if (members != null) {
+                attendees.put(eventId, members);
+            }
+        }
+        return attendees;
+    }
+
+    /**
+     * Method that caches the complete attendee lists of several events in one round trip,
+     * replacing any cached sets.
+     */
+    public void putAll(Map<String, ? extends Collection<String>> attendees) {
+        cacheClient.setMembers(toSets(attendees), ttlSeconds);
+    }
+
+    /**
+     * Method that caches attendee lists loaded from the database, skipping every event whose set
+     * changed after its version was read.
+     *
+     * @param attendees Map from event id to its loaded attendees
+     * @param versions  Map from event id to the {@link #version} read before loading
+     */
+    public void putAllIfVersion(Map<String, ? extends Collection<String>> attendees, Map<String, Long> versions) {
+        Map<String, Long> keyVersions = new HashMap<>();
+        versions.forEach((eventId, version) -> keyVersions.put(key(eventId), version));
+        cacheClient.setMembersIfVersion(toSets(attendees), keyVersions, ttlSeconds);
+    }
+
+    private static Map<String, Collection<String>> toSets(Map<String, ? extends Collection<String>> attendees) {
+        Map<String, Collection<String>> sets = new HashMap<>();
+        attendees.forEach((eventId, members) ->
+                sets.put(key(eventId), members == null ? Collections.emptyList() : members));
+        return sets;
+    }
+
+    /**
+     * Method that records a new attendee as a delta on the cached set.
+     */
+    public void add(String eventId, String userId) {
+        cacheClient.addMembers(key(eventId), Collections.singletonList(userId));
+    }
+
+    public void invalidate(String eventId) {
+        cacheClient.invalidate(key(eventId));
+    }
+
+    /**
+     * @return the current version of the event's attendee set
+     */
+    public long version(String eventId) {
+        return cacheClient.getVersion(key(eventId));
+    }
+
+    /**
+     * @return Map from event id to the current version of its attendee set
+     */
+    public Map<String, Long> versions(Collection<String> eventIds) {
+        List<String> keys = new ArrayList<>(eventIds.size());
+        for (String eventId : eventIds) {
+            keys.add(key(eventId));
+        }
+        Map<String, Long> keyVersions = cacheClient.getVersions(keys);
+        Map<String, Long> versions = new HashMap<>();
+        for (String eventId : eventIds) {
+            versions.put(eventId, keyVersions.get(key(eventId)));
+        }
+        return versions;
+    }
+}
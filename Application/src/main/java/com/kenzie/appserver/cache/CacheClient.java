@@ -1,76 +1,190 @@
 package com.kenzie.appserver.cache;
 
-
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.util.SafeEncoder;
 
-import java.time.LocalDateTime;
-import java.util.Iterator;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import javax.inject.Inject;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * Two-tier cache. Reads are answered from the bounded in-process {@link LocalCacheTier} (L1) when
+ * possible and fall through to Redis (L2) otherwise; values found in Redis are copied into L1 for
+ * the remainder of their Redis time to live.
+ *
+ * Values are stored in Redis through a {@link CacheValueCodec}, which compresses large values; the
+ * local tier holds them decoded.
+ *
+ * Every Redis operation borrows its own connection from the {@link JedisPool}, since a single
+ * Jedis connection must never be shared between threads.
+ *
+ * Writes and invalidations are announced on the {@link CacheInvalidationBus} in the same pipeline
+ * as the Redis command, so other nodes drop their local copy of the key.
+ *
+ * Redis calls go through a {@link RedisCircuitBreaker}; while it is open the client serves from the
+ * local tier only and does not wait on Redis timeouts.
+ *
+ * Reads are counted by a {@link HotKeyTracker}; keys it finds hot are pinned in the local tier for a
+ * short time, so a viral key is served from memory on every node instead of one Redis connection.
+ *
+ * Besides plain values the client stores sets, such as the attendees of an event, which can be
+ * grown member by member with {@link #addMembers} instead of being rewritten whole.
+ *
+ * Each key has a version in the {@link Keyspace#VERSION} keyspace that moves on every invalidation.
+ * Loads read it before reading the source and write back with {@link #setValuesIfVersion}, an
+ * atomic compare-and-set in Redis, so a load that raced with a writer never leaves its stale value
+ * behind for the full time to live.
+ *
+ * Caches derived from cached values can register a listener with {@link #addListener} to hear about
+ * every key written or invalidated, whether by this node or, through the bus, by another one.
+ */
 public class CacheClient {
+    static final Logger log = LogManager.getLogger();
 
-    private class Cache{
+    private static final Gson GSON = new Gson();
+    private static final Type MEMBERS_TYPE = new TypeToken<Set<String>>() { }.getType();
 
-        ConcurrentHashMap<String, String> cacheMap;
-        ConcurrentHashMap<String, LocalDateTime> expiryMap;
+    // Tag of the shared client, which holds events and everything not kept in a named Spring cache
+    public static final String DEFAULT_NAME = "default";
 
-        int timeInCacheBySeconds;
-        public Cache(){
-            cacheMap = new ConcurrentHashMap<>();
-            expiryMap = new ConcurrentHashMap<>();
-            timeInCacheBySeconds = 1000;
-        }
+    // Redis cannot store an empty set, so every stored set also holds this marker; an empty set can
+    // then be told apart from a missing one. Ids are never empty strings.
+    private static final String EMPTY_SET_MARKER = "";
 
-        public Cache(int seconds){
-            cacheMap = new ConcurrentHashMap<>();
-            expiryMap = new ConcurrentHashMap<>();
-            timeInCacheBySeconds = seconds;
-        }
+    // Version counters only have to outlive a load racing with an invalidation. When one expires
+    // the version drops to 0, which makes loads that read an older version fail their write.
+    private static final long VERSION_TTL_SECONDS = 86400;
 
-        public void setValue(String key, String value){
-            cacheMap.put(key, value);
-            expiryMap.put(key, LocalDateTime.now());
-        }
+    // KEYS[1] set, KEYS[2] version; ARGV[1] version TTL, ARGV[2..] members
+    private static final String ADD_MEMBERS_IF_PRESENT =
+            "redis.call('INCR', KEYS[2]) redis.call('EXPIRE', KEYS[2], ARGV[1]) "
+            + "if redis.call('EXISTS', KEYS[1]) == 1 then return redis.call('SADD', KEYS[1], unpack(ARGV, 2)) end "
+            + "return -1";
 
-        public String getValue(String key){
-            return cacheMap.get(key);
-        }
+    // KEYS[1] value, KEYS[2] version; ARGV[1] expected version, ARGV[2] value, ARGV[3] TTL
+    private static final byte[] SET_VALUE_IF_VERSION = SafeEncoder.encode(
+            "if tonumber(redis.call('GET', KEYS[2]) or '0') ~= tonumber(ARGV[1]) then return 0 end "
+            + "redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3]) return 1");
 
-        public void invalidate(String key){
-            cacheMap.remove(key);
-            expiryMap.remove(key);
-        }
+    // KEYS[1] set, KEYS[2] version; ARGV[1] expected version, ARGV[2] TTL, ARGV[3..] members
+    private static final String SET_MEMBERS_IF_VERSION =
+            "if tonumber(redis.call('GET', KEYS[2]) or '0') ~= tonumber(ARGV[1]) then return 0 end "
+            + "redis.call('DEL', KEYS[1]) redis.call('SADD', KEYS[1], unpack(ARGV, 3)) "
+            + "redis.call('EXPIRE', KEYS[1], ARGV[2]) return 1";
 
-        //Would be called periodically in a real application.
-        public void cleanup(){
-            Iterator<Map.Entry<String, LocalDateTime>> iterator = expiryMap.entrySet().iterator();
-            while(iterator.hasNext()){
-                Map.Entry<String, LocalDateTime> entry = iterator.next();
-                if(LocalDateTime.now().isAfter(entry.getValue().plusSeconds(timeInCacheBySeconds))){
-                    iterator.remove();
-                    cacheMap.remove(entry.getKey());
-                }
-            }
-        }
-
-    }
     private final JedisPool pool;
 
-    private Jedis jedi = new Jedis();
+    private final LocalCacheTier localTier;
+
+    private final CacheValueCodec codec;
+
+    private final HotKeyTracker hotKeys;
 
-    Cache cache = new Cache();
+    private final CacheInvalidationBus invalidationBus;
 
-    public CacheClient() {
-        this.pool = new JedisPool(new JedisPoolConfig(), System.getenv("JEDIS_URL"), 6379, 20000);
+    private final RedisCircuitBreaker circuitBreaker;
+
+    // Bumped on every eviction received from the bus. A Redis read that raced with an eviction
+    // must not be copied into the local tier, or the stale value would outlive the eviction.
+    private final AtomicLong remoteEvictions = new AtomicLong();
+
+    private final List<CacheInvalidationBus.Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Counter pinnedHits;
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    public CacheClient(JedisPool pool, LocalCacheTier localTier, CacheValueCodec codec, HotKeyTracker hotKeys,
+                       CacheInvalidationBus invalidationBus, RedisCircuitBreaker circuitBreaker,
+                       MeterRegistry meterRegistry) {
+        this(DEFAULT_NAME, pool, localTier, codec, hotKeys, invalidationBus, circuitBreaker, meterRegistry);
+    }
+
+    /**
+     * @param name the value of the {@code cache} tag on the client's meters, which tells the clients
+     *             of different caches apart
+     */
+    public CacheClient(String name, JedisPool pool, LocalCacheTier localTier, CacheValueCodec codec,
+                       HotKeyTracker hotKeys, CacheInvalidationBus invalidationBus, RedisCircuitBreaker circuitBreaker,
+                       MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.localTier = localTier;
+        this.codec = codec;
+        this.hotKeys = hotKeys;
+        this.invalidationBus = invalidationBus;
+        this.circuitBreaker = circuitBreaker;
+        invalidationBus.addListener(new CacheInvalidationBus.Listener() {
+            @Override
+            public void keysInvalidated(Collection<String> keys) {
+                remoteEvictions.incrementAndGet();
+                keys.forEach(localTier::invalidate);
+                notifyKeysInvalidated(keys);
+            }
+
+            @Override
+            public void allInvalidated() {
+                remoteEvictions.incrementAndGet();
+                localTier.invalidateAll();
+                localTier.unpinAll();
+                listeners.forEach(CacheInvalidationBus.Listener::allInvalidated);
+            }
+        });
+        this.pinnedHits = tierCounter(meterRegistry, name, "pinned", "hit");
+        this.localHits = tierCounter(meterRegistry, name, "local", "hit");
+        this.localMisses = tierCounter(meterRegistry, name, "local", "miss");
+        this.remoteHits = tierCounter(meterRegistry, name, "remote", "hit");
+        this.remoteMisses = tierCounter(meterRegistry, name, "remote", "miss");
     }
 
+    private static Counter tierCounter(MeterRegistry meterRegistry, String name, String tier, String result) {
+        return Counter.builder("cache.client.gets")
+                .tag("cache", name)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
+    /**
+     * Method that registers a listener told about every key whose cached value changes or is
+     * removed, on this node or any other.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(CacheInvalidationBus.Listener listener) {
+        listeners.add(listener);
+    }
 
+    private void notifyKeysInvalidated(Collection<String> keys) {
+        for (CacheInvalidationBus.Listener listener : listeners) {
+            listener.keysInvalidated(keys);
+        }
+    }
 
     private void checkForNullKey(String key){
         if(key == null){
@@ -79,9 +193,33 @@ public class CacheClient {
     }
 
     /**
-     * Method that sets a key-value pair in the cache.
+     * Runs a command on a pooled connection unless the circuit breaker is open.
      *
-     * PARTICIPANTS: Implement this method.
+     * @param command  the Redis work to perform
+     * @param fallback the result to return when Redis is skipped or fails
+     */
+    private <T> T withRedis(Function<Jedis, T> command, T fallback) {
+        if (!circuitBreaker.allowRequest()) {
+            return fallback;
+        }
+        try (Jedis jedis = pool.getResource()) {
+            T result = command.apply(jedis);
+            circuitBreaker.recordSuccess();
+            return result;
+        }
+        catch (JedisDataException ex){
+            // Redis answered, so this says nothing about its health
+            log.warn("Redis rejected cache command: {}", ex.getMessage());
+        }
+        catch (Exception ex){
+            circuitBreaker.recordFailure();
+            log.warn("Redis cache command failed: {}", ex.getMessage());
+        }
+        return fallback;
+    }
+
+    /**
+     * Method that sets a key-value pair in both cache tiers.
      *
      * @param key     String used to identify an item in the cache
      * @param seconds The number of seconds during which the item is available
@@ -89,69 +227,618 @@ public class CacheClient {
      */
     public void setValue(String key, int seconds, String value){
         checkForNullKey(key);
-        try {
-            jedi.setex(key, seconds, value);
-        }
-        catch (Exception ex){
-            System.out.println(ex.getMessage());
-        }
-        cache.setValue(key, value);
+        withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.setex(SafeEncoder.encode(key), (long) seconds, codec.encode(value));
+            invalidationBus.publish(pipeline, Collections.singletonList(key));
+            pipeline.sync();
+            return null;
+        }, null);
+        localTier.setValue(key, seconds, value);
+        notifyKeysInvalidated(Collections.singletonList(key));
     }
 
     /**
-     * Method that retrieves a value from the cache.
-     *
-     * PARTICIPANTS: Replace return null with your implementation of this method.
+     * Method that retrieves a value from the cache, checking the local tier before Redis.
      *
      * @param key String used to identify the item being retrieved
      * @return String representing the value stored in the cache or an empty Optional in the case of a cache miss.
      */
     public Optional<String> getValue(String key){
         checkForNullKey(key);
-        try {
-            String value = jedi.get(key);
-            if (value == null) {
-                return Optional.empty();
+        boolean hot = hotKeys.recordAccess(key);
+        Optional<String> pinned = localTier.getPinned(key);
+        if (pinned.isPresent()) {
+            pinnedHits.increment();
+            return pinned;
+        }
+        Optional<String> local = localTier.getValue(key);
+        if (local.isPresent()) {
+            localHits.increment();
+            if (hot) {
+                localTier.pin(key, local.get());
+            }
+            return local;
+        }
+        localMisses.increment();
+
+        long evictionsBeforeRead = remoteEvictions.get();
+        Optional<String> remote = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<byte[]> stored = pipeline.get(SafeEncoder.encode(key));
+            Response<Long> ttlMillis = pipeline.pttl(key);
+            pipeline.sync();
+            String value = codec.decode(stored.get());
+            if (value != null && remoteEvictions.get() == evictionsBeforeRead) {
+                localTier.setValue(key, remainingSeconds(ttlMillis.get()), value);
             }
-            else {
-                return Optional.of(value);
+            return Optional.ofNullable(value);
+        }, Optional.empty());
+
+        if (remote.isPresent()) {
+            remoteHits.increment();
+            if (hot) {
+                localTier.pin(key, remote.get());
             }
+        } else {
+            remoteMisses.increment();
         }
-        catch (Exception ex){
-            System.out.println(ex.getMessage());
+        return remote;
+    }
+
+    /**
+     * Method to invalidate an item in both cache tiers. The key moves to a new version, so loads that
+     * started before the invalidation cannot write their result back with {@link #setValuesIfVersion}.
+     *
+     * @param key String representing the key to be deleted from the cache
+     * @return true on invalidation, false if key does not exist in cache
+     */
+    public boolean invalidate(String key) {
+        checkForNullKey(key);
+        localTier.unpin(key);
+        boolean removedLocally = localTier.invalidate(key);
+        localTier.invalidate(versionKey(key));
+        boolean removedRemotely = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<Long> deleted = pipeline.del(key);
+            bumpVersion(pipeline, key);
+            invalidationBus.publish(pipeline, Arrays.asList(key, versionKey(key)));
+            pipeline.sync();
+            return deleted.get() > 0;
+        }, false);
+        notifyKeysInvalidated(Collections.singletonList(key));
+        return removedLocally || removedRemotely;
+    }
+
+    private static void bumpVersion(Pipeline pipeline, String key) {
+        pipeline.incr(versionKey(key));
+        pipeline.expire(versionKey(key), VERSION_TTL_SECONDS);
+    }
+
+    /**
+     * Method that atomically increments a counter kept in Redis. The key has no time to live, and
+     * every other node drops its local copy of it.
+     *
+     * @param key String representing the counter to increment
+     * @return the new value of the counter, or -1 if Redis could not be reached
+     */
+    public long increment(String key) {
+        checkForNullKey(key);
+        localTier.unpin(key);
+        localTier.invalidate(key);
+        long value = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<Long> incremented = pipeline.incr(key);
+            invalidationBus.publish(pipeline, Collections.singletonList(key));
+            pipeline.sync();
+            return incremented.get();
+        }, -1L);
+        if (value >= 0) {
+            localTier.setValue(key, Long.MAX_VALUE, String.valueOf(value));
         }
-        String value = cache.getValue(key);
-        if(value == null){
-            return Optional.empty();
+        notifyKeysInvalidated(Collections.singletonList(key));
+        return value;
+    }
+
+    /**
+     * Method that reads a counter written with {@link #increment}. Counters that were never
+     * incremented read as 0 and are remembered locally as such, so checking them is usually free.
+     *
+     * @param key String representing the counter
+     * @return the value of the counter; 0 if it does not exist or Redis could not be reached
+     */
+    public long getCounter(String key) {
+        return getCounters(Collections.singletonList(key)).get(key);
+    }
+
+    /**
+     * Method that reads several counters, fetching those missing from the local tier with one MGET.
+     *
+     * @param keys Strings representing the counters
+     * @return Map from key to the value of the counter, containing every key
+     */
+    public Map<String, Long> getCounters(Collection<String> keys) {
+        Map<String, Long> counters = new HashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            checkForNullKey(key);
+            Optional<String> local = localTier.getValue(key);
+            if (local.isPresent()) {
+                counters.put(key, Long.parseLong(local.get()));
+            } else {
+                counters.put(key, 0L);
+                remoteKeys.add(key);
+            }
         }
-        else{
-            return Optional.of(value);
+        if (remoteKeys.isEmpty()) {
+            return counters;
         }
 
+        long evictionsBeforeRead = remoteEvictions.get();
+        withRedis(jedis -> {
+            List<String> stored = jedis.mget(remoteKeys.toArray(new String[0]));
+            boolean fillLocal = remoteEvictions.get() == evictionsBeforeRead;
+            for (int i = 0, size = remoteKeys.size(); i < size; ++i) {
+                long value = stored.get(i) == null ? 0 : Long.parseLong(stored.get(i));
+                counters.put(remoteKeys.get(i), value);
+                if (fillLocal) {
+                    localTier.setValue(remoteKeys.get(i), Long.MAX_VALUE, String.valueOf(value));
+                }
+            }
+            return null;
+        }, null);
+        return counters;
     }
 
     /**
-     * Method to invalidate an item in the cache. Checks whether the requested key exists before invalidating.
+     * Method that reads the current version of a key.
      *
-     * PARTICIPANTS: Implement this method.
+     * @param key String used to identify the item
+     * @return the version of the key; 0 if it was never invalidated
+     * @see #getVersions
+     */
+    public long getVersion(String key) {
+        checkForNullKey(key);
+        return getCounter(versionKey(key));
+    }
+
+    /**
+     * Method that reads the current versions of several keys. A load reads the versions before it
+     * reads the source of the values, then writes the values with {@link #setValuesIfVersion}.
      *
-     * @param key String representing the key to be deleted from the cache
-     * @return true on invalidation, false if key does not exist in cache
+     * @param keys Strings used to identify the items
+     * @return Map from key to its version, 0 for keys that were never invalidated
      */
-    public boolean invalidate(String key) {
+    public Map<String, Long> getVersions(Collection<String> keys) {
+        Map<String, String> versionKeys = new HashMap<>();
+        for (String key : keys) {
+            checkForNullKey(key);
+            versionKeys.put(versionKey(key), key);
+        }
+        Map<String, Long> versions = new HashMap<>();
+        getCounters(versionKeys.keySet()).forEach((versionKey, version) -> versions.put(versionKeys.get(versionKey), version));
+        return versions;
+    }
+
+    private static String versionKey(String key) {
+        return Keyspace.VERSION.key(key);
+    }
+
+    /**
+     * Method that retrieves several values at once. Keys missing from the local tier are fetched
+     * from Redis with a single MGET in one pipelined round trip.
+     *
+     * @param keys Strings used to identify the items being retrieved
+     * @return Map from key to cached value, containing only the keys that were found
+     */
+    public Map<String, String> getValues(Collection<String> keys) {
+        Map<String, String> values = new HashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            checkForNullKey(key);
+            boolean hot = hotKeys.recordAccess(key);
+            Optional<String> pinned = localTier.getPinned(key);
+            if (pinned.isPresent()) {
+                pinnedHits.increment();
+                values.put(key, pinned.get());
+                continue;
+            }
+            Optional<String> local = localTier.getValue(key);
+            if (local.isPresent()) {
+                localHits.increment();
+                values.put(key, local.get());
+                if (hot) {
+                    localTier.pin(key, local.get());
+                }
+            } else {
+                localMisses.increment();
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return values;
+        }
+
+        long evictionsBeforeRead = remoteEvictions.get();
+        int found = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            byte[][] encodedKeys = new byte[remoteKeys.size()][];
+            for (int i = 0, size = remoteKeys.size(); i < size; ++i) {
+                encodedKeys[i] = SafeEncoder.encode(remoteKeys.get(i));
+            }
+            Response<List<byte[]>> remoteValues = pipeline.mget(encodedKeys);
+            List<Response<Long>> ttls = new ArrayList<>(remoteKeys.size());
+            for (String key : remoteKeys) {
+                ttls.add(pipeline.pttl(key));
+            }
+            pipeline.sync();
+
+            int hits = 0;
+            List<byte[]> results = remoteValues.get();
+            boolean fillLocal = remoteEvictions.get() == evictionsBeforeRead;
+            for (int i = 0, size = remoteKeys.size(); i < size; ++i) {
+                String value = codec.decode(results.get(i));
+                if (value == null) {
+                    continue;
+                }
+                hits++;
+                values.put(remoteKeys.get(i), value);
+                if (fillLocal) {
+                    localTier.setValue(remoteKeys.get(i), remainingSeconds(ttls.get(i).get()), value);
+                }
+            }
+            return hits;
+        }, 0);
+
+        remoteHits.increment(found);
+        remoteMisses.increment(remoteKeys.size() - found);
+        return values;
+    }
+
+    /**
+     * Method that sets several key-value pairs in both tiers using one pipelined Redis round trip.
+     *
+     * @param values  Map from key to the value set in the cache
+     * @param seconds The number of seconds during which the items are available
+     */
+    public void setValues(Map<String, String> values, int seconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+        values.keySet().forEach(this::checkForNullKey);
+        withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                pipeline.setex(SafeEncoder.encode(entry.getKey()), (long) seconds, codec.encode(entry.getValue()));
+            }
+            invalidationBus.publish(pipeline, values.keySet());
+            pipeline.sync();
+            return null;
+        }, null);
+        values.forEach((key, value) -> localTier.setValue(key, seconds, value));
+        notifyKeysInvalidated(values.keySet());
+    }
+
+    /**
+     * Method to invalidate several items in both tiers with a single Redis DEL. Each key moves to a
+     * new version, as with {@link #invalidate(String)}.
+     *
+     * @param keys Strings representing the keys to be deleted from the cache
+     * @return the number of keys that were removed from Redis
+     */
+    public long invalidateAll(Collection<String> keys) {
+        Set<String> unique = new LinkedHashSet<>(keys);
+        if (unique.isEmpty()) {
+            return 0;
+        }
+        List<String> published = new ArrayList<>(unique.size() * 2);
+        for (String key : unique) {
+            checkForNullKey(key);
+            localTier.unpin(key);
+            localTier.invalidate(key);
+            localTier.invalidate(versionKey(key));
+            published.add(key);
+            published.add(versionKey(key));
+        }
+        long deleted = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<Long> removed = pipeline.del(unique.toArray(new String[0]));
+            for (String key : unique) {
+                bumpVersion(pipeline, key);
+            }
+            invalidationBus.publish(pipeline, published);
+            pipeline.sync();
+            return removed.get();
+        }, 0L);
+        notifyKeysInvalidated(unique);
+        return deleted;
+    }
+
+    /**
+     * Method to invalidate every item whose key starts with the prefix. Redis keys are found with
+     * SCAN, so the server is never blocked the way KEYS would block it.
+     *
+     * @param prefix the key prefix to match; must not contain glob characters
+     * @return the number of keys that were removed from Redis
+     */
+    public long invalidatePrefix(String prefix) {
+        checkForNullKey(prefix);
+        localTier.invalidatePrefix(prefix);
+        return withRedis(jedis -> {
+            ScanParams params = new ScanParams().match(prefix + "*").count(500);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            long deleted = 0;
+            do {
+                ScanResult<String> page = jedis.scan(cursor, params);
+                List<String> keys = page.getResult();
+                if (!keys.isEmpty()) {
+                    Pipeline pipeline = jedis.pipelined();
+                    Response<Long> removed = pipeline.del(keys.toArray(new String[0]));
+                    invalidationBus.publish(pipeline, keys);
+                    pipeline.sync();
+                    deleted += removed.get();
+                    notifyKeysInvalidated(keys);
+                }
+                cursor = page.getCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+            return deleted;
+        }, 0L);
+    }
+
+    /**
+     * Method that retrieves a set stored with {@link #setMembers}.
+     *
+     * @param key String used to identify the set
+     * @return the members of the set, or an empty Optional in the case of a cache miss
+     */
+    public Optional<Set<String>> getMembers(String key) {
+        return Optional.ofNullable(getMembers(Collections.singletonList(key)).get(key));
+    }
+
+    /**
+     * Method that retrieves several sets at once. Sets missing from the local tier are fetched from
+     * Redis in one pipelined round trip.
+     *
+     * @param keys Strings used to identify the sets
+     * @return Map from key to the members of the set, containing only the keys that were found
+     */
+    public Map<String, Set<String>> getMembers(Collection<String> keys) {
+        Map<String, Set<String>> sets = new HashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            checkForNullKey(key);
+            Optional<String> local = localTier.getValue(key);
+            if (local.isPresent()) {
+                localHits.increment();
+                sets.put(key, GSON.fromJson(local.get(), MEMBERS_TYPE));
+            } else {
+                localMisses.increment();
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return sets;
+        }
+
+        long evictionsBeforeRead = remoteEvictions.get();
+        int found = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<Set<String>>> members = new ArrayList<>(remoteKeys.size());
+            List<Response<Long>> ttls = new ArrayList<>(remoteKeys.size());
+            for (String key : remoteKeys) {
+                members.add(pipeline.smembers(key));
+                ttls.add(pipeline.pttl(key));
+            }
+            pipeline.sync();
+
+            int hits = 0;
+            boolean fillLocal = remoteEvictions.get() == evictionsBeforeRead;
+            for (int i = 0, size = remoteKeys.size(); i < size; ++i) {
+                Set<String> set = members.get(i).get();
+                if (!set.remove(EMPTY_SET_MARKER)) {
+                    continue;
+                }
+                hits++;
+                sets.put(remoteKeys.get(i), set);
+                if (fillLocal) {
+                    localTier.setValue(remoteKeys.get(i), remainingSeconds(ttls.get(i).get()), GSON.toJson(set));
+                }
+            }
+            return hits;
+        }, 0);
+
+        remoteHits.increment(found);
+        remoteMisses.increment(remoteKeys.size() - found);
+        return sets;
+    }
+
+    /**
+     * Method that replaces several sets in both tiers using one pipelined Redis round trip. Each set
+     * is replaced atomically, so a concurrent {@link #addMembers} is applied either before or after it.
+     *
+     * @param sets    Map from key to the members of the set; a set may be empty
+     * @param seconds The number of seconds during which the sets are available
+     */
+    public void setMembers(Map<String, ? extends Collection<String>> sets, int seconds) {
+        if (sets.isEmpty()) {
+            return;
+        }
+        sets.keySet().forEach(this::checkForNullKey);
+        withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            for (Map.Entry<String, ? extends Collection<String>> entry : sets.entrySet()) {
+                pipeline.multi();
+                pipeline.del(entry.getKey());
+                pipeline.sadd(entry.getKey(), withEmptySetMarker(entry.getValue()));
+                pipeline.expire(entry.getKey(), (long) seconds);
+                pipeline.exec();
+            }
+            invalidationBus.publish(pipeline, sets.keySet());
+            pipeline.sync();
+            return null;
+        }, null);
+        sets.forEach((key, members) -> localTier.setValue(key, seconds, GSON.toJson(new HashSet<>(members))));
+        notifyKeysInvalidated(sets.keySet());
+    }
+
+    /**
+     * Method that adds members to a cached set without rewriting it. Nothing is added when the set
+     * is not cached, since a partial set must never be read as the whole one.
+     *
+     * @param key     String used to identify the set
+     * @param members the members to add
+     * @return true if the set was cached in Redis and the members were applied
+     */
+    public boolean addMembers(String key, Collection<String> members) {
         checkForNullKey(key);
-        try {
-            if (jedi.get(key) != null) {
-                jedi.del(key);
-                pool.close();
-                return true;
+        if (members.isEmpty()) {
+            return true;
+        }
+        // The local copy is dropped rather than patched; the next read fetches the updated set
+        localTier.invalidate(key);
+        localTier.invalidate(versionKey(key));
+        boolean applied = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            List<String> args = new ArrayList<>(members.size() + 1);
+            args.add(String.valueOf(VERSION_TTL_SECONDS));
+            args.addAll(members);
+            Response<Object> result = pipeline.eval(ADD_MEMBERS_IF_PRESENT, Arrays.asList(key, versionKey(key)), args);
+            invalidationBus.publish(pipeline, Arrays.asList(key, versionKey(key)));
+            pipeline.sync();
+            return (Long) result.get() >= 0;
+        }, false);
+        notifyKeysInvalidated(Collections.singletonList(key));
+        return applied;
+    }
+
+    /**
+     * Method that writes loaded values only where the key is still at the version read before the
+     * load, so a load that raced with an invalidation cannot put its stale value back. All writes
+     * share one pipelined round trip; the local tier only takes the values Redis accepted.
+     *
+     * @param values   Map from key to the loaded value
+     * @param versions Map from key to the version read with {@link #getVersions} before loading
+     * @param seconds  The number of seconds during which the items are available
+     * @return the keys that were written
+     */
+    public Set<String> setValuesIfVersion(Map<String, String> values, Map<String, Long> versions, int seconds) {
+        return setValuesIfVersion(values, versions, seconds, true);
+    }
+
+    /**
+     * Method that writes loaded values as {@link #setValuesIfVersion(Map, Map, int)} does, optionally
+     * without announcing the keys on the invalidation bus. Only values that are the same whichever
+     * node writes them, such as markers, may skip the announcement: no other node can hold a
+     * different local copy to drop.
+     *
+     * @param announce whether other nodes are told to drop their local copies of the keys
+     * @see #setValuesIfVersion(Map, Map, int)
+     */
+    public Set<String> setValuesIfVersion(Map<String, String> values, Map<String, Long> versions, int seconds,
+                                          boolean announce) {
+        if (values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        values.keySet().forEach(this::checkForNullKey);
+        Set<String> written = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, Response<Object>> results = new HashMap<>();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String key = entry.getKey();
+                results.put(key, pipeline.eval(SET_VALUE_IF_VERSION,
+                        Arrays.asList(SafeEncoder.encode(key), SafeEncoder.encode(versionKey(key))),
+                        Arrays.asList(SafeEncoder.encode(String.valueOf(versions.getOrDefault(key, 0L))),
+                                codec.encode(entry.getValue()), SafeEncoder.encode(String.valueOf(seconds)))));
+            }
+            if (announce) {
+                invalidationBus.publish(pipeline, values.keySet());
             }
-            return false;
+            pipeline.sync();
+            return acceptedKeys(results);
+        }, Collections.<String>emptySet());
+        written.forEach(key -> localTier.setValue(key, seconds, values.get(key)));
+        if (!written.isEmpty()) {
+            notifyKeysInvalidated(written);
         }
-        catch (Exception ex){
-            System.out.println(ex.getMessage());
+        return written;
+    }
+
+    /**
+     * Method that replaces loaded sets only where the key is still at the version read before the
+     * load. A set that gained members during the load is left alone, since the load missed them.
+     *
+     * @param sets     Map from key to the loaded members; a set may be empty
+     * @param versions Map from key to the version read with {@link #getVersions} before loading
+     * @param seconds  The number of seconds during which the sets are available
+     * @return the keys that were written
+     */
+    public Set<String> setMembersIfVersion(Map<String, ? extends Collection<String>> sets, Map<String, Long> versions,
+                                           int seconds) {
+        if (sets.isEmpty()) {
+            return Collections.emptySet();
         }
-        cache.invalidate(key);
-        return true;
+        sets.keySet().forEach(this::checkForNullKey);
+        Set<String> written = withRedis(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, Response<Object>> results = new HashMap<>();
+            for (Map.Entry<String, ? extends Collection<String>> entry : sets.entrySet()) {
+                String key = entry.getKey();
+                List<String> args = new ArrayList<>(entry.getValue().size() + 3);
+                args.add(String.valueOf(versions.getOrDefault(key, 0L)));
+                args.add(String.valueOf(seconds));
+                args.addAll(Arrays.asList(withEmptySetMarker(entry.getValue())));
+                results.put(key, pipeline.eval(SET_MEMBERS_IF_VERSION, Arrays.asList(key, versionKey(key)), args));
+            }
+            invalidationBus.publish(pipeline, sets.keySet());
+            pipeline.sync();
+            return acceptedKeys(results);
+        }, Collections.<String>emptySet());
+        written.forEach(key -> localTier.setValue(key, seconds, GSON.toJson(new HashSet<>(sets.get(key)))));
+        if (!written.isEmpty()) {
+            notifyKeysInvalidated(written);
+        }
+        return written;
+    }
+
+    private static Set<String> acceptedKeys(Map<String, Response<Object>> results) {
+        Set<String> accepted = new HashSet<>();
+        results.forEach((key, result) -> {
+            if ((Long) result.get() == 1) {
+                accepted.add(key);
+            }
+        });
+        return accepted;
+    }
+
+    private static String[] withEmptySetMarker(Collection<String> members) {
+        List<String> stored = new ArrayList<>(members.size() + 1);
+        stored.add(EMPTY_SET_MARKER);
+        stored.addAll(members);
+        return stored.toArray(new String[0]);
+    }
+
+    // A negative PTTL means the key has no expiry, so the local tier's cap applies
+    private static long remainingSeconds(long ttlMillis) {
+        return ttlMillis < 0 ? Long.MAX_VALUE : ttlMillis / 1000;
+    }
+
+    public double getPinnedHitCount() {
+        return pinnedHits.count();
+    }
+
+    public double getLocalHitCount() {
+        return localHits.count();
+    }
+
+    public double getLocalMissCount() {
+        return localMisses.count();
+    }
+
+    public double getRemoteHitCount() {
+        return remoteHits.count();
+    }
+
+    public double getRemoteMissCount() {
+        return remoteMisses.count();
     }
 }
@@ -0,0 +1,60 @@
+package com.kenzie.appserver.cache;
+
+import com.google.gson.Gson;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Wraps a cached payload with the time it was written, so readers can tell fresh entries from
+ * stale ones. Values written before envelopes existed are read back as legacy entries with an
+ * unknown write time. An envelope may also carry the {@link CacheTags} generations its payload was
+ * built under.
+ */
+public class CacheEnvelope {
+
+    private static final Gson GSON = new Gson();
+    private static final String ENVELOPE_PREFIX = "{\"writtenAt\":";
+
+    private final long writtenAt;
+    private final String payload;
+    // Generations of the CacheTags the payload was built under; absent when untagged
+    private final Map<String, Long> tags;
+
+    private CacheEnvelope(long writtenAt, String payload, Map<String, Long> tags) {
+        this.writtenAt = writtenAt;
+        this.payload = payload;
+        this.tags = tags;
+    }
+
+    public static String wrap(String payload, long writtenAtMillis) {
+        return GSON.toJson(new CacheEnvelope(writtenAtMillis, payload, null));
+    }
+
+    public static String wrap(String payload, long writtenAtMillis, Map<String, Long> tags) {
+        return GSON.toJson(new CacheEnvelope(writtenAtMillis, payload, tags.isEmpty() ? null : tags));
+    }
+
+    public static CacheEnvelope unwrap(String cached) {
+        if (cached.startsWith(ENVELOPE_PREFIX)) {
+            return GSON.fromJson(cached, CacheEnvelope.class);
+        }
+        return new CacheEnvelope(-1, cached, null);
+    }
+
+    public Map<String, Long> getTags() {
+        return tags == null ? Collections.emptyMap() : tags;
+    }
+
+    public long getWrittenAt() {
+        return writtenAt;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public boolean isLegacy() {
+        return writtenAt < 0;
+    }
+}
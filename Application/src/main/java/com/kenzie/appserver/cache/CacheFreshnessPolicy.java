@@ -0,0 +1,54 @@
+package com.kenzie.appserver.cache;
+
+/**
+ * Soft and hard time-to-live settings for stale-while-revalidate reads.
+ *
+ * Entries younger than the soft TTL are fresh. Between the soft and hard TTL they are served while
+ * a background refresh runs. Past the hard TTL they must be reloaded, but may still be served for
+ * up to the stale-if-error bound when the reload fails.
+ */
+public class CacheFreshnessPolicy {
+
+    public enum Freshness {
+        FRESH, STALE, EXPIRED
+    }
+
+    private final long softTtlMillis;
+    private final long hardTtlMillis;
+    private final long staleIfErrorMillis;
+
+    public CacheFreshnessPolicy(int softTtlSeconds, int hardTtlSeconds, int staleIfErrorSeconds) {
+        this.softTtlMillis = softTtlSeconds * 1000L;
+        this.hardTtlMillis = hardTtlSeconds * 1000L;
+        this.staleIfErrorMillis = staleIfErrorSeconds * 1000L;
+    }
+
+    public Freshness classify(CacheEnvelope envelope, long nowMillis) {
+        if (envelope.isLegacy()) {
+            // Written before envelopes existed: usable, but refresh it
+            return Freshness.STALE;
+        }
+        long age = nowMillis - envelope.getWrittenAt();
+        if (age < softTtlMillis) {
+            return Freshness.FRESH;
+        }
+        if (age < hardTtlMillis) {
+            return Freshness.STALE;
+        }
+        return Freshness.EXPIRED;
+    }
+
+    /**
+     * @return true if the entry may still be served because reloading it failed
+     */
+    public boolean isUsableOnError(CacheEnvelope envelope, long nowMillis) {
+        return envelope.isLegacy() || nowMillis - envelope.getWrittenAt() < hardTtlMillis + staleIfErrorMillis;
+    }
+
+    /**
+     * @return how long the cache has to keep an entry so it stays available for stale-if-error reads
+     */
+    public int getStorageTtlSeconds() {
+        return (int) ((hardTtlMillis + staleIfErrorMillis) / 1000);
+    }
+}
@@ -0,0 +1,161 @@
+package com.kenzie.appserver.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cross-node invalidation channel over Redis pub/sub. Each node publishes the keys it writes or
+ * invalidates, and evicts the keys published by other nodes from its own in-process caches on a
+ * background subscriber thread.
+ *
+ * Messages are newline separated: the publishing node id, the message type, then the keys.
+ */
+public class CacheInvalidationBus {
+    static final Logger log = LogManager.getLogger();
+
+    private static final String KEYS = "keys";
+    private static final String CLEAR = "clear";
+    private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+
+    /**
+     * Receives evictions published by other nodes.
+     */
+    public interface Listener {
+        void keysInvalidated(Collection<String> keys);
+
+        /**
+         * Called when messages may have been missed (for example after the subscription was
+         * re-established), so every locally held entry has to be considered stale.
+         */
+        void allInvalidated();
+    }
+
+    private final JedisPool pool;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private volatile JedisPubSub subscription;
+    private Thread subscriber;
+
+    public CacheInvalidationBus(JedisPool pool, String channel) {
+        this.pool = pool;
+        this.channel = channel;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Queues a publish of the given keys on a pipeline that is already writing them, so the
+     * notification costs no extra round trip.
+     */
+    public void publish(Pipeline pipeline, Collection<String> keys) {
+        pipeline.publish(channel, encode(KEYS, keys));
+    }
+
+    public void publish(Collection<String> keys) {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.publish(channel, encode(KEYS, keys));
+        }
+    }
+
+    public void publishClear() {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.publish(channel, encode(CLEAR, new ArrayList<>()));
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        subscriber = new Thread(this::subscribeLoop, "cache_invalidation_subscriber");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        JedisPubSub current = subscription;
+        if (current != null && current.isSubscribed()) {
+            current.unsubscribe();
+        }
+        if (subscriber != null) {
+            subscriber.interrupt();
+        }
+    }
+
+    private void subscribeLoop() {
+        long retryDelayMillis = 100;
+        while (running) {
+            JedisPubSub pubSub = new JedisPubSub() {
+                @Override
+                public void onSubscribe(String subscribedChannel, int subscribedChannels) {
+                    // Anything published while we were not subscribed is lost, so start clean
+                    listeners.forEach(Listener::allInvalidated);
+                }
+
+                @Override
+                public void onMessage(String messageChannel, String message) {
+                    dispatch(message);
+                }
+            };
+            subscription = pubSub;
+            try (Jedis jedis = pool.getResource()) {
+                retryDelayMillis = 100;
+                jedis.subscribe(pubSub, channel);
+            } catch (Exception ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation subscription lost, retrying in {} ms: {}", retryDelayMillis, ex.getMessage());
+                listeners.forEach(Listener::allInvalidated);
+                try {
+                    Thread.sleep(retryDelayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryDelayMillis = Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    void dispatch(String message) {
+        String[] parts = message.split("\n");
+        if (parts.length < 2 || parts[0].equals(nodeId)) {
+            return;
+        }
+        if (CLEAR.equals(parts[1])) {
+            listeners.forEach(Listener::allInvalidated);
+            return;
+        }
+        List<String> keys = Arrays.asList(parts).subList(2, parts.length);
+        for (Listener listener : listeners) {
+            listener.keysInvalidated(keys);
+        }
+    }
+
+    String encode(String type, Collection<String> keys) {
+        StringBuilder message = new StringBuilder(nodeId).append('\n').append(type);
+        for (String key : keys) {
+            message.append('\n').append(key);
+        }
+        return message.toString();
+    }
+}
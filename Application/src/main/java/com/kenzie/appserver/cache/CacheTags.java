@@ -0,0 +1,76 @@
+package com.kenzie.appserver.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generation counters for groups of cache entries, such as "all events of a sponsor" or "the event
+ * listing". Each tag has a counter in the {@link CacheClient}; entries written under a tag record
+ * the generation they were built at, and invalidating the tag is a single increment that makes
+ * every older entry a miss, instead of a scan over their keys.
+ *
+ * Counters are stored without a time to live, so a generation never goes back to an older value.
+ * Superseded entries are not deleted; they age out with their own TTL.
+ */
+public class CacheTags {
+    static final Logger log = LogManager.getLogger();
+
+    private static final String TAG_PREFIX = "tag:";
+
+    private final CacheClient cacheClient;
+
+    public CacheTags(CacheClient cacheClient) {
+        this.cacheClient = cacheClient;
+    }
+
+    /**
+     * @return the current generation of the tag; 0 if it was never invalidated
+     */
+    public long generation(String tag) {
+        return cacheClient.getCounter(TAG_PREFIX + tag);
+    }
+
+    /**
+     * @return the current generation of each tag, to be stored with an entry built under them
+     */
+    public Map<String, Long> stamp(Collection<String> tags) {
+        Map<String, Long> stamps = new HashMap<>();
+        for (String tag : tags) {
+            stamps.put(tag, generation(tag));
+        }
+        return stamps;
+    }
+
+    /**
+     * @return true if none of the stamped tags was invalidated since the stamp was taken
+     */
+    public boolean isCurrent(Map<String, Long> stamps) {
+        for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+            if (generation(stamp.getKey()) != stamp.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method that builds a key which changes with every generation of the tag, for entries whose
+     * key is known before they are read, such as a listing.
+     */
+    public String taggedKey(String key, String tag) {
+        return key + "@" + generation(tag);
+    }
+
+    /**
+     * Method that invalidates every entry written under the tag by moving it to a new generation.
+     */
+    public void invalidate(String tag) {
+        if (cacheClient.increment(TAG_PREFIX + tag) < 0) {
+            log.warn("Could not invalidate cache tag {}; entries under it stay until they expire", tag);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes cached values for Redis. Values at or above the threshold are compressed with LZ4 and
+ * stored behind a header; smaller values, and values that do not shrink, are stored as plain UTF-8
+ * exactly as before, so entries written without the codec stay readable.
+ *
+ * The header starts with 0xFF, a byte that never occurs in UTF-8 text, followed by a format byte and
+ * the uncompressed length.
+ *
+ * Reports {@code cache.codec.compression.ratio} (uncompressed over stored size of compressed
+ * values), {@code cache.codec.bytes} tagged {@code stage=raw|stored}, and the {@code cache.codec.encode}
+ * and {@code cache.codec.decode} timers tagged with the format used.
+ */
+public class CacheValueCodec {
+
+    private static final byte MARKER = (byte) 0xFF;
+    private static final byte FORMAT_LZ4 = 1;
+    private static final int HEADER_LENGTH = 6;
+
+    private final int thresholdBytes;
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private final DistributionSummary compressionRatio;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+    private final Timer encodePlain;
+    private final Timer encodeLz4;
+    private final Timer decodePlain;
+    private final Timer decodeLz4;
+
+    public CacheValueCodec(int thresholdBytes, MeterRegistry meterRegistry) {
+        this.thresholdBytes = thresholdBytes;
+        this.compressionRatio = DistributionSummary.builder("cache.codec.compression.ratio")
+                .register(meterRegistry);
+        this.rawBytes = Counter.builder("cache.codec.bytes").tag("stage", "raw").register(meterRegistry);
+        this.storedBytes = Counter.builder("cache.codec.bytes").tag("stage", "stored").register(meterRegistry);
+        this.encodePlain = timer(meterRegistry, "cache.codec.encode", "plain");
+        this.encodeLz4 = timer(meterRegistry, "cache.codec.encode", "lz4");
+        this.decodePlain = timer(meterRegistry, "cache.codec.decode", "plain");
+        this.decodeLz4 = timer(meterRegistry, "cache.codec.decode", "lz4");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String name, String format) {
+        return Timer.builder(name).tag("format", format).register(meterRegistry);
+    }
+
+    public byte[] encode(String value) {
+        long started = System.nanoTime();
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        rawBytes.increment(raw.length);
+        if (raw.length >= thresholdBytes) {
+            byte[] compressed = compress(raw);
+            if (compressed.length < raw.length) {
+                encodeLz4.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                compressionRatio.record((double) raw.length / compressed.length);
+                storedBytes.increment(compressed.length);
+                return compressed;
+            }
+        }
+        encodePlain.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        storedBytes.increment(raw.length);
+        return raw;
+    }
+
+    public String decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        long started = System.nanoTime();
+        if (stored.length < HEADER_LENGTH || stored[0] != MARKER) {
+            String value = new String(stored, StandardCharsets.UTF_8);
+            decodePlain.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return value;
+        }
+        if (stored[1] != FORMAT_LZ4) {
+            throw new IllegalStateException("Unknown cache value format " + stored[1]);
+        }
+        int length = ((stored[2] & 0xFF) << 24) | ((stored[3] & 0xFF) << 16) | ((stored[4] & 0xFF) << 8) | (stored[5] & 0xFF);
+        byte[] raw = new byte[length];
+        decompressor.decompress(stored, HEADER_LENGTH, raw, 0, length);
+        String value = new String(raw, StandardCharsets.UTF_8);
+        decodeLz4.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return value;
+    }
+
+    private byte[] compress(byte[] raw) {
+        byte[] out = new byte[HEADER_LENGTH + compressor.maxCompressedLength(raw.length)];
+        out[0] = MARKER;
+        out[1] = FORMAT_LZ4;
+        out[2] = (byte) (raw.length >>> 24);
+        out[3] = (byte) (raw.length >>> 16);
+        out[4] = (byte) (raw.length >>> 8);
+        out[5] = (byte) raw.length;
+        int compressedLength = compressor.compress(raw, 0, raw.length, out, HEADER_LENGTH, out.length - HEADER_LENGTH);
+        return Arrays.copyOf(out, HEADER_LENGTH + compressedLength);
+    }
+}
@@ -0,0 +1,11 @@
+package com.kenzie.appserver.cache;
+
+/**
+ * Converts values of a {@link TieredCache} to and from the strings held by the {@link CacheClient}.
+ */
+public interface CacheValueSerializer {
+
+    String serialize(Object value);
+
+    Object deserialize(String cached);
+}
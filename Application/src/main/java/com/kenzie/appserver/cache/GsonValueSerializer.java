@@ -0,0 +1,27 @@
+package com.kenzie.appserver.cache;
+
+import com.google.gson.Gson;
+
+/**
+ * Stores values of one type as Gson JSON.
+ */
+public class GsonValueSerializer implements CacheValueSerializer {
+
+    private final Gson gson = new Gson();
+
+    private final Class<?> type;
+
+    public GsonValueSerializer(Class<?> type) {
+        this.type = type;
+    }
+
+    @Override
+    public String serialize(Object value) {
+        return gson.toJson(value);
+    }
+
+    @Override
+    public Object deserialize(String cached) {
+        return gson.fromJson(cached, type);
+    }
+}
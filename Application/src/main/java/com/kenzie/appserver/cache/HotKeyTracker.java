@@ -0,0 +1,177 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Estimates how often each cache key is read over a sliding window using a count-min sketch, so
+ * hot keys can be found without keeping a counter per key.
+ *
+ * The window is split into sub-windows, each with its own sketch; the oldest sketch is cleared as
+ * the window slides. A key is hot once its estimated reads in the window reach the threshold. Hot
+ * keys are remembered for reporting until their estimate drops below the threshold again.
+ *
+ * The number of keys currently hot is exported as the {@code cache.hotkeys.tracked} gauge.
+ */
+public class HotKeyTracker {
+
+    private static final int DEPTH = 4;
+    private static final int SUB_WINDOWS = 4;
+
+    private final int widthMask;
+    private final AtomicIntegerArray[] sketches = new AtomicIntegerArray[SUB_WINDOWS];
+    private final long windowNanos;
+    private final long subWindowNanos;
+    private final int threshold;
+    private final int maxTracked;
+    private final LongSupplier nanoTime;
+
+    private final Map<String, Integer> hotKeys = new ConcurrentHashMap<>();
+
+    private volatile int current;
+    private volatile long nextRotation;
+
+    /**
+     * @param width        counters per sketch row, rounded up to a power of two
+     * @param windowMillis length of the sliding window
+     * @param threshold    estimated reads in the window at which a key counts as hot
+     * @param maxTracked   upper bound on the number of hot keys remembered for reporting
+     */
+    public HotKeyTracker(int width, long windowMillis, int threshold, int maxTracked, MeterRegistry meterRegistry) {
+        this(width, windowMillis, threshold, maxTracked, meterRegistry, System::nanoTime);
+    }
+
+    HotKeyTracker(int width, long windowMillis, int threshold, int maxTracked, MeterRegistry meterRegistry,
+                  LongSupplier nanoTime) {
+        int roundedWidth = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.widthMask = roundedWidth - 1;
+        for (int i = 0; i < SUB_WINDOWS; i++) {
+            sketches[i] = new AtomicIntegerArray(DEPTH * roundedWidth);
+        }
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.subWindowNanos = windowNanos / SUB_WINDOWS;
+        this.threshold = threshold;
+        this.maxTracked = maxTracked;
+        this.nanoTime = nanoTime;
+        this.nextRotation = nanoTime.getAsLong() + subWindowNanos;
+        Gauge.builder("cache.hotkeys.tracked", hotKeys, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Counts one read of the key.
+     *
+     * @return true if the key is hot
+     */
+    public boolean recordAccess(String key) {
+        rotateIfDue();
+        AtomicIntegerArray sketch = sketches[current];
+        int hash = spread(key.hashCode());
+        int step = Integer.rotateLeft(hash, 16) | 1;
+        for (int row = 0; row < DEPTH; row++) {
+            sketch.incrementAndGet(index(row, hash, step));
+        }
+        int estimate = estimate(hash, step);
+        if (estimate < threshold) {
+            return false;
+        }
+        if (hotKeys.size() < maxTracked || hotKeys.containsKey(key)) {
+            hotKeys.put(key, estimate);
+        }
+        return true;
+    }
+
+    /**
+     * @return up to limit of the hottest keys, hottest first, with their estimated read rates
+     */
+    public List<HotKey> topKeys(int limit) {
+        rotateIfDue();
+        List<HotKey> keys = new ArrayList<>();
+        double windowSeconds = windowNanos / 1e9;
+        hotKeys.forEach((key, reads) -> keys.add(new HotKey(key, reads, reads / windowSeconds)));
+        keys.sort((a, b) -> Integer.compare(b.getReads(), a.getReads()));
+        return keys.size() > limit ? new ArrayList<>(keys.subList(0, limit)) : keys;
+    }
+
+    private int estimate(int hash, int step) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(row, hash, step);
+            int count = 0;
+            for (AtomicIntegerArray sketch : sketches) {
+                count += sketch.get(index);
+            }
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    private int index(int row, int hash, int step) {
+        return row * (widthMask + 1) + ((hash + row * step) & widthMask);
+    }
+
+    private void rotateIfDue() {
+        if (nanoTime.getAsLong() - nextRotation >= 0) {
+            rotate();
+        }
+    }
+
+    private synchronized void rotate() {
+        long now = nanoTime.getAsLong();
+        int rotations = 0;
+        while (now - nextRotation >= 0 && rotations < SUB_WINDOWS) {
+            int next = (current + 1) % SUB_WINDOWS;
+            AtomicIntegerArray sketch = sketches[next];
+            for (int i = 0, size = sketch.length(); i < size; i++) {
+                sketch.set(i, 0);
+            }
+            current = next;
+            nextRotation += subWindowNanos;
+            rotations++;
+        }
+        if (now - nextRotation >= 0) {
+            // Idle for longer than the whole window; every sketch is already clear
+            nextRotation = now + subWindowNanos;
+        }
+        hotKeys.keySet().removeIf(key -> {
+            int hash = spread(key.hashCode());
+            return estimate(hash, Integer.rotateLeft(hash, 16) | 1) < threshold;
+        });
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    public static class HotKey {
+        private final String key;
+        private final int reads;
+        private final double readsPerSecond;
+
+        HotKey(String key, int reads, double readsPerSecond) {
+            this.key = key;
+            this.reads = reads;
+            this.readsPerSecond = readsPerSecond;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getReads() {
+            return reads;
+        }
+
+        public double getReadsPerSecond() {
+            return readsPerSecond;
+        }
+    }
+}
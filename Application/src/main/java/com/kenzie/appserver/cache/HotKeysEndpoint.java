@@ -0,0 +1,28 @@
+package com.kenzie.appserver.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint ({@code /actuator/hotkeys}) listing the hottest cache keys on this node and their
+ * estimated read rates.
+ */
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+
+    private final HotKeyTracker hotKeyTracker;
+
+    private final int topK;
+
+    public HotKeysEndpoint(HotKeyTracker hotKeyTracker, int topK) {
+        this.hotKeyTracker = hotKeyTracker;
+        this.topK = topK;
+    }
+
+    @ReadOperation
+    public List<HotKeyTracker.HotKey> hotKeys() {
+        return hotKeyTracker.topKeys(topK);
+    }
+}
@@ -0,0 +1,33 @@
+package com.kenzie.appserver.cache;
+
+/**
+ * Typed namespaces of the shared cache. Every key is built as {@code <prefix>:<id>}, so ids of
+ * different types can never collide and a whole type can be matched by its prefix.
+ */
+public enum Keyspace {
+    EVENT("event"),
+    ATTENDEES("attendees"),
+    USER("user"),
+    ORGANIZATION("organization"),
+    LISTING("listing"),
+    MISSING("missing"),
+    VERSION("version"),
+    CHECKPOINT("checkpoint");
+
+    private final String prefix;
+
+    Keyspace(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the cache key of the id within this keyspace
+     */
+    public String key(String id) {
+        return prefix + ":" + id;
+    }
+}
@@ -0,0 +1,28 @@
+package com.kenzie.appserver.cache;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Time to live of cached entries, set per {@link Keyspace}.
+ */
+public class KeyspaceTtlPolicy {
+
+    private final Map<Keyspace, Integer> ttlSeconds;
+
+    public KeyspaceTtlPolicy(Map<Keyspace, Integer> ttlSeconds) {
+        this.ttlSeconds = new EnumMap<>(ttlSeconds);
+    }
+
+    /**
+     * @return the number of seconds entries of the keyspace are kept
+     * @throws IllegalArgumentException if no TTL is configured for the keyspace
+     */
+    public int getTtlSeconds(Keyspace keyspace) {
+        Integer seconds = ttlSeconds.get(keyspace);
+        if (seconds == null) {
+            throw new IllegalArgumentException("No TTL configured for keyspace " + keyspace);
+        }
+        return seconds;
+    }
+}
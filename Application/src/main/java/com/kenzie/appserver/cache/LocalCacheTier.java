@@ -0,0 +1,266 @@
+package com.kenzie.appserver.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process (L1) tier of the {@link CacheClient}. Entries expire after the number of seconds they
+ * were written with, capped at the tier's maximum time to live.
+ *
+ * The tier is bounded by weight, the UTF-8 size of each key and value, rather than by entry count,
+ * so a few large listings cannot exhaust the heap. Caffeine admits new entries with a W-TinyLFU
+ * frequency sketch: a key seen once (a crawler probing random ids) does not displace keys that are
+ * read often.
+ *
+ * Each entry carries its own primitive deadline. Caffeine files variable expirations into a
+ * hierarchical timer wheel, so expiring an entry costs amortized O(1) and no sweep over the whole
+ * tier ever happens; the scheduler wakes up at the next wheel deadline to remove expired entries
+ * instead of leaving them for the request path to clean up.
+ *
+ * Keys found hot by the {@link HotKeyTracker} can also be pinned: a pinned copy lives in a small
+ * separate region that size-based eviction of ordinary entries does not touch. Pins expire after a
+ * short time to live and are not dropped by invalidations from other nodes, so a hot key may be
+ * served up to one pin lifetime stale in exchange for absorbing its read load locally.
+ *
+ * Under heap pressure the {@link MemoryPressureMonitor} asks the tier to {@link #shed} its coldest
+ * entries.
+ *
+ * Hits, misses, evictions and size of the ordinary entries are published with {@link #bindTo},
+ * tagged with the name of the cache the tier belongs to.
+ */
+public class LocalCacheTier {
+
+    private static class LocalEntry {
+        private final String value;
+        private final long ttlNanos;
+        private final int weight;
+
+        LocalEntry(String key, String value, long ttlNanos) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+            this.weight = utf8Length(key) + utf8Length(value);
+        }
+    }
+
+    private final Cache<String, LocalEntry> entries;
+
+    private final Cache<String, String> pinned;
+
+    private final int maxTtlSeconds;
+
+    /**
+     * @param maximumWeightBytes upper bound on the summed UTF-8 size of all keys and values held
+     * @param maxTtlSeconds      upper bound on the time to live of any entry
+     */
+    public LocalCacheTier(long maximumWeightBytes, int maxTtlSeconds) {
+        this(maximumWeightBytes, maxTtlSeconds, 0, 0);
+    }
+
+    /**
+     * @param maximumWeightBytes upper bound on the summed UTF-8 size of all keys and values held
+     * @param maxTtlSeconds      upper bound on the time to live of any entry
+     * @param maxPinned          upper bound on the number of pinned keys; 0 disables pinning
+     * @param pinTtlMillis       time to live of a pinned copy
+     */
+    public LocalCacheTier(long maximumWeightBytes, int maxTtlSeconds, int maxPinned, long pinTtlMillis) {
+        this(maximumWeightBytes, maxTtlSeconds, maxPinned, pinTtlMillis, Ticker.systemTicker(),
+                Scheduler.systemScheduler(), ForkJoinPool.commonPool());
+    }
+
+    LocalCacheTier(long maximumWeightBytes, int maxTtlSeconds, int maxPinned, long pinTtlMillis, Ticker ticker,
+                   Scheduler scheduler, Executor executor) {
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.pinned = Caffeine.newBuilder()
+                .maximumSize(maxPinned)
+                .expireAfterWrite(pinTtlMillis, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .executor(executor)
+                .build();
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maximumWeightBytes)
+                .weigher((String key, LocalEntry entry) -> entry.weight)
+                .recordStats()
+                .ticker(ticker)
+                .scheduler(scheduler)
+                .executor(executor)
+                .expireAfter(new Expiry<String, LocalEntry>() {
+                    @Override
+                    public long expireAfterCreate(String key, LocalEntry entry, long currentTime) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Method that publishes the tier's Caffeine statistics as {@code cache.*} meters.
+     *
+     * @param cacheName the value of the {@code cache} tag, which tells the tiers of different caches apart
+     */
+    public void bindTo(MeterRegistry meterRegistry, String cacheName) {
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, cacheName);
+    }
+
+    /**
+     * Method that retrieves a value from the local tier.
+     *
+     * @param key String used to identify the item being retrieved
+     * @return the value, or an empty Optional when the key is absent or expired
+     */
+    public Optional<String> getValue(String key) {
+        LocalEntry entry = entries.getIfPresent(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.value);
+    }
+
+    /**
+     * Method that stores a value in the local tier.
+     *
+     * @param key     String used to identify an item in the cache
+     * @param seconds The number of seconds during which the item is available, capped at the tier maximum
+     * @param value   String representing the value set in the cache
+     */
+    public void setValue(String key, long seconds, String value) {
+        long ttlSeconds = Math.min(seconds, maxTtlSeconds);
+        if (ttlSeconds <= 0) {
+            entries.invalidate(key);
+            return;
+        }
+        entries.put(key, new LocalEntry(key, value, TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        // A write on this node refreshes an existing pin with the new value
+        pinned.asMap().computeIfPresent(key, (pinnedKey, oldValue) -> value);
+    }
+
+    /**
+     * Method that retrieves the pinned copy of a key.
+     *
+     * @param key String used to identify the item being retrieved
+     * @return the pinned value, or an empty Optional when the key is not pinned
+     */
+    public Optional<String> getPinned(String key) {
+        return Optional.ofNullable(pinned.getIfPresent(key));
+    }
+
+    /**
+     * Method that pins a copy of a hot key for the pin time to live.
+     *
+     * @param key   String used to identify the item
+     * @param value String representing the value pinned
+     */
+    public void pin(String key, String value) {
+        pinned.asMap().putIfAbsent(key, value);
+    }
+
+    public void unpin(String key) {
+        pinned.invalidate(key);
+    }
+
+    public void unpinAll() {
+        pinned.invalidateAll();
+    }
+
+    /**
+     * Method to remove an item from the local tier.
+     *
+     * @param key String representing the key to be deleted
+     * @return true if the key was present
+     */
+    public boolean invalidate(String key) {
+        return entries.asMap().remove(key) != null;
+    }
+
+    /**
+     * Method to remove every item whose key starts with the prefix.
+     *
+     * @param prefix the key prefix to match
+     */
+    public void invalidatePrefix(String prefix) {
+        entries.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        pinned.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Method to drop every item held by the local tier.
+     */
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * Method that drops the least valuable part of the tier: the given fraction of entries, coldest
+     * first by the eviction policy. Pinned copies are kept.
+     *
+     * @param fraction share of the entries to drop, between 0 and 1
+     * @return the number of entries dropped
+     */
+    public int shed(double fraction) {
+        int count = (int) Math.ceil(entries.estimatedSize() * Math.min(Math.max(fraction, 0), 1));
+        if (count == 0) {
+            return 0;
+        }
+        Set<String> coldest = entries.policy().eviction()
+                .map(eviction -> eviction.coldest(count).keySet())
+                .orElse(Collections.emptySet());
+        entries.invalidateAll(coldest);
+        return coldest.size();
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    public long weightedSize() {
+        return entries.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    // Runs pending maintenance, including expiry, now rather than on the scheduler
+    void cleanUp() {
+        entries.cleanUp();
+        pinned.cleanUp();
+    }
+
+    // Counts bytes without encoding, so weighing an entry does not allocate
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0, size = text.length(); i < size; ++i) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                ++i;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,163 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Sheds local cache tiers when the old generation fills up. The monitor sets a collection usage
+ * threshold at the lowest watermark on every tenured heap pool; the JVM then notifies it after each
+ * collection that leaves the pool above that threshold. Occupancy measured after a collection is
+ * live data, not garbage waiting to be collected, so a notification means the heap really is filling.
+ *
+ * Each watermark is a stage with its own shed fraction: the higher the occupancy, the larger the
+ * share of every registered tier dropped, coldest entries first. Pressure that persists keeps
+ * triggering notifications, so the tiers keep shrinking until collections bring occupancy back down.
+ *
+ * Every shrink is counted in {@code cache.local.shrink}, tagged with its stage, and the entries
+ * dropped in {@code cache.local.shrink.entries}.
+ */
+public class MemoryPressureMonitor implements NotificationListener {
+    static final Logger log = LogManager.getLogger();
+
+    private final double[] watermarks;
+    private final double[] shedFractions;
+    private final List<MemoryPoolMXBean> pools;
+    private final MeterRegistry meterRegistry;
+
+    private final List<LocalCacheTier> tiers = new CopyOnWriteArrayList<>();
+    private boolean running;
+
+    /**
+     * @param watermarks    old generation occupancies, ascending, at which each stage starts
+     * @param shedFractions share of every tier dropped at the matching stage
+     */
+    public MemoryPressureMonitor(double[] watermarks, double[] shedFractions, MeterRegistry meterRegistry) {
+        this(watermarks, shedFractions, tenuredPools(), meterRegistry);
+    }
+
+    MemoryPressureMonitor(double[] watermarks, double[] shedFractions, List<MemoryPoolMXBean> pools,
+                          MeterRegistry meterRegistry) {
+        if (watermarks.length == 0 || watermarks.length != shedFractions.length) {
+            throw new IllegalArgumentException("Every memory watermark needs exactly one shed fraction");
+        }
+        for (int i = 0; i < watermarks.length; ++i) {
+            if (watermarks[i] <= 0 || watermarks[i] >= 1 || (i > 0 && watermarks[i] <= watermarks[i - 1])) {
+                throw new IllegalArgumentException("Memory watermarks must ascend strictly between 0 and 1");
+            }
+        }
+        this.watermarks = watermarks.clone();
+        this.shedFractions = shedFractions.clone();
+        this.pools = pools;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Method that adds a tier to shed under pressure.
+     *
+     * @param tier the local tier to shrink
+     */
+    public void register(LocalCacheTier tier) {
+        tiers.add(tier);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            long max = pool.getUsage().getMax();
+            if (max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * watermarks[0]));
+            }
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+        running = true;
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            log.warn("Memory pressure listener was already removed", e);
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            return;
+        }
+        MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+        onPressure(info.getPoolName(), info.getUsage());
+    }
+
+    /**
+     * Method that sheds every registered tier by the fraction of the highest watermark the pool's
+     * occupancy reached.
+     *
+     * @param poolName name of the memory pool that crossed its threshold
+     * @param usage    the pool's usage after the collection
+     * @return the number of entries dropped
+     */
+    int onPressure(String poolName, MemoryUsage usage) {
+        if (usage.getMax() <= 0) {
+            return 0;
+        }
+        double occupancy = (double) usage.getUsed() / usage.getMax();
+        int stage = -1;
+        while (stage + 1 < watermarks.length && occupancy >= watermarks[stage + 1]) {
+            ++stage;
+        }
+        if (stage < 0) {
+            return 0;
+        }
+        int shed = 0;
+        for (LocalCacheTier tier : tiers) {
+            shed += tier.shed(shedFractions[stage]);
+        }
+        String stageTag = String.valueOf(stage + 1);
+        Counter.builder("cache.local.shrink")
+                .tag("stage", stageTag)
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("cache.local.shrink.entries")
+                .tag("stage", stageTag)
+                .register(meterRegistry)
+                .increment(shed);
+        log.warn("{} at {}% after collection, shed {} local cache entries (stage {})",
+                poolName, Math.round(occupancy * 100), shed, stageTag);
+        return shed;
+    }
+
+    // Old generation pools; young pools are emptied by every minor collection and support no thresholds
+    private static List<MemoryPoolMXBean> tenuredPools() {
+        List<MemoryPoolMXBean> tenured = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported()) {
+                tenured.add(pool);
+            }
+        }
+        return tenured;
+    }
+}
@@ -0,0 +1,138 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers ids that were looked up and not found, for a short time, so repeated lookups of
+ * unknown ids do not each cost a DynamoDB read. Entries live in the {@link CacheClient} in the
+ * {@link Keyspace#MISSING} keyspace, keyed by the keyspace of the id, and use a separate, short TTL.
+ *
+ * A miss found by a load is written only if the marker's version is still the one read before the
+ * load, so a load that raced with the id being created cannot hide it; creating the id moves the
+ * version through {@link #clear}. Such writes are not announced to other nodes, since every node
+ * writes the same marker: a scan for unknown ids costs no broadcast per id.
+ *
+ * Lookups are counted in {@code cache.negative.lookups}, tagged with the type and whether a cached
+ * miss was found ({@code hit}) or not ({@code miss}).
+ */
+public class NegativeResultCache {
+
+    private static final String MISSING = "1";
+
+    private final CacheClient cacheClient;
+    private final int ttlSeconds;
+    private final MeterRegistry meterRegistry;
+
+    public NegativeResultCache(CacheClient cacheClient, int ttlSeconds, MeterRegistry meterRegistry) {
+        this.cacheClient = cacheClient;
+        this.ttlSeconds = ttlSeconds;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return true if a recent lookup of the id found nothing
+     */
+    public boolean isKnownMissing(Keyspace keyspace, String id) {
+        boolean missing = cacheClient.getValue(key(keyspace, id)).isPresent();
+        lookups(keyspace, missing ? "hit" : "miss").increment();
+        return missing;
+    }
+
+    /**
+     * @return the subset of ids that recent lookups found nothing for
+     */
+    public Set<String> findKnownMissing(Keyspace keyspace, Collection<String> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            keys.add(key(keyspace, id));
+        }
+        Map<String, String> found = cacheClient.getValues(keys);
+        Set<String> missing = new HashSet<>();
+        for (String id : ids) {
+            if (found.containsKey(key(keyspace, id))) {
+                missing.add(id);
+            }
+        }
+        lookups(keyspace, "hit").increment(missing.size());
+        lookups(keyspace, "miss").increment(ids.size() - missing.size());
+        return missing;
+    }
+
+    /**
+     * Method that reads the versions of the ids' markers; a load reads them before it reads the
+     * source, then passes them to {@link #recordMissing(Keyspace, Map)}.
+     *
+     * @return Map from id to the version of its marker
+     */
+    public Map<String, Long> versions(Keyspace keyspace, Collection<String> ids) {
+        Map<String, String> idsByKey = new HashMap<>();
+        for (String id : ids) {
+            idsByKey.put(key(keyspace, id), id);
+        }
+        Map<String, Long> versions = new HashMap<>();
+        cacheClient.getVersions(idsByKey.keySet()).forEach((key, version) -> versions.put(idsByKey.get(key), version));
+        return versions;
+    }
+
+    public long version(Keyspace keyspace, String id) {
+        return cacheClient.getVersion(key(keyspace, id));
+    }
+
+    /**
+     * Method that records ids a load found nothing for, each only if its marker is still at the
+     * version read before the load.
+     *
+     * @param versions Map from missing id to the version read with {@link #versions}
+     */
+    public void recordMissing(Keyspace keyspace, Map<String, Long> versions) {
+        if (versions.isEmpty()) {
+            return;
+        }
+        Map<String, String> markers = new HashMap<>();
+        Map<String, Long> keyVersions = new HashMap<>();
+        versions.forEach((id, version) -> {
+            markers.put(key(keyspace, id), MISSING);
+            keyVersions.put(key(keyspace, id), version);
+        });
+        cacheClient.setValuesIfVersion(markers, keyVersions, ttlSeconds, false);
+    }
+
+    public void recordMissing(Keyspace keyspace, String id, long version) {
+        recordMissing(keyspace, Collections.singletonMap(id, version));
+    }
+
+    /**
+     * Records an id that was just deleted, whatever the version of its marker.
+     */
+    public void recordDeleted(Keyspace keyspace, String id) {
+        cacheClient.setValue(key(keyspace, id), ttlSeconds, MISSING);
+    }
+
+    /**
+     * Forgets a recorded miss; called when the id is created.
+     */
+    public void clear(Keyspace keyspace, String id) {
+        cacheClient.invalidate(key(keyspace, id));
+    }
+
+    private static String key(Keyspace keyspace, String id) {
+        return Keyspace.MISSING.key(keyspace.key(id));
+    }
+
+    private Counter lookups(Keyspace keyspace, String result) {
+        return Counter.builder("cache.negative.lookups")
+                .tag("type", keyspace.getPrefix())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
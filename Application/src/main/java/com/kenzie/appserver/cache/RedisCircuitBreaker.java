@@ -0,0 +1,128 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Circuit breaker guarding Redis. After a run of consecutive failures the breaker opens and callers
+ * skip Redis immediately instead of waiting for connection timeouts. While open, a background task
+ * probes Redis health; a successful probe closes the breaker again.
+ *
+ * State is exported as the {@code cache.redis.circuit.state} gauge (0 closed, 1 half open, 2 open)
+ * and every transition is counted in {@code cache.redis.circuit.transitions}.
+ */
+public class RedisCircuitBreaker {
+    static final Logger log = LogManager.getLogger();
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int failureThreshold;
+    private final long probeIntervalMillis;
+    private final BooleanSupplier healthProbe;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final ScheduledExecutorService prober;
+    private ScheduledFuture<?> probeTask;
+
+    public RedisCircuitBreaker(int failureThreshold, long probeIntervalMillis, BooleanSupplier healthProbe,
+                               MeterRegistry meterRegistry) {
+        this.failureThreshold = failureThreshold;
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.healthProbe = healthProbe;
+        this.meterRegistry = meterRegistry;
+        this.prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis_health_probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("cache.redis.circuit.state", state, current -> current.get().ordinal())
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if callers may send a command to Redis
+     */
+    public boolean allowRequest() {
+        return state.get() == State.CLOSED;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    public void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && transition(State.CLOSED, State.OPEN)) {
+            log.warn("Redis circuit opened after {} consecutive failures", failureThreshold);
+            scheduleProbe();
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    private synchronized void scheduleProbe() {
+        if (probeTask == null || probeTask.isDone()) {
+            probeTask = prober.scheduleWithFixedDelay(this::probe, probeIntervalMillis, probeIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void cancelProbe() {
+        if (probeTask != null) {
+            probeTask.cancel(false);
+        }
+    }
+
+    private void probe() {
+        if (!transition(State.OPEN, State.HALF_OPEN)) {
+            return;
+        }
+        boolean healthy;
+        try {
+            healthy = healthProbe.getAsBoolean();
+        } catch (Exception ex) {
+            healthy = false;
+        }
+        if (healthy) {
+            // Cancel before closing, so a failure right after closing can schedule a fresh probe
+            cancelProbe();
+            consecutiveFailures.set(0);
+            transition(State.HALF_OPEN, State.CLOSED);
+            log.info("Redis circuit closed after a successful health probe");
+            return;
+        }
+        transition(State.HALF_OPEN, State.OPEN);
+    }
+
+    private boolean transition(State from, State to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        Counter.builder("cache.redis.circuit.transitions")
+                .tag("from", from.name())
+                .tag("to", to.name())
+                .register(meterRegistry)
+                .increment();
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight loader. Concurrent loads of the same key are collapsed so that only the first
+ * caller runs the loader (for example a DynamoDB read after a cache miss) while the others wait for
+ * and share its result.
+ *
+ * Loads are counted in {@code cache.coalescer.loads}, tagged with the caller supplied name and
+ * whether the caller ran the loader ({@code leader}) or reused an in-flight load ({@code collapsed}).
+ */
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the loader for the key unless a load of the same key is already in flight, in which case
+     * the caller waits for that load instead. Exceptions and errors thrown by the loader are rethrown
+     * to every waiting caller.
+     *
+     * @param name   the kind of value being loaded, used to separate keyspaces and tag metrics
+     * @param key    identifies the value being loaded
+     * @param loader produces the value; may return null
+     * @return the loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(String name, String key, Supplier<T> loader) {
+        String flightKey = name + ":" + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            loads(name, "collapsed").increment();
+            return (T) await(existing);
+        }
+
+        loads(name, "leader").increment();
+        try {
+            T value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (Throwable ex) {
+            // Errors too, or the waiters would block on a flight that never completes
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private Counter loads(String name, String role) {
+        return Counter.builder("cache.coalescer.loads")
+                .tag("name", name)
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+}
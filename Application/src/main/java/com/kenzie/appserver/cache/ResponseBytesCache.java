@@ -0,0 +1,135 @@
+package com.kenzie.appserver.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of ready-to-write UTF-8 JSON response bodies, so hot reads skip deserializing the
+ * cached record, copying it into response models and serializing it again.
+ *
+ * Bodies are stored under the same keys as the {@link CacheClient} values they are built from and
+ * are dropped whenever the client reports one of those keys written or invalidated, on this node or
+ * another. A body built from values kept under other keys, such as an event and its attendee set,
+ * is stored with a version of those values and rebuilt when the caller asks for a newer one.
+ * Entries also expire after a short time to live, bounding staleness for changes made without
+ * going through the cache.
+ */
+public class ResponseBytesCache {
+
+    private final Cache<String, Body> bodies;
+
+    // Renders in flight, by key. An invalidation of a key marks its renders stale: a body rendered
+    // while its key was invalidated may have been built from the old value, so it is returned but
+    // not stored. Invalidations of other keys leave it alone.
+    private final ConcurrentHashMap<String, Set<Render>> rendering = new ConcurrentHashMap<>();
+
+    public ResponseBytesCache(CacheClient cacheClient, long maximumWeightBytes, int ttlSeconds) {
+        this.bodies = Caffeine.newBuilder()
+                .maximumWeight(maximumWeightBytes)
+                .weigher((String key, Body body) -> body.bytes.length)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+        cacheClient.addListener(new CacheInvalidationBus.Listener() {
+            @Override
+            public void keysInvalidated(Collection<String> keys) {
+                // Marked before the bodies are dropped, so a render storing its body in between
+                // has it dropped too
+                for (String key : keys) {
+                    markStale(key);
+                }
+                bodies.invalidateAll(keys);
+            }
+
+            @Override
+            public void allInvalidated() {
+                for (String key : rendering.keySet()) {
+                    markStale(key);
+                }
+                bodies.invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * Method that returns the cached body for a key, rendering and caching it on a miss.
+     *
+     * @param key    the cache key of the value the body is built from
+     * @param render produces the body; a null result is returned but not cached
+     * @return the response body, or null if there is nothing to render
+     */
+    public byte[] get(String key, Supplier<byte[]> render) {
+        return get(key, 0, render);
+    }
+
+    /**
+     * Method that returns the cached body for a key if it was built at the given version, rendering
+     * and caching it otherwise.
+     *
+     * @param key     the cache key of the value the body is built from
+     * @param version the version of the other values the body is built from
+     * @param render  produces the body; a null result is returned but not cached
+     * @return the response body, or null if there is nothing to render
+     */
+    public byte[] get(String key, long version, Supplier<byte[]> render) {
+        Body cached = bodies.getIfPresent(key);
+        if (cached != null && cached.version == version) {
+            return cached.bytes;
+        }
+        // Rendering reads and fills the cache client, whose notifications reach this cache, so it
+        // must not run inside a compute on the same map
+        Render inFlight = new Render();
+        rendering.compute(key, (k, renders) -> {
+            Set<Render> current = renders == null ? new HashSet<>() : renders;
+            current.add(inFlight);
+            return current;
+        });
+        byte[] rendered = null;
+        try {
+            rendered = render.get();
+        } finally {
+            byte[] body = rendered;
+            // Stored under the key's lock, so an invalidation of the key lands before or after it whole
+            rendering.computeIfPresent(key, (k, renders) -> {
+                renders.remove(inFlight);
+                if (body != null && !inFlight.stale) {
+                    bodies.put(key, new Body(version, body));
+                }
+                return renders.isEmpty() ? null : renders;
+            });
+        }
+        return rendered;
+    }
+
+    public void invalidate(String key) {
+        bodies.invalidate(key);
+    }
+
+    private void markStale(String key) {
+        rendering.computeIfPresent(key, (k, renders) -> {
+            renders.forEach(inFlight -> inFlight.stale = true);
+            return renders;
+        });
+    }
+
+    // Read and written only under the lock of its key in the rendering map
+    private static final class Render {
+        private boolean stale;
+    }
+
+    private static final class Body {
+        private final long version;
+        private final byte[] bytes;
+
+        private Body(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+}
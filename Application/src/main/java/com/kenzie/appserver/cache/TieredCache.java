@@ -0,0 +1,106 @@
+package com.kenzie.appserver.cache;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Spring {@link org.springframework.cache.Cache} stored in the tiers of a {@link CacheClient}. Keys
+ * are built in the cache's {@link Keyspace}, so several caches can share Redis, and every value is
+ * written with the cache's own time to live and serializer.
+ *
+ * Null values are not stored. Concurrent misses for the same key load it once, and a load that
+ * raced with an eviction of the key does not store its result.
+ */
+public class TieredCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final Keyspace keyspace;
+    private final CacheClient cacheClient;
+    private final int ttlSeconds;
+    private final CacheValueSerializer serializer;
+    private final RequestCoalescer requestCoalescer;
+
+    public TieredCache(String name, Keyspace keyspace, CacheClient cacheClient, int ttlSeconds,
+                       CacheValueSerializer serializer, RequestCoalescer requestCoalescer) {
+        super(false);
+        this.name = name;
+        this.keyspace = keyspace;
+        this.cacheClient = cacheClient;
+        this.ttlSeconds = ttlSeconds;
+        this.serializer = serializer;
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    private String cacheKey(Object key) {
+        return keyspace.key(String.valueOf(key));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CacheClient getNativeCache() {
+        return cacheClient;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Optional<String> cached = cacheClient.getValue(cacheKey(key));
+        return cached.isPresent() ? serializer.deserialize(cached.get()) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        return requestCoalescer.load(name, String.valueOf(key), () -> {
+            // Read before loading, so an eviction during the load keeps the loaded value out
+            long version = cacheClient.getVersion(cacheKey(key));
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex);
+            }
+            if (value != null) {
+                cacheClient.setValuesIfVersion(Collections.singletonMap(cacheKey(key), serializer.serialize(value)),
+                        Collections.singletonMap(cacheKey(key), version), ttlSeconds);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        cacheClient.setValue(cacheKey(key), ttlSeconds, serializer.serialize(value));
+    }
+
+    @Override
+    public void evict(Object key) {
+        cacheClient.invalidate(cacheKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return cacheClient.invalidate(cacheKey(key));
+    }
+
+    @Override
+    public void clear() {
+        cacheClient.invalidatePrefix(keyspace.getPrefix() + ":");
+    }
+}
@@ -0,0 +1,34 @@
+package com.kenzie.appserver.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link CacheManager} over a fixed set of {@link TieredCache}s, each configured with its own time
+ * to live, local tier size and serializer. Unknown cache names are not created on the fly.
+ */
+public class TieredCacheManager implements CacheManager {
+
+    private final Map<String, TieredCache> caches = new LinkedHashMap<>();
+
+    public TieredCacheManager(Collection<TieredCache> caches) {
+        for (TieredCache cache : caches) {
+            this.caches.put(cache.getName(), cache);
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.get(name);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+}
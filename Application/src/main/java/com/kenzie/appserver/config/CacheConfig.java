@@ -1,18 +1,211 @@
 package com.kenzie.appserver.config;
 
+import com.kenzie.appserver.cache.AttendeeCache;
 import com.kenzie.appserver.cache.CacheClient;
+import com.kenzie.appserver.cache.CacheFreshnessPolicy;
+import com.kenzie.appserver.cache.CacheInvalidationBus;
+import com.kenzie.appserver.cache.CacheTags;
+import com.kenzie.appserver.cache.CacheValueCodec;
+import com.kenzie.appserver.cache.GsonValueSerializer;
+import com.kenzie.appserver.cache.HotKeyTracker;
+import com.kenzie.appserver.cache.HotKeysEndpoint;
+import com.kenzie.appserver.cache.Keyspace;
+import com.kenzie.appserver.cache.KeyspaceTtlPolicy;
+import com.kenzie.appserver.cache.LocalCacheTier;
+import com.kenzie.appserver.cache.MemoryPressureMonitor;
+import com.kenzie.appserver.cache.NegativeResultCache;
+import com.kenzie.appserver.cache.RedisCircuitBreaker;
+import com.kenzie.appserver.cache.ResponseBytesCache;
+import com.kenzie.appserver.cache.TieredCache;
+import com.kenzie.appserver.cache.TieredCacheManager;
+import com.kenzie.appserver.repositories.model.OrganizationRecord;
+import com.kenzie.appserver.repositories.model.UserRecord;
+import com.kenzie.appserver.cache.RequestCoalescer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.cache.annotation.EnableCaching;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
-    // Create a Cache here if needed
+    public static final String USERS = "users";
+    public static final String ORGANIZATIONS = "organizations";
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public MemoryPressureMonitor memoryPressureMonitor(MeterRegistry meterRegistry,
+                                                       @Value("${cache.memory.watermarks:0.75,0.85,0.95}") double[] watermarks,
+                                                       @Value("${cache.memory.shed-fractions:0.25,0.5,1.0}") double[] shedFractions) {
+        return new MemoryPressureMonitor(watermarks, shedFractions, meterRegistry);
+    }
+
+    @Bean
+    public LocalCacheTier localCacheTier(MemoryPressureMonitor memoryPressureMonitor, MeterRegistry meterRegistry,
+                                         @Value("${cache.local.maximum-weight-bytes:67108864}") long maximumWeightBytes,
+                                         @Value("${cache.local.max-ttl-seconds:600}") int maxTtlSeconds,
+                                         @Value("${cache.hotkeys.max-pinned:256}") int maxPinned,
+                                         @Value("${cache.hotkeys.pin-ttl-millis:1000}") long pinTtlMillis) {
+        LocalCacheTier localCacheTier = new LocalCacheTier(maximumWeightBytes, maxTtlSeconds, maxPinned, pinTtlMillis);
+        memoryPressureMonitor.register(localCacheTier);
+        localCacheTier.bindTo(meterRegistry, CacheClient.DEFAULT_NAME);
+        return localCacheTier;
+    }
+
+    @Bean
+    public HotKeyTracker hotKeyTracker(MeterRegistry meterRegistry,
+                                       @Value("${cache.hotkeys.sketch-width:4096}") int width,
+                                       @Value("${cache.hotkeys.window-millis:10000}") long windowMillis,
+                                       @Value("${cache.hotkeys.threshold:500}") int threshold,
+                                       @Value("${cache.hotkeys.max-tracked:1000}") int maxTracked) {
+        return new HotKeyTracker(width, windowMillis, threshold, maxTracked, meterRegistry);
+    }
+
+    @Bean
+    public HotKeysEndpoint hotKeysEndpoint(HotKeyTracker hotKeyTracker,
+                                           @Value("${cache.hotkeys.top-k:20}") int topK) {
+        return new HotKeysEndpoint(hotKeyTracker, topK);
+    }
+
+    @Bean(destroyMethod = "close")
+    public JedisPool jedisPool(@Value("${JEDIS_URL:localhost}") String host,
+                               @Value("${cache.redis.port:6379}") int port,
+                               @Value("${cache.redis.timeout-millis:2000}") int timeoutMillis,
+                               @Value("${cache.redis.pool.max-total:64}") int maxTotal,
+                               @Value("${cache.redis.pool.max-idle:32}") int maxIdle,
+                               @Value("${cache.redis.pool.min-idle:8}") int minIdle,
+                               @Value("${cache.redis.pool.max-wait-millis:500}") long maxWaitMillis) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxIdle);
+        poolConfig.setMinIdle(minIdle);
+        poolConfig.setMaxWait(Duration.ofMillis(maxWaitMillis));
+        poolConfig.setTestWhileIdle(true);
+        return new JedisPool(poolConfig, host, port, timeoutMillis);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CacheInvalidationBus cacheInvalidationBus(JedisPool jedisPool,
+                                                     @Value("${cache.invalidation.channel:cache-invalidation}") String channel) {
+        return new CacheInvalidationBus(jedisPool, channel);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public RedisCircuitBreaker redisCircuitBreaker(JedisPool jedisPool, MeterRegistry meterRegistry,
+                                                   @Value("${cache.redis.circuit.failure-threshold:5}") int failureThreshold,
+                                                   @Value("${cache.redis.circuit.probe-interval-millis:1000}") long probeIntervalMillis) {
+        return new RedisCircuitBreaker(failureThreshold, probeIntervalMillis, () -> {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return "PONG".equals(jedis.ping());
+            }
+        }, meterRegistry);
+    }
+
+    @Bean
+    public RequestCoalescer requestCoalescer(MeterRegistry meterRegistry) {
+        return new RequestCoalescer(meterRegistry);
+    }
+
+    @Bean
+    public CacheFreshnessPolicy eventFreshnessPolicy(@Value("${cache.event.soft-ttl-seconds:300}") int softTtlSeconds,
+                                                     @Value("${cache.event.hard-ttl-seconds:10000}") int hardTtlSeconds,
+                                                     @Value("${cache.event.stale-if-error-seconds:3600}") int staleIfErrorSeconds) {
+        return new CacheFreshnessPolicy(softTtlSeconds, hardTtlSeconds, staleIfErrorSeconds);
+    }
+
+    @Bean
+    public KeyspaceTtlPolicy keyspaceTtlPolicy(CacheFreshnessPolicy eventFreshnessPolicy,
+                                               @Value("${cache.users.ttl-seconds:3600}") int usersTtlSeconds,
+                                               @Value("${cache.organizations.ttl-seconds:3600}") int organizationsTtlSeconds,
+                                               @Value("${cache.negative.ttl-seconds:30}") int missingTtlSeconds,
+                                               @Value("${cache.checkpoint.ttl-seconds:2592000}") int checkpointTtlSeconds) {
+        Map<Keyspace, Integer> ttlSeconds = new EnumMap<>(Keyspace.class);
+        // Events and their attendee sets stay stored past the hard TTL, so they can be served when a reload fails
+        ttlSeconds.put(Keyspace.EVENT, eventFreshnessPolicy.getStorageTtlSeconds());
+        ttlSeconds.put(Keyspace.ATTENDEES, eventFreshnessPolicy.getStorageTtlSeconds());
+        ttlSeconds.put(Keyspace.USER, usersTtlSeconds);
+        ttlSeconds.put(Keyspace.ORGANIZATION, organizationsTtlSeconds);
+        ttlSeconds.put(Keyspace.MISSING, missingTtlSeconds);
+        ttlSeconds.put(Keyspace.CHECKPOINT, checkpointTtlSeconds);
+        return new KeyspaceTtlPolicy(ttlSeconds);
+    }
+
+    @Bean
+    public CacheValueCodec cacheValueCodec(MeterRegistry meterRegistry,
+                                           @Value("${cache.codec.compression-threshold-bytes:1024}") int thresholdBytes) {
+        return new CacheValueCodec(thresholdBytes, meterRegistry);
+    }
+
+    @Bean
+    public CacheClient myCache(JedisPool jedisPool, LocalCacheTier localCacheTier, CacheValueCodec cacheValueCodec,
+                               HotKeyTracker hotKeyTracker, CacheInvalidationBus cacheInvalidationBus,
+                               RedisCircuitBreaker redisCircuitBreaker, MeterRegistry meterRegistry) {
+        return new CacheClient(jedisPool, localCacheTier, cacheValueCodec, hotKeyTracker, cacheInvalidationBus,
+                redisCircuitBreaker, meterRegistry);
+    }
+
+    @Bean
+    public CacheTags cacheTags(CacheClient cacheClient) {
+        return new CacheTags(cacheClient);
+    }
+
+    @Bean
+    public AttendeeCache attendeeCache(CacheClient cacheClient, KeyspaceTtlPolicy keyspaceTtlPolicy) {
+        return new AttendeeCache(cacheClient, keyspaceTtlPolicy.getTtlSeconds(Keyspace.ATTENDEES));
+    }
+
+    @Bean
+    public NegativeResultCache negativeResultCache(CacheClient cacheClient, KeyspaceTtlPolicy keyspaceTtlPolicy,
+                                                   MeterRegistry meterRegistry) {
+        return new NegativeResultCache(cacheClient, keyspaceTtlPolicy.getTtlSeconds(Keyspace.MISSING), meterRegistry);
+    }
+
+    @Bean
+    public ResponseBytesCache responseBytesCache(CacheClient cacheClient,
+                                                 @Value("${cache.response.maximum-weight-bytes:16777216}") long maximumWeightBytes,
+                                                 @Value("${cache.response.ttl-seconds:60}") int ttlSeconds) {
+        return new ResponseBytesCache(cacheClient, maximumWeightBytes, ttlSeconds);
+    }
 
     @Bean
-    public CacheClient myCache() {
-        return new CacheClient();
+    public CacheManager cacheManager(JedisPool jedisPool, CacheInvalidationBus cacheInvalidationBus,
+                                     RedisCircuitBreaker redisCircuitBreaker, MeterRegistry meterRegistry,
+                                     RequestCoalescer requestCoalescer, CacheValueCodec cacheValueCodec,
+                                     HotKeyTracker hotKeyTracker, KeyspaceTtlPolicy keyspaceTtlPolicy,
+                                     MemoryPressureMonitor memoryPressureMonitor,
+                                     @Value("${cache.hotkeys.max-pinned:256}") int maxPinned,
+                                     @Value("${cache.hotkeys.pin-ttl-millis:1000}") long pinTtlMillis,
+                                     @Value("${cache.users.maximum-weight-bytes:8388608}") long usersMaximumWeightBytes,
+                                     @Value("${cache.organizations.maximum-weight-bytes:2097152}") long organizationsMaximumWeightBytes) {
+        int usersTtlSeconds = keyspaceTtlPolicy.getTtlSeconds(Keyspace.USER);
+        int organizationsTtlSeconds = keyspaceTtlPolicy.getTtlSeconds(Keyspace.ORGANIZATION);
+        // Each cache gets its own local tier, so one cache cannot crowd another out of memory
+        LocalCacheTier usersTier = new LocalCacheTier(usersMaximumWeightBytes, usersTtlSeconds, maxPinned, pinTtlMillis);
+        LocalCacheTier organizationsTier =
+                new LocalCacheTier(organizationsMaximumWeightBytes, organizationsTtlSeconds, maxPinned, pinTtlMillis);
+        memoryPressureMonitor.register(usersTier);
+        memoryPressureMonitor.register(organizationsTier);
+        // Tagged by cache, so the meters of one cache do not merge with or shadow another's
+        usersTier.bindTo(meterRegistry, USERS);
+        organizationsTier.bindTo(meterRegistry, ORGANIZATIONS);
+        CacheClient usersClient = new CacheClient(USERS, jedisPool, usersTier,
+                cacheValueCodec, hotKeyTracker, cacheInvalidationBus, redisCircuitBreaker, meterRegistry);
+        CacheClient organizationsClient = new CacheClient(ORGANIZATIONS, jedisPool, organizationsTier,
+                cacheValueCodec, hotKeyTracker, cacheInvalidationBus, redisCircuitBreaker, meterRegistry);
+        return new TieredCacheManager(Arrays.asList(
+                new TieredCache(USERS, Keyspace.USER, usersClient, usersTtlSeconds,
+                        new GsonValueSerializer(UserRecord.class), requestCoalescer),
+                new TieredCache(ORGANIZATIONS, Keyspace.ORGANIZATION, organizationsClient, organizationsTtlSeconds,
+                        new GsonValueSerializer(OrganizationRecord.class), requestCoalescer)));
     }
 }
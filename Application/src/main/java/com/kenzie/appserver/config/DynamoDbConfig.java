@@ -3,11 +3,27 @@ package com.kenzie.appserver.config;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.kenzie.appserver.repositories.AttendanceShards;
+import com.kenzie.appserver.repositories.BatchWriter;
+import com.kenzie.appserver.repositories.EventExpiryIndex;
+import com.kenzie.appserver.repositories.HeldEventsWriter;
+import com.kenzie.appserver.repositories.MembershipIndex;
+import com.kenzie.appserver.repositories.MembershipWriter;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.TableScanner;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.socialsignin.spring.data.dynamodb.repository.config.EnableDynamoDBRepositories;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 @EnableDynamoDBRepositories(basePackages = "com.kenzie.appserver.repositories")
@@ -33,4 +49,92 @@ public class DynamoDbConfig {
     public AmazonDynamoDB defaultAmazonDynamoDb() {
         return AmazonDynamoDBClientBuilder.defaultClient();
     }
+
+    // Built here rather than exposed as a mapper bean, which would clash with the repositories' own mapper
+    @Bean
+    public TableScanner tableScanner(AmazonDynamoDB amazonDynamoDB) {
+        return new TableScanner(new DynamoDBMapper(amazonDynamoDB));
+    }
+
+    @Bean
+    public EventExpiryIndex eventExpiryIndex(AmazonDynamoDB amazonDynamoDB) {
+        return new EventExpiryIndex(new DynamoDBMapper(amazonDynamoDB), amazonDynamoDB);
+    }
+
+    @Bean
+    public HeldEventsWriter heldEventsWriter(AmazonDynamoDB amazonDynamoDB) {
+        return new HeldEventsWriter(amazonDynamoDB);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public AttendanceShards attendanceShards(AmazonDynamoDB amazonDynamoDB, MeterRegistry meterRegistry,
+                                             @Value("${events.attendance.sharding.enabled:false}") boolean enabled,
+                                             @Value("${events.attendance.max-shards:64}") int maxShards,
+                                             @Value("${events.attendance.shard-refresh-millis:10000}") long refreshMillis,
+                                             @Value("${events.attendance.flush-interval-millis:1000}") long flushIntervalMillis) {
+        return new AttendanceShards(new DynamoDBMapper(amazonDynamoDB), amazonDynamoDB, meterRegistry,
+                enabled, maxShards, refreshMillis, flushIntervalMillis);
+    }
+
+    @Bean
+    public MembershipWriter membershipWriter(AmazonDynamoDB amazonDynamoDB, AttendanceShards attendanceShards) {
+        return new MembershipWriter(amazonDynamoDB, attendanceShards);
+    }
+
+    @Bean
+    public MembershipIndex membershipIndex(AmazonDynamoDB amazonDynamoDB, AttendanceShards attendanceShards) {
+        return new MembershipIndex(new DynamoDBMapper(amazonDynamoDB), attendanceShards);
+    }
+
+    // Background scans such as expiry and warm-up, kept to a small share of the read capacity
+    @Bean(destroyMethod = "shutdown")
+    @Primary
+    public ParallelScanner parallelScanner(AmazonDynamoDB amazonDynamoDB,
+                                           @Value("${dynamodb.scan.threads:4}") int threads,
+                                           @Value("${dynamodb.scan.segments:4}") int totalSegments,
+                                           @Value("${dynamodb.scan.page-size:100}") int pageSize,
+                                           @Value("${dynamodb.scan.read-units-per-second:5}") double readUnitsPerSecond) {
+        return parallelScanner(amazonDynamoDB, "dynamodb_scan_worker_", threads, totalSegments, pageSize,
+                readUnitsPerSecond);
+    }
+
+    // Listings a request waits on, with their own workers and a larger budget, so they neither
+    // queue behind a background scan nor crawl at its pace
+    @Bean(destroyMethod = "shutdown")
+    public ParallelScanner listingScanner(AmazonDynamoDB amazonDynamoDB,
+                                          @Value("${dynamodb.scan.listing.threads:4}") int threads,
+                                          @Value("${dynamodb.scan.listing.segments:4}") int totalSegments,
+                                          @Value("${dynamodb.scan.page-size:100}") int pageSize,
+                                          @Value("${dynamodb.scan.listing.read-units-per-second:50}") double readUnitsPerSecond) {
+        return parallelScanner(amazonDynamoDB, "dynamodb_listing_worker_", threads, totalSegments, pageSize,
+                readUnitsPerSecond);
+    }
+
+    private static ParallelScanner parallelScanner(AmazonDynamoDB amazonDynamoDB, String threadPrefix, int threads,
+                                                   int totalSegments, int pageSize, double readUnitsPerSecond) {
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new ParallelScanner(new DynamoDBMapper(amazonDynamoDB), executor, totalSegments, pageSize,
+                readUnitsPerSecond);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public BatchWriter batchWriter(AmazonDynamoDB amazonDynamoDB, MeterRegistry meterRegistry,
+                                   @Value("${dynamodb.batch.threads:2}") int threads,
+                                   @Value("${dynamodb.batch.max-attempts:8}") int maxAttempts,
+                                   @Value("${dynamodb.batch.base-backoff-millis:50}") long baseBackoffMillis,
+                                   @Value("${dynamodb.batch.max-backoff-millis:5000}") long maxBackoffMillis) {
+        AtomicInteger workerCount = new AtomicInteger();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dynamodb_batch_writer_" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new BatchWriter(new DynamoDBMapper(amazonDynamoDB), amazonDynamoDB, scheduler, meterRegistry,
+                maxAttempts, baseBackoffMillis, maxBackoffMillis);
+    }
 }
@@ -1,18 +1,27 @@
 package com.kenzie.appserver.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kenzie.appserver.cache.RequestCoalescer;
+import com.kenzie.appserver.cache.ResponseBytesCache;
 import com.kenzie.appserver.controller.model.EventCreateRequest;
 import com.kenzie.appserver.controller.model.EventResponse;
 import com.kenzie.appserver.controller.model.EventUpdateRequest;
+import com.kenzie.appserver.controller.model.PageResponse;
+import com.kenzie.appserver.repositories.model.ScanPage;
 import com.kenzie.appserver.service.EventService;
 import com.kenzie.appserver.service.model.Event;
 import com.kenzie.capstone.service.model.NotificationData;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -21,8 +30,15 @@ import java.util.UUID;
 @RequestMapping("/Event")
 public class EventController{
     private EventService eventService;
-    public EventController(EventService eventService) {
+    private ResponseBytesCache responseBytesCache;
+    private RequestCoalescer requestCoalescer;
+    private ObjectMapper objectMapper;
+    public EventController(EventService eventService, ResponseBytesCache responseBytesCache,
+                           RequestCoalescer requestCoalescer, ObjectMapper objectMapper) {
         this.eventService = eventService;
+        this.responseBytesCache = responseBytesCache;
+        this.requestCoalescer = requestCoalescer;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{eventId}/notification")
@@ -34,24 +50,69 @@ public class EventController{
         return eventService.setNotificationDataFromLambda(data);
     }
 
+    // Event reads are served as pre-serialized JSON, cached under the event's cache key and rebuilt
+    // whenever its attendee set moves to a new version
     @GetMapping("/{eventId}")
-    public ResponseEntity<EventResponse> getEventById(@PathVariable("eventId") String eventId) {
-        Event event = eventService.findByEventId(eventId);
-        if (event == null) {
+    public ResponseEntity<byte[]> getEventById(@PathVariable("eventId") String eventId) {
+        long attendeesVersion = eventService.attendeesVersion(eventId);
+        byte[] body = responseBytesCache.get(EventService.eventKey(eventId), attendeesVersion, () -> {
+            Event event = eventService.findByEventId(eventId);
+            return event == null ? null : toJsonBytes(createEventResponse(event));
+        });
+        if (body == null) {
             return ResponseEntity.notFound().build();
         }
-        EventResponse eventResponse = createEventResponse(event);
-        return ResponseEntity.ok(eventResponse);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
+    // The listing key changes with every generation of the listing tag, so older bodies are never served.
+    // Requests that miss together share one render, rather than each scanning the whole table.
     @GetMapping("/all")
-    public ResponseEntity<List<EventResponse>> getAllEvents() {
-        List<Event> events = eventService.findAllEvents();
-        List<EventResponse> responses = new ArrayList<>();
-        for (Event event : events) {
-            responses.add(createEventResponse(event));
+    public ResponseEntity<byte[]> getAllEvents(@RequestParam(value = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            // A cursor only means something with a limit; without one the client would get the whole listing
+            return ResponseEntity.badRequest().build();
+        }
+        String listingKey = eventService.listingKey();
+        byte[] body = responseBytesCache.get(listingKey, () -> requestCoalescer.load("event-listing", listingKey, () -> {
+            List<Event> events = eventService.findAllEvents();
+            List<EventResponse> responses = new ArrayList<>();
+            for (Event event : events) {
+                responses.add(createEventResponse(event));
+            }
+            return toJsonBytes(responses);
+        }));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // One page of the listing at a time; pass the returned nextCursor back to read the following page
+    @GetMapping(value = "/all", params = "limit")
+    public ResponseEntity<PageResponse<EventResponse>> getEventsPage(@RequestParam("limit") int limit,
+                                                                     @RequestParam(value = "cursor", required = false) String cursor) {
+        if (limit < 1 || limit > PageResponse.MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        ScanPage<Event> page;
+        try {
+            page = eventService.findEventsPage(cursor, limit);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(responses);
+        PageResponse<EventResponse> response = new PageResponse<>();
+        response.setItems(page.map(this::createEventResponse).getItems());
+        response.setNextCursor(page.getNextCursor());
+        return ResponseEntity.ok(response);
+    }
+
+    // The whole listing as newline-delimited JSON, written while the table is scanned
+    @GetMapping(value = "/all", params = {"format=ndjson", "!limit"})
+    public ResponseEntity<StreamingResponseBody> streamAllEvents(@RequestParam(value = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = JsonStreams.<EventResponse>ndjson(objectMapper,
+                consumer -> eventService.forEachEvent(event -> consumer.accept(createEventResponse(event))));
+        return ResponseEntity.ok().contentType(JsonStreams.APPLICATION_NDJSON).body(body);
     }
 
     @PostMapping
@@ -96,6 +157,14 @@ public class EventController{
 
 
 
+    private byte[] toJsonBytes(Object response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private EventResponse createEventResponse(Event event) {
         EventResponse eventResponse = new EventResponse();
         eventResponse.setEventId(event.getEventID());
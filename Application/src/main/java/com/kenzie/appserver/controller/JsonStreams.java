@@ -0,0 +1,69 @@
+package com.kenzie.appserver.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Response bodies that serialize records while they are being read, so a listing never has to fit
+ * in memory and the first bytes go out with the first scan page. Values are not flushed one by one;
+ * the servlet's response buffer decides when bytes are sent.
+ */
+final class JsonStreams {
+
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private JsonStreams() {
+    }
+
+    /**
+     * @param source feeds every value to the consumer it is given
+     * @return a body writing the values as one JSON array
+     */
+    static <T> StreamingResponseBody jsonArray(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        return out -> {
+            try (SequenceWriter writer = writer(objectMapper).writeValuesAsArray(StreamUtils.nonClosing(out))) {
+                write(writer, source);
+            }
+        };
+    }
+
+    /**
+     * @param source feeds every value to the consumer it is given
+     * @return a body writing the values as newline-delimited JSON, one value per line
+     */
+    static <T> StreamingResponseBody ndjson(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        return out -> {
+            try (SequenceWriter writer = writer(objectMapper).withRootValueSeparator("\n")
+                    .writeValues(StreamUtils.nonClosing(out))) {
+                write(writer, source);
+            }
+        };
+    }
+
+    private static ObjectWriter writer(ObjectMapper objectMapper) {
+        return objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    private static <T> void write(SequenceWriter writer, Consumer<Consumer<T>> source) throws IOException {
+        try {
+            source.accept(value -> {
+                try {
+                    writer.write(value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
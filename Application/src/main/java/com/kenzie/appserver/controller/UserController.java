@@ -1,18 +1,22 @@
 package com.kenzie.appserver.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kenzie.appserver.controller.model.*;
 import com.kenzie.appserver.exception.EventNotFoundException;
 import com.kenzie.appserver.exception.UserAlreadyExistsException;
 import com.kenzie.appserver.exception.UserNotFoundException;
+import com.kenzie.appserver.repositories.model.ScanPage;
 import com.kenzie.appserver.repositories.model.UserRecord;
 import com.kenzie.appserver.service.EventService;
 import com.kenzie.appserver.service.UserService;
 import com.kenzie.appserver.service.model.Event;
 import com.kenzie.appserver.service.model.User;
 import com.kenzie.capstone.service.model.NotificationData;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URI;
 import java.util.ArrayList;
@@ -25,10 +29,13 @@ public class UserController {
 
     private final EventService eventService;
 
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserService userService, EventService eventService) {
+
+    public UserController(UserService userService, EventService eventService, ObjectMapper objectMapper) {
         this.userService = userService;
         this.eventService = eventService;
+        this.objectMapper = objectMapper;
     }
     @PutMapping("/{userId}/notification")
     public ResponseEntity<NotificationData> getUserNotification(@PathVariable("userId") String userId, @RequestBody GetNotificationRequest getNotificationRequest) {
@@ -64,14 +71,46 @@ public class UserController {
         }
     }
 
+    // Written as a JSON array while the table is scanned, so the listing never has to fit in memory
     @GetMapping("/all")
-    public ResponseEntity<List<UserResponse>> getAllUsers() {
-        List<UserRecord> users = userService.getAllUsers();
-        List<UserResponse> responses = new ArrayList<>();
-        for (UserRecord user : users) {
-            responses.add(createUserResponseFromRecord(user));
+    public ResponseEntity<StreamingResponseBody> getAllUsers(@RequestParam(value = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            // A cursor only means something with a limit; without one the client would get the whole listing
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(responses);
+        StreamingResponseBody body = JsonStreams.<UserResponse>jsonArray(objectMapper,
+                consumer -> userService.forEachUser(user -> consumer.accept(createUserResponseFromRecord(user))));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // One page of the listing at a time; pass the returned nextCursor back to read the following page
+    @GetMapping(value = "/all", params = "limit")
+    public ResponseEntity<PageResponse<UserResponse>> getUsersPage(@RequestParam("limit") int limit,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor) {
+        if (limit < 1 || limit > PageResponse.MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        ScanPage<UserRecord> page;
+        try {
+            page = userService.getUsersPage(cursor, limit);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        PageResponse<UserResponse> response = new PageResponse<>();
+        response.setItems(page.map(this::createUserResponseFromRecord).getItems());
+        response.setNextCursor(page.getNextCursor());
+        return ResponseEntity.ok(response);
+    }
+
+    // The whole listing as newline-delimited JSON, written while the table is scanned
+    @GetMapping(value = "/all", params = {"format=ndjson", "!limit"})
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@RequestParam(value = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = JsonStreams.<UserResponse>ndjson(objectMapper,
+                consumer -> userService.forEachUser(user -> consumer.accept(createUserResponseFromRecord(user))));
+        return ResponseEntity.ok().contentType(JsonStreams.APPLICATION_NDJSON).body(body);
     }
 
     @PostMapping
@@ -134,6 +173,9 @@ public class UserController {
         catch (UserNotFoundException ex){
             return ResponseEntity.notFound().build();
         }
+        catch (IllegalArgumentException ex){
+            return ResponseEntity.badRequest().build();
+        }
 
     }
 
@@ -158,17 +200,7 @@ public class UserController {
             return ResponseEntity.badRequest().build();
         }
 
-        List<Event> events = new ArrayList<>(eventsAttendedByFriends.size());
-        for(int i = 0, size = eventsAttendedByFriends.size(); i < size; ++i){
-            try{
-                System.out.println(eventsAttendedByFriends.get(i));
-                events.add(eventService.findByEventId(eventsAttendedByFriends.get(i)));
-
-            }
-            catch(EventNotFoundException ex){
-
-            }
-        }
+        List<Event> events = eventService.findByEventIds(eventsAttendedByFriends);
 
         List<EventResponse> responses = new ArrayList<>();
         for (Event event : events) {
@@ -0,0 +1,34 @@
+package com.kenzie.appserver.controller.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class PageResponse<T> {
+
+    // Upper bound on the page size a client may ask for
+    public static final int MAX_LIMIT = 1000;
+
+    @JsonProperty("items")
+    private List<T> items;
+
+    // Absent on the last page
+    @JsonProperty("nextCursor")
+    private String nextCursor;
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
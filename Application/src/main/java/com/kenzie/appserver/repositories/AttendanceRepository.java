@@ -0,0 +1,10 @@
+package com.kenzie.appserver.repositories;
+
+import com.kenzie.appserver.repositories.model.AttendanceId;
+import com.kenzie.appserver.repositories.model.AttendanceRecord;
+import org.springframework.data.repository.CrudRepository;
+
+// Declared so the table and its indexes are created with the others; edges are read through
+// MembershipIndex and written through MembershipWriter
+public interface AttendanceRepository extends CrudRepository<AttendanceRecord, AttendanceId> {
+}
@@ -0,0 +1,281 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kenzie.appserver.repositories.model.AttendanceRecord;
+import com.kenzie.appserver.repositories.model.EventAttendanceRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shard layout and join counts of events in sharded attendance mode. All attendees of an unsharded
+ * event share one partition of the attendance table, so a viral event's joins all land on one
+ * partition and hit its write limit. A sharded event spreads them over {@code shards} partitions
+ * instead, each user always in the same one, picked by the hash of their id.
+ *
+ * Every event starts unsharded. When a join to it is throttled, its shard count doubles, up to a
+ * limit, and the count is stored so every node picks it up within the refresh interval. A shard
+ * count only grows; a user who joined under an earlier count is found in the shard that count
+ * placed them in, which {@link #partitionsOf(String, String, int)} lists.
+ *
+ * Joins written to shards are counted in-process with one {@link LongAdder} per event and the sums
+ * added to the stored counters on a fixed interval, so a viral event costs one counter write per
+ * node and interval rather than one per join. Each flush goes to a random counter item of the event,
+ * spread like the attendees. Counts of joins not yet flushed by other nodes are not visible.
+ *
+ * When sharded mode is off every event has one shard and nothing is counted here.
+ */
+public class AttendanceShards {
+    static final Logger log = LogManager.getLogger();
+
+    private static final String TABLE_NAME = EventAttendanceRecord.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    private final DynamoDBMapper dynamoDBMapper;
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxShards;
+    private final long flushIntervalMillis;
+
+    private final Cache<String, Integer> shardCounts;
+    private final Map<String, LongAdder> pendingJoins = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    /**
+     * @param enabled             whether events are sharded at all
+     * @param maxShards           the most shards one event is split into
+     * @param refreshMillis       how long a node keeps using an event's shard count before reading it again
+     * @param flushIntervalMillis interval between flushes of the join counts
+     */
+    public AttendanceShards(DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB, MeterRegistry meterRegistry,
+                            boolean enabled, int maxShards, long refreshMillis, long flushIntervalMillis) {
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxShards = maxShards;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.shardCounts = Caffeine.newBuilder()
+                .expireAfterWrite(refreshMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(10_000)
+                .build();
+    }
+
+    public synchronized void start() {
+        if (!enabled || flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance_count_flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdownNow();
+        flusher = null;
+        // Counts still pending would be lost with the node
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the number of shards the event's attendees are spread over, 1 if it is not sharded
+     */
+    public int shardsOf(String eventId) {
+        if (!enabled) {
+            return 1;
+        }
+        return shardCounts.get(eventId, this::loadShards);
+    }
+
+    /**
+     * Method that doubles the shard count of an event whose joins are being throttled. Nodes that
+     * scale the same event at once double it only once.
+     *
+     * @param eventId the event
+     * @param from    the shard count the throttled join used
+     * @return the event's shard count now, unchanged if it is already at the limit
+     */
+    public int scaleUp(String eventId, int from) {
+        if (!enabled || from >= maxShards) {
+            return from;
+        }
+        int to = Math.min(from * 2, maxShards);
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":from", new AttributeValue().withN(String.valueOf(from)));
+        values.put(":to", new AttributeValue().withN(String.valueOf(to)));
+        values.put(":one", new AttributeValue().withN("1"));
+        UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(TABLE_NAME)
+                .withKey(Collections.singletonMap(EventAttendanceRecord.ID_ATTRIBUTE, new AttributeValue().withS(eventId)))
+                .withUpdateExpression("SET #shards = :to")
+                .withConditionExpression("(attribute_not_exists(#shards) AND :from = :one) OR #shards = :from")
+                .withExpressionAttributeNames(Collections.singletonMap("#shards", EventAttendanceRecord.SHARDS_ATTRIBUTE))
+                .withExpressionAttributeValues(values);
+        try {
+            amazonDynamoDB.updateItem(request);
+        } catch (ConditionalCheckFailedException ex) {
+            // Another node scaled it first
+            shardCounts.invalidate(eventId);
+            return shardsOf(eventId);
+        }
+        shardCounts.put(eventId, to);
+        Counter.builder("events.attendance.shards.scaled")
+                .register(meterRegistry)
+                .increment();
+        log.info("Throttled joins to event {}, spreading its attendees over {} shards", eventId, to);
+        return to;
+    }
+
+    /**
+     * @return every attendance partition of the event with the given shard count: the unsharded one
+     * first, then one per shard
+     */
+    public static List<String> partitionsOf(String eventId, int shards) {
+        List<String> partitions = new ArrayList<>(shards + 1);
+        partitions.add(eventId);
+        if (shards > 1) {
+            for (int shard = 0; shard < shards; ++shard) {
+                partitions.add(AttendanceRecord.partitionKey(eventId, shard));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * @return the partitions a user's attendance may be in: the one the current shard count places
+     * them in first, then the ones each smaller count before it did
+     */
+    public static List<String> partitionsOf(String eventId, String userId, int shards) {
+        Set<String> partitions = new LinkedHashSet<>();
+        for (int count = shards; count > 1; count /= 2) {
+            partitions.add(AttendanceRecord.partitionKey(eventId, Math.floorMod(userId.hashCode(), count)));
+        }
+        partitions.add(eventId);
+        return new ArrayList<>(partitions);
+    }
+
+    /**
+     * Method that counts a join written to one of the event's shards, to be flushed later.
+     */
+    public void recordJoin(String eventId) {
+        // Counted under the map's lock, so a flush cannot drop the adder between lookup and increment
+        pendingJoins.compute(eventId, (id, adder) -> {
+            LongAdder joins = adder == null ? new LongAdder() : adder;
+            joins.increment();
+            return joins;
+        });
+    }
+
+    /**
+     * @return the joins written to the event's shards, those still pending on this node included.
+     * Counters of shards added within the refresh interval may not be read yet.
+     */
+    public long countShardedJoins(String eventId) {
+        if (!enabled) {
+            return 0;
+        }
+        int shards = shardsOf(eventId);
+        long count = 0;
+        if (shards > 1) {
+            List<EventAttendanceRecord> counters = new ArrayList<>(shards);
+            for (int shard = 0; shard < shards; ++shard) {
+                counters.add(new EventAttendanceRecord(AttendanceRecord.partitionKey(eventId, shard)));
+            }
+            for (List<Object> loaded : dynamoDBMapper.batchLoad(counters).values()) {
+                for (Object counter : loaded) {
+                    Long attendees = ((EventAttendanceRecord) counter).getAttendees();
+                    count += attendees == null ? 0 : attendees;
+                }
+            }
+        }
+        LongAdder pending = pendingJoins.get(eventId);
+        return pending == null ? count : count + pending.sum();
+    }
+
+    /**
+     * Method that adds the join counts gathered since the last flush to the stored counters.
+     */
+    public void flush() {
+        for (Map.Entry<String, LongAdder> pending : pendingJoins.entrySet()) {
+            long joins = pending.getValue().sumThenReset();
+            if (joins == 0) {
+                // Checked again under the map's lock, so a join counted since the sum is kept
+                pendingJoins.computeIfPresent(pending.getKey(), (eventId, adder) -> adder.sum() == 0 ? null : adder);
+                continue;
+            }
+            String eventId = pending.getKey();
+            int shard = ThreadLocalRandom.current().nextInt(shardsOf(eventId));
+            try {
+                amazonDynamoDB.updateItem(new UpdateItemRequest()
+                        .withTableName(TABLE_NAME)
+                        .withKey(Collections.singletonMap(EventAttendanceRecord.ID_ATTRIBUTE,
+                                new AttributeValue().withS(AttendanceRecord.partitionKey(eventId, shard))))
+                        .withUpdateExpression("ADD #attendees :joins")
+                        .withExpressionAttributeNames(Collections.singletonMap("#attendees", EventAttendanceRecord.ATTENDEES_ATTRIBUTE))
+                        .withExpressionAttributeValues(Collections.singletonMap(":joins", new AttributeValue().withN(String.valueOf(joins)))));
+            } catch (RuntimeException ex) {
+                // Kept for the next flush
+                pending.getValue().add(joins);
+                log.warn("Flushing {} joins of event {} failed: {}", joins, eventId, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method that drops the shard count and join counters of a deleted event.
+     */
+    public void forget(String eventId) {
+        pendingJoins.remove(eventId);
+        if (!enabled) {
+            return;
+        }
+        int shards = shardsOf(eventId);
+        shardCounts.invalidate(eventId);
+        if (shards == 1) {
+            return;
+        }
+        List<EventAttendanceRecord> records = new ArrayList<>(shards + 1);
+        records.add(new EventAttendanceRecord(eventId));
+        for (int shard = 0; shard < shards; ++shard) {
+            records.add(new EventAttendanceRecord(AttendanceRecord.partitionKey(eventId, shard)));
+        }
+        dynamoDBMapper.batchDelete(records);
+    }
+
+    private Integer loadShards(String eventId) {
+        EventAttendanceRecord record = dynamoDBMapper.load(EventAttendanceRecord.class, eventId);
+        return record == null || record.getShards() == null ? 1 : record.getShards();
+    }
+}
@@ -0,0 +1,241 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.kenzie.appserver.repositories.model.BatchWriteResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Writes records in {@code BatchWriteItem} calls of up to 25 puts and deletes, across tables, instead
+ * of one request per record. DynamoDB may leave part of a batch unprocessed when a table is short of
+ * write capacity; those items are sent again after a jittered exponential backoff, until they are
+ * written or the batch runs out of attempts. The jitter keeps batches throttled together from
+ * retrying together.
+ *
+ * Batches are sent from a scheduled executor, so a backoff holds no thread. Callers either await the
+ * whole write or pass a listener that receives each batch's result as it completes.
+ *
+ * Items are counted in {@code dynamodb.batch.items}, tagged written or failed, requests in
+ * {@code dynamodb.batch.requests} and resent items in {@code dynamodb.batch.retries}.
+ *
+ * A batch is not a transaction: each item is written on its own, and a batch may not hold two
+ * writes of the same key.
+ */
+public class BatchWriter {
+    static final Logger log = LogManager.getLogger();
+
+    public static final int MAX_BATCH_ITEMS = 25;
+
+    private final DynamoDBMapper dynamoDBMapper;
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final ScheduledExecutorService scheduler;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final Counter itemsWritten;
+    private final Counter itemsFailed;
+    private final Counter requests;
+    private final Counter retries;
+
+    /**
+     * @param scheduler         sends the batches and their retries
+     * @param maxAttempts       requests made for a batch before its unprocessed items are given up
+     * @param baseBackoffMillis backoff ceiling before the first retry, doubled for every further one
+     * @param maxBackoffMillis  upper bound of the backoff ceiling
+     */
+    public BatchWriter(DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB, ScheduledExecutorService scheduler,
+                       MeterRegistry meterRegistry, int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.scheduler = scheduler;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.itemsWritten = Counter.builder("dynamodb.batch.items").tag("outcome", "written").register(meterRegistry);
+        this.itemsFailed = Counter.builder("dynamodb.batch.items").tag("outcome", "failed").register(meterRegistry);
+        this.requests = Counter.builder("dynamodb.batch.requests").register(meterRegistry);
+        this.retries = Counter.builder("dynamodb.batch.retries").register(meterRegistry);
+    }
+
+    /**
+     * Method that saves the records and waits until they are written.
+     *
+     * @see #write(Collection, Collection)
+     */
+    public BatchWriteResult putAll(Collection<?> records) {
+        return write(records, Collections.emptyList());
+    }
+
+    /**
+     * Method that deletes the records and waits until they are deleted.
+     *
+     * @see #write(Collection, Collection)
+     */
+    public BatchWriteResult deleteAll(Collection<?> records) {
+        return write(Collections.emptyList(), records);
+    }
+
+    /**
+     * Method that saves and deletes records and waits until every batch is done.
+     *
+     * @param puts    records to save, of any mapped table
+     * @param deletes records to delete; only their keys are read
+     * @return the items written, merged over every batch
+     * @throws IllegalStateException if a batch failed, or items were left unprocessed
+     */
+    public BatchWriteResult write(Collection<?> puts, Collection<?> deletes) {
+        BatchWriteResult result;
+        try {
+            result = submit(puts, deletes, batch -> { }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing a batch", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Batch write failed", ex.getCause());
+        }
+        if (result.getFailed() > 0) {
+            throw new IllegalStateException(result.getFailed() + " items were still unprocessed after "
+                    + maxAttempts + " attempts");
+        }
+        return result;
+    }
+
+    /**
+     * Method that saves and deletes records in batches of up to {@value #MAX_BATCH_ITEMS}, without
+     * waiting for them.
+     *
+     * @param puts     records to save, of any mapped table
+     * @param deletes  records to delete; only their keys are read
+     * @param listener called with each batch's result as it completes, from the writer's threads
+     * @return completes with the results of all batches merged, or exceptionally if a request failed
+     */
+    public CompletableFuture<BatchWriteResult> submit(Collection<?> puts, Collection<?> deletes,
+                                                      Consumer<? super BatchWriteResult> listener) {
+        List<Map.Entry<String, WriteRequest>> writes = new ArrayList<>(puts.size() + deletes.size());
+        for (Object record : puts) {
+            writes.add(new AbstractMap.SimpleEntry<>(tableName(record),
+                    new WriteRequest().withPutRequest(new PutRequest().withItem(toItem(record)))));
+        }
+        for (Object record : deletes) {
+            writes.add(new AbstractMap.SimpleEntry<>(tableName(record),
+                    new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(toKey(record)))));
+        }
+        List<CompletableFuture<BatchWriteResult>> batches = new ArrayList<>();
+        for (int from = 0; from < writes.size(); from += MAX_BATCH_ITEMS) {
+            Map<String, List<WriteRequest>> requestItems = new HashMap<>();
+            for (Map.Entry<String, WriteRequest> write : writes.subList(from, Math.min(from + MAX_BATCH_ITEMS, writes.size()))) {
+                requestItems.computeIfAbsent(write.getKey(), table -> new ArrayList<>()).add(write.getValue());
+            }
+            CompletableFuture<BatchWriteResult> batch = new CompletableFuture<>();
+            int items = Math.min(MAX_BATCH_ITEMS, writes.size() - from);
+            scheduler.execute(() -> send(requestItems, items, 0, batch));
+            // The write completes only after the listener has seen every batch
+            batches.add(batch.thenApply(result -> {
+                listener.accept(result);
+                return result;
+            }));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            BatchWriteResult merged = BatchWriteResult.empty();
+            for (CompletableFuture<BatchWriteResult> batch : batches) {
+                merged = merged.merge(batch.join());
+            }
+            return merged;
+        });
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void send(Map<String, List<WriteRequest>> requestItems, int items, int attempt,
+                      CompletableFuture<BatchWriteResult> batch) {
+        BatchWriteItemResult result;
+        try {
+            result = amazonDynamoDB.batchWriteItem(new BatchWriteItemRequest().withRequestItems(requestItems));
+        } catch (RuntimeException ex) {
+            batch.completeExceptionally(ex);
+            return;
+        }
+        requests.increment();
+        Map<String, List<WriteRequest>> unprocessed = result.getUnprocessedItems() == null
+                ? Collections.emptyMap() : result.getUnprocessedItems();
+        int remaining = count(unprocessed);
+        itemsWritten.increment(count(requestItems) - remaining);
+        if (remaining == 0) {
+            batch.complete(new BatchWriteResult(items, Collections.emptyMap(), attempt + 1));
+            return;
+        }
+        if (attempt + 1 >= maxAttempts) {
+            itemsFailed.increment(remaining);
+            log.warn("Giving up on {} unprocessed items after {} attempts", remaining, attempt + 1);
+            batch.complete(new BatchWriteResult(items - remaining, unprocessed, attempt + 1));
+            return;
+        }
+        retries.increment(remaining);
+        try {
+            scheduler.schedule(() -> send(unprocessed, items, attempt + 1, batch), backoffMillis(attempt),
+                    TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ex) {
+            // The writer is shutting down
+            batch.completeExceptionally(ex);
+        }
+    }
+
+    // Full jitter: anywhere between no wait and the exponential ceiling
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, AttributeValue> toItem(Object record) {
+        return dynamoDBMapper.getTableModel((Class<Object>) record.getClass()).convert(record);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, AttributeValue> toKey(Object record) {
+        return dynamoDBMapper.getTableModel((Class<Object>) record.getClass()).convertKey(record);
+    }
+
+    private static String tableName(Object record) {
+        DynamoDBTable table = record.getClass().getAnnotation(DynamoDBTable.class);
+        if (table == null) {
+            throw new IllegalArgumentException(record.getClass().getSimpleName() + " is not mapped to a table");
+        }
+        return table.tableName();
+    }
+
+    private static int count(Map<String, List<WriteRequest>> requestItems) {
+        int count = 0;
+        for (List<WriteRequest> writes : requestItems.values()) {
+            count += writes.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,8 @@
+package com.kenzie.appserver.repositories;
+
+import com.kenzie.appserver.repositories.model.EventAttendanceRecord;
+import org.springframework.data.repository.CrudRepository;
+
+// Declared so the table is created with the others; it is read and written through AttendanceShards
+public interface EventAttendanceRepository extends CrudRepository<EventAttendanceRecord, String> {
+}
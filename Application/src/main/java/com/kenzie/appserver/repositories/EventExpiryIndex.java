@@ -0,0 +1,79 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
+
+import java.util.Collections;
+
+/**
+ * Reads events through the expiry index, the global secondary index keyed by the hour each event
+ * expires in. A query touches only the events of one hour, so finding due events costs in
+ * proportion to the number of events expiring, not to the size of the table.
+ */
+public class EventExpiryIndex {
+
+    private static final String TABLE_NAME = EventRecord.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    private final DynamoDBMapper dynamoDBMapper;
+
+    private final AmazonDynamoDB amazonDynamoDB;
+
+    public EventExpiryIndex(DynamoDBMapper dynamoDBMapper, AmazonDynamoDB amazonDynamoDB) {
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.amazonDynamoDB = amazonDynamoDB;
+    }
+
+    /**
+     * Method that reads one page of the events expiring in an hour.
+     *
+     * @param bucket the expiry bucket of the hour, see {@link EventRecord#expiryBucket}
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of events in the page
+     * @return the page, with the cursor of the next one
+     */
+    public ScanPage<EventRecord> findExpiringIn(String bucket, String cursor, int limit) {
+        DynamoDBQueryExpression<EventRecord> queryExpression = new DynamoDBQueryExpression<EventRecord>()
+                .withIndexName(EventRecord.EXPIRY_INDEX)
+                .withConsistentRead(false)
+                .withKeyConditionExpression("#bucket = :bucket")
+                .withExpressionAttributeNames(Collections.singletonMap("#bucket", EventRecord.EXPIRY_BUCKET_ATTRIBUTE))
+                .withExpressionAttributeValues(Collections.singletonMap(":bucket", new AttributeValue().withS(bucket)))
+                .withExclusiveStartKey(TableScanner.decodeCursor(cursor))
+                .withLimit(limit);
+        QueryResultPage<EventRecord> page = dynamoDBMapper.queryPage(EventRecord.class, queryExpression);
+        return new ScanPage<>(page.getResults(), TableScanner.encodeCursor(page.getLastEvaluatedKey()));
+    }
+
+    /**
+     * Method that adds a stored event to the index. Only the bucket attribute is written, so an
+     * update made to the event since it was read is not overwritten.
+     *
+     * @param eventRecord the event, as read from the table
+     */
+    public void index(EventRecord eventRecord) {
+        String bucket = eventRecord.getExpiryBucket();
+        if (bucket == null) {
+            return;
+        }
+        UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(TABLE_NAME)
+                .withKey(Collections.singletonMap("id", new AttributeValue().withS(eventRecord.getEventID())))
+                .withUpdateExpression("SET #bucket = :bucket")
+                .withConditionExpression("attribute_exists(id)")
+                .withExpressionAttributeNames(Collections.singletonMap("#bucket", EventRecord.EXPIRY_BUCKET_ATTRIBUTE))
+                .withExpressionAttributeValues(Collections.singletonMap(":bucket", new AttributeValue().withS(bucket)));
+        try {
+            amazonDynamoDB.updateItem(request);
+        } catch (ConditionalCheckFailedException ex) {
+            // Deleted since it was read; there is nothing left to index
+        }
+    }
+}
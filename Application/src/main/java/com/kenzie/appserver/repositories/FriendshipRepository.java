@@ -0,0 +1,10 @@
+package com.kenzie.appserver.repositories;
+
+import com.kenzie.appserver.repositories.model.FriendshipId;
+import com.kenzie.appserver.repositories.model.FriendshipRecord;
+import org.springframework.data.repository.CrudRepository;
+
+// Declared so the table is created with the others; edges are read through
+// MembershipIndex and written through MembershipWriter
+public interface FriendshipRepository extends CrudRepository<FriendshipRecord, FriendshipId> {
+}
@@ -0,0 +1,67 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.kenzie.appserver.repositories.model.OrganizationRecord;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adds expired events to the events held by their sponsoring organization. Each event is added with
+ * one conditional update of the organization item, which appends the event's name to the held
+ * events and its id to a set of the ids recorded so far, on condition that the set does not hold
+ * the id yet. Recording an event again, as a retried expiry or one that re-reads a bucket whose
+ * deletes have not reached the index yet does, changes nothing.
+ *
+ * The id set is not mapped on {@link OrganizationRecord}, so saving the record leaves it in place.
+ */
+public class HeldEventsWriter {
+
+    private static final String TABLE_NAME = OrganizationRecord.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    static final String HELD_EVENT_IDS_ATTRIBUTE = "HeldEventIds";
+
+    private final AmazonDynamoDB amazonDynamoDB;
+
+    public HeldEventsWriter(AmazonDynamoDB amazonDynamoDB) {
+        this.amazonDynamoDB = amazonDynamoDB;
+    }
+
+    /**
+     * Method that adds an event to the events held by an organization, once.
+     *
+     * @param organizationName the sponsoring organization
+     * @param eventId          the event, by which repeats are recognised
+     * @param eventName        the name added to the held events
+     * @return whether the event was added; false if it had been already, or there is no such organization
+     */
+    public boolean recordHeld(String organizationName, String eventId, String eventName) {
+        Map<String, String> names = new HashMap<>();
+        names.put("#id", OrganizationRecord.ID_ATTRIBUTE);
+        names.put("#held", OrganizationRecord.EVENTS_HELD_ATTRIBUTE);
+        names.put("#heldIds", HELD_EVENT_IDS_ATTRIBUTE);
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":none", new AttributeValue().withL(Collections.emptyList()));
+        values.put(":name", new AttributeValue().withL(new AttributeValue().withS(eventName)));
+        values.put(":ids", new AttributeValue().withSS(eventId));
+        values.put(":eventId", new AttributeValue().withS(eventId));
+        UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(TABLE_NAME)
+                .withKey(Collections.singletonMap(OrganizationRecord.ID_ATTRIBUTE, new AttributeValue().withS(organizationName)))
+                .withUpdateExpression("SET #held = list_append(if_not_exists(#held, :none), :name) ADD #heldIds :ids")
+                .withConditionExpression("attribute_exists(#id) AND NOT contains(#heldIds, :eventId)")
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values);
+        try {
+            amazonDynamoDB.updateItem(request);
+            return true;
+        } catch (ConditionalCheckFailedException ex) {
+            return false;
+        }
+    }
+}
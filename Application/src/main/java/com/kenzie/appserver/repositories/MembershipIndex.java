@@ -0,0 +1,210 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.kenzie.appserver.repositories.model.AttendanceRecord;
+import com.kenzie.appserver.repositories.model.FriendshipRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads the membership tables: who attends an event, which events a user joined, and a user's
+ * friends. Lists are paged queries over one partition, a single membership is a key lookup and a
+ * count is a query that returns no items, so none of them load the user or event item.
+ *
+ * Events a user joined are read from the user index of the attendance table, which is eventually
+ * consistent: a join may take a moment to show up there.
+ *
+ * The attendees of an event sharded by {@link AttendanceShards} are spread over its partitions, which
+ * are read one after the other; its attendee count adds the joins counted for its shards to the count
+ * of its unsharded partition.
+ */
+public class MembershipIndex {
+
+    private static final int FULL_LIST_PAGE_SIZE = 500;
+
+    private final DynamoDBMapper dynamoDBMapper;
+    private final AttendanceShards attendanceShards;
+
+    public MembershipIndex(DynamoDBMapper dynamoDBMapper, AttendanceShards attendanceShards) {
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.attendanceShards = attendanceShards;
+    }
+
+    /**
+     * Method that reads one page of an event's attendees, in user id order within each of the
+     * event's partitions.
+     *
+     * @param eventId the event
+     * @param cursor  the cursor returned with the previous page, or null for the first page
+     * @param limit   the maximum number of attendees in the page
+     * @return the ids of the attendees, with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public ScanPage<String> findAttendees(String eventId, String cursor, int limit) {
+        List<String> partitions = AttendanceShards.partitionsOf(eventId, attendanceShards.shardsOf(eventId));
+        Map<String, AttributeValue> startKey = TableScanner.decodeCursor(cursor);
+        int partition = 0;
+        if (startKey != null) {
+            AttributeValue resumed = startKey.get(AttendanceRecord.EVENT_ID_ATTRIBUTE);
+            partition = resumed == null ? -1 : partitions.indexOf(resumed.getS());
+            if (partition < 0) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            if (!startKey.containsKey(AttendanceRecord.USER_ID_ATTRIBUTE)) {
+                // Names the partition to start next, from its beginning
+                startKey = null;
+            }
+        }
+        List<String> attendees = new ArrayList<>();
+        while (true) {
+            QueryResultPage<AttendanceRecord> page = dynamoDBMapper.queryPage(AttendanceRecord.class,
+                    attendeesOf(partitions.get(partition))
+                            .withExclusiveStartKey(startKey)
+                            .withLimit(limit - attendees.size()));
+            for (AttendanceRecord edge : page.getResults()) {
+                attendees.add(edge.getUserId());
+            }
+            startKey = page.getLastEvaluatedKey();
+            if (startKey == null || startKey.isEmpty()) {
+                if (++partition == partitions.size()) {
+                    return new ScanPage<>(attendees, null);
+                }
+                startKey = null;
+                if (attendees.size() >= limit) {
+                    return new ScanPage<>(attendees, TableScanner.encodeCursor(Collections.singletonMap(
+                            AttendanceRecord.EVENT_ID_ATTRIBUTE, new AttributeValue().withS(partitions.get(partition)))));
+                }
+            } else if (attendees.size() >= limit) {
+                return new ScanPage<>(attendees, TableScanner.encodeCursor(startKey));
+            }
+        }
+    }
+
+    /**
+     * Method that reads one page of the events a user joined, in event id order.
+     *
+     * @see #findAttendees(String, String, int)
+     */
+    public ScanPage<String> findJoinedEvents(String userId, String cursor, int limit) {
+        return queryPage(AttendanceRecord.class, eventsOf(userId), cursor, limit, MembershipIndex::eventIdOf);
+    }
+
+    /**
+     * Method that reads one page of a user's friends, in user id order.
+     *
+     * @see #findAttendees(String, String, int)
+     */
+    public ScanPage<String> findFriends(String userId, String cursor, int limit) {
+        return queryPage(FriendshipRecord.class, friendsOf(userId), cursor, limit, FriendshipRecord::getFriendId);
+    }
+
+    public List<String> findAllAttendees(String eventId) {
+        List<String> attendees = new ArrayList<>();
+        for (AttendanceRecord edge : findAllAttendanceEdges(eventId)) {
+            attendees.add(edge.getUserId());
+        }
+        return Collections.unmodifiableList(attendees);
+    }
+
+    /**
+     * @return the attendance edges of an event, keyed by the partition each one is in
+     */
+    public List<AttendanceRecord> findAllAttendanceEdges(String eventId) {
+        List<AttendanceRecord> edges = new ArrayList<>();
+        for (String partition : AttendanceShards.partitionsOf(eventId, attendanceShards.shardsOf(eventId))) {
+            edges.addAll(queryAll(AttendanceRecord.class, attendeesOf(partition), Function.identity()));
+        }
+        return Collections.unmodifiableList(edges);
+    }
+
+    public List<String> findAllJoinedEvents(String userId) {
+        return queryAll(AttendanceRecord.class, eventsOf(userId), MembershipIndex::eventIdOf);
+    }
+
+    public List<String> findAllFriends(String userId) {
+        return queryAll(FriendshipRecord.class, friendsOf(userId), FriendshipRecord::getFriendId);
+    }
+
+    public boolean isAttending(String eventId, String userId) {
+        int shards = attendanceShards.shardsOf(eventId);
+        if (shards == 1) {
+            return dynamoDBMapper.load(AttendanceRecord.class, eventId, userId) != null;
+        }
+        List<AttendanceRecord> keys = new ArrayList<>();
+        for (String partition : AttendanceShards.partitionsOf(eventId, userId, shards)) {
+            keys.add(new AttendanceRecord(partition, userId));
+        }
+        for (List<Object> loaded : dynamoDBMapper.batchLoad(keys).values()) {
+            if (!loaded.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean areFriends(String userId, String friendId) {
+        return dynamoDBMapper.load(FriendshipRecord.class, userId, friendId) != null;
+    }
+
+    public int countAttendees(String eventId) {
+        return dynamoDBMapper.count(AttendanceRecord.class, attendeesOf(eventId))
+                + (int) attendanceShards.countShardedJoins(eventId);
+    }
+
+    public int countFriends(String userId) {
+        return dynamoDBMapper.count(FriendshipRecord.class, friendsOf(userId));
+    }
+
+    private static DynamoDBQueryExpression<AttendanceRecord> attendeesOf(String partition) {
+        return new DynamoDBQueryExpression<AttendanceRecord>()
+                .withHashKeyValues(new AttendanceRecord(partition, null));
+    }
+
+    private static DynamoDBQueryExpression<AttendanceRecord> eventsOf(String userId) {
+        return new DynamoDBQueryExpression<AttendanceRecord>()
+                .withIndexName(AttendanceRecord.USER_INDEX)
+                .withConsistentRead(false)
+                .withHashKeyValues(new AttendanceRecord(null, userId));
+    }
+
+    private static DynamoDBQueryExpression<FriendshipRecord> friendsOf(String userId) {
+        return new DynamoDBQueryExpression<FriendshipRecord>()
+                .withHashKeyValues(new FriendshipRecord(userId, null));
+    }
+
+    private static String eventIdOf(AttendanceRecord edge) {
+        return AttendanceRecord.eventIdOf(edge.getEventId());
+    }
+
+    private <T> ScanPage<String> queryPage(Class<T> type, DynamoDBQueryExpression<T> queryExpression, String cursor,
+                                           int limit, Function<T, String> member) {
+        QueryResultPage<T> page = dynamoDBMapper.queryPage(type, queryExpression
+                .withExclusiveStartKey(TableScanner.decodeCursor(cursor))
+                .withLimit(limit));
+        return new ScanPage<>(page.getResults(), TableScanner.encodeCursor(page.getLastEvaluatedKey())).map(member);
+    }
+
+    private <T, R> List<R> queryAll(Class<T> type, DynamoDBQueryExpression<T> queryExpression,
+                                    Function<T, R> member) {
+        List<R> members = new ArrayList<>();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            QueryResultPage<T> page = dynamoDBMapper.queryPage(type, queryExpression
+                    .withExclusiveStartKey(startKey)
+                    .withLimit(FULL_LIST_PAGE_SIZE));
+            for (T edge : page.getResults()) {
+                members.add(member.apply(edge));
+            }
+            startKey = page.getLastEvaluatedKey();
+        } while (startKey != null && !startKey.isEmpty());
+        return Collections.unmodifiableList(members);
+    }
+}
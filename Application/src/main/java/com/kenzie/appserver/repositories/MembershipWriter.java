@@ -0,0 +1,240 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.ConditionCheck;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.Put;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.kenzie.appserver.repositories.model.AttendanceRecord;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.FriendshipRecord;
+import com.kenzie.appserver.repositories.model.UserRecord;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Links users to the events they join and to their friends by writing one edge item per link into
+ * the membership tables, instead of appending to list attributes of the user and event items. A link
+ * is a single {@code TransactWriteItems} call: condition checks that both items exist, and puts of the
+ * edges on condition that they do not exist yet. Either every edge is written or none is.
+ *
+ * Nothing is read first and the user and event items are not rewritten, so a link costs the same
+ * whatever the number of links either side already has, and no item grows with its links.
+ *
+ * Attendance of an event sharded by {@link AttendanceShards} is written to the user's shard, and the
+ * shards earlier shard counts placed the user in are checked instead of the one partition. The event
+ * is then checked with a read rather than a condition check, which DynamoDB bills and throttles as a
+ * write on the event item. A throttled join scales the event's shards up and is tried once more.
+ */
+public class MembershipWriter {
+    static final Logger log = LogManager.getLogger();
+
+    private static final String USERS_TABLE = UserRecord.class.getAnnotation(DynamoDBTable.class).tableName();
+    private static final String EVENTS_TABLE = EventRecord.class.getAnnotation(DynamoDBTable.class).tableName();
+    private static final String ATTENDANCE_TABLE = AttendanceRecord.class.getAnnotation(DynamoDBTable.class).tableName();
+    private static final String FRIENDSHIPS_TABLE = FriendshipRecord.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+    private static final List<String> THROTTLED = Arrays.asList("ThrottlingError", "ProvisionedThroughputExceeded");
+
+    /**
+     * Outcome of linking two items.
+     */
+    public enum LinkOutcome {
+        LINKED,
+        ALREADY_LINKED,
+        FIRST_MISSING,
+        SECOND_MISSING
+    }
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final AttendanceShards attendanceShards;
+
+    public MembershipWriter(AmazonDynamoDB amazonDynamoDB, AttendanceShards attendanceShards) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.attendanceShards = attendanceShards;
+    }
+
+    /**
+     * Method that records a user attending an event.
+     *
+     * @param userId  the user joining, the first item
+     * @param eventId the event joined, the second item
+     * @return LINKED, ALREADY_LINKED if the user had joined the event, or which item does not exist
+     */
+    public LinkOutcome addAttendee(String userId, String eventId) {
+        int shards = attendanceShards.shardsOf(eventId);
+        try {
+            return addAttendee(userId, eventId, shards);
+        } catch (AmazonServiceException ex) {
+            if (!attendanceShards.isEnabled() || !throttled(ex)) {
+                throw ex;
+            }
+            int scaled = attendanceShards.scaleUp(eventId, shards);
+            if (scaled == shards) {
+                throw ex;
+            }
+            log.debug("Join of user {} to event {} throttled, retrying on {} shards", userId, eventId, scaled);
+            return addAttendee(userId, eventId, scaled);
+        }
+    }
+
+    private LinkOutcome addAttendee(String userId, String eventId, int shards) {
+        if (shards == 1) {
+            return link(Arrays.asList(exists(USERS_TABLE, userId), exists(EVENTS_TABLE, eventId)),
+                    Collections.singletonList(new TransactWriteItem().withPut(edge(ATTENDANCE_TABLE,
+                            AttendanceRecord.EVENT_ID_ATTRIBUTE, eventId, AttendanceRecord.USER_ID_ATTRIBUTE, userId))));
+        }
+        if (!eventExists(eventId)) {
+            return LinkOutcome.SECOND_MISSING;
+        }
+        List<String> partitions = AttendanceShards.partitionsOf(eventId, userId, shards);
+        List<TransactWriteItem> edges = new ArrayList<>();
+        edges.add(new TransactWriteItem().withPut(edge(ATTENDANCE_TABLE,
+                AttendanceRecord.EVENT_ID_ATTRIBUTE, partitions.get(0), AttendanceRecord.USER_ID_ATTRIBUTE, userId)));
+        for (String partition : partitions.subList(1, partitions.size())) {
+            // Joined under an earlier shard count
+            edges.add(new TransactWriteItem().withConditionCheck(absent(ATTENDANCE_TABLE,
+                    AttendanceRecord.EVENT_ID_ATTRIBUTE, partition, AttendanceRecord.USER_ID_ATTRIBUTE, userId)));
+        }
+        LinkOutcome outcome = link(Collections.singletonList(exists(USERS_TABLE, userId)), edges);
+        if (outcome == LinkOutcome.LINKED) {
+            attendanceShards.recordJoin(eventId);
+        }
+        return outcome;
+    }
+
+    /**
+     * Method that records two users as each other's friends, one edge in each direction.
+     *
+     * @param userId   the user adding a friend, the first item
+     * @param friendId the friend added, the second item
+     * @return LINKED, ALREADY_LINKED if the user already had the friend, or which user does not exist
+     * @throws IllegalArgumentException if both ids are the same user
+     */
+    public LinkOutcome addFriendship(String userId, String friendId) {
+        if (userId.equals(friendId)) {
+            // A transaction may not touch the same item twice
+            throw new IllegalArgumentException("User " + userId + " cannot befriend themselves");
+        }
+        List<TransactWriteItem> edges = new ArrayList<>();
+        edges.add(new TransactWriteItem().withPut(edge(FRIENDSHIPS_TABLE,
+                FriendshipRecord.USER_ID_ATTRIBUTE, userId, FriendshipRecord.FRIEND_ID_ATTRIBUTE, friendId)));
+        edges.add(new TransactWriteItem().withPut(edge(FRIENDSHIPS_TABLE,
+                FriendshipRecord.USER_ID_ATTRIBUTE, friendId, FriendshipRecord.FRIEND_ID_ATTRIBUTE, userId)));
+        return link(Arrays.asList(exists(USERS_TABLE, userId), exists(USERS_TABLE, friendId)), edges);
+    }
+
+    /**
+     * @param exists checks of the first item, then of the second item if it is checked in the transaction
+     * @param edges  puts of the edges and checks that they do not exist elsewhere
+     */
+    private LinkOutcome link(List<ConditionCheck> exists, List<TransactWriteItem> edges) {
+        List<TransactWriteItem> items = new ArrayList<>();
+        for (ConditionCheck check : exists) {
+            items.add(new TransactWriteItem().withConditionCheck(check));
+        }
+        items.addAll(edges);
+        try {
+            amazonDynamoDB.transactWriteItems(new TransactWriteItemsRequest().withTransactItems(items));
+            return LinkOutcome.LINKED;
+        } catch (TransactionCanceledException ex) {
+            // One reason per item, in request order
+            List<CancellationReason> reasons = ex.getCancellationReasons();
+            if (reasons == null || reasons.size() != items.size()) {
+                throw ex;
+            }
+            if (failedCondition(reasons.get(0))) {
+                return LinkOutcome.FIRST_MISSING;
+            }
+            if (exists.size() > 1 && failedCondition(reasons.get(1))) {
+                return LinkOutcome.SECOND_MISSING;
+            }
+            for (CancellationReason reason : reasons.subList(exists.size(), reasons.size())) {
+                if (failedCondition(reason)) {
+                    return LinkOutcome.ALREADY_LINKED;
+                }
+            }
+            // Conflicts with another transaction, throttling; the SDK has already retried those
+            throw ex;
+        }
+    }
+
+    private static boolean failedCondition(CancellationReason reason) {
+        return CONDITIONAL_CHECK_FAILED.equals(reason.getCode());
+    }
+
+    private static boolean throttled(AmazonServiceException ex) {
+        if (RetryUtils.isThrottlingException(ex)) {
+            return true;
+        }
+        if (ex instanceof TransactionCanceledException) {
+            List<CancellationReason> reasons = ((TransactionCanceledException) ex).getCancellationReasons();
+            if (reasons != null) {
+                for (CancellationReason reason : reasons) {
+                    if (THROTTLED.contains(reason.getCode())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean eventExists(String eventId) {
+        Map<String, AttributeValue> item = amazonDynamoDB.getItem(new GetItemRequest()
+                .withTableName(EVENTS_TABLE)
+                .withKey(Collections.singletonMap("id", new AttributeValue().withS(eventId)))
+                .withProjectionExpression("id"))
+                .getItem();
+        return item != null && !item.isEmpty();
+    }
+
+    private static ConditionCheck exists(String tableName, String id) {
+        return new ConditionCheck()
+                .withTableName(tableName)
+                .withKey(Collections.singletonMap("id", new AttributeValue().withS(id)))
+                .withConditionExpression("attribute_exists(id)");
+    }
+
+    private static Put edge(String tableName, String hashAttribute, String hashKey, String rangeAttribute,
+                            String rangeKey) {
+        return new Put()
+                .withTableName(tableName)
+                .withItem(key(hashAttribute, hashKey, rangeAttribute, rangeKey))
+                .withConditionExpression("attribute_not_exists(#hash)")
+                .withExpressionAttributeNames(Collections.singletonMap("#hash", hashAttribute));
+    }
+
+    private static ConditionCheck absent(String tableName, String hashAttribute, String hashKey, String rangeAttribute,
+                                         String rangeKey) {
+        return new ConditionCheck()
+                .withTableName(tableName)
+                .withKey(key(hashAttribute, hashKey, rangeAttribute, rangeKey))
+                .withConditionExpression("attribute_not_exists(#hash)")
+                .withExpressionAttributeNames(Collections.singletonMap("#hash", hashAttribute));
+    }
+
+    private static Map<String, AttributeValue> key(String hashAttribute, String hashKey, String rangeAttribute,
+                                                   String rangeKey) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(hashAttribute, new AttributeValue().withS(hashKey));
+        key.put(rangeAttribute, new AttributeValue().withS(rangeKey));
+        return key;
+    }
+}
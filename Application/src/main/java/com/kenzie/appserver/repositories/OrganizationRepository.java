@@ -1,12 +1,21 @@
 package com.kenzie.appserver.repositories;
 
 
+import com.kenzie.appserver.config.CacheConfig;
 import com.kenzie.appserver.repositories.model.OrganizationRecord;
 import org.socialsignin.spring.data.dynamodb.repository.EnableScan;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.repository.CrudRepository;
 
 @EnableScan
 public interface OrganizationRepository extends CrudRepository<OrganizationRecord, String> {
 
+    // Every write evicts the cached copy, whichever service made it
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ORGANIZATIONS, key = "#p0.organizationName")
+    <S extends OrganizationRecord> S save(S entity);
 
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ORGANIZATIONS, key = "#p0")
+    void deleteById(String id);
 }
@@ -0,0 +1,220 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Scans whole tables with parallel segment workers, for full-table work such as expiring events
+ * or warming the cache. DynamoDB splits the table into {@code TotalSegments} disjoint segments and
+ * each worker pages through one of them on a bounded executor, so a scan takes roughly the time of
+ * its largest segment instead of the whole table.
+ *
+ * All workers of a scan share one rate limiter over the read capacity units their pages consume, so
+ * a full-table scan cannot starve the online reads of the table's provisioned throughput. Each
+ * page is paid for after it is read, which delays the worker's next page.
+ *
+ * The consumer is called from several workers at once and must be thread safe. When a worker
+ * fails, the others stop at their next page and the scan throws.
+ */
+public class ParallelScanner {
+    static final Logger log = LogManager.getLogger();
+
+    /**
+     * Items and pages read so far by each segment of a scan.
+     */
+    public static class ScanProgress {
+        private final AtomicLongArray items;
+        private final AtomicLongArray pages;
+        private final AtomicLongArray finished;
+
+        ScanProgress(int totalSegments) {
+            this.items = new AtomicLongArray(totalSegments);
+            this.pages = new AtomicLongArray(totalSegments);
+            this.finished = new AtomicLongArray(totalSegments);
+        }
+
+        public int getTotalSegments() {
+            return items.length();
+        }
+
+        public long getItems(int segment) {
+            return items.get(segment);
+        }
+
+        public long getPages(int segment) {
+            return pages.get(segment);
+        }
+
+        public boolean isFinished(int segment) {
+            return finished.get(segment) != 0;
+        }
+
+        public long getItems() {
+            long total = 0;
+            for (int segment = 0; segment < items.length(); ++segment) {
+                total += items.get(segment);
+            }
+            return total;
+        }
+
+        public int getFinishedSegments() {
+            int total = 0;
+            for (int segment = 0; segment < finished.length(); ++segment) {
+                total += finished.get(segment);
+            }
+            return total;
+        }
+    }
+
+    private final DynamoDBMapper dynamoDBMapper;
+    private final ExecutorService executor;
+    private final int totalSegments;
+    private final int pageSize;
+    private final double readUnitsPerSecond;
+
+    /**
+     * @param executor           runs the segment workers; its thread count bounds the scan parallelism
+     * @param totalSegments      number of segments scans are split into by default
+     * @param pageSize           maximum number of items read per page
+     * @param readUnitsPerSecond read capacity units a single scan may consume per second
+     */
+    public ParallelScanner(DynamoDBMapper dynamoDBMapper, ExecutorService executor, int totalSegments, int pageSize,
+                           double readUnitsPerSecond) {
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.executor = executor;
+        this.totalSegments = totalSegments;
+        this.pageSize = pageSize;
+        this.readUnitsPerSecond = readUnitsPerSecond;
+    }
+
+    /**
+     * Method that passes every record of a table to the consumer, split into the default number
+     * of segments.
+     *
+     * @see #scan(Class, int, Consumer)
+     */
+    public <T> ScanProgress scan(Class<T> type, Consumer<? super T> consumer) {
+        return scan(type, totalSegments, consumer);
+    }
+
+    /**
+     * Method that passes every record of a table to the consumer, reading the segments in parallel.
+     * Returns once every segment has been read.
+     *
+     * @param type          the record class mapped to the table
+     * @param totalSegments the number of segments to split the table into
+     * @param consumer      called once per record, concurrently from several segments
+     * @return the items and pages read per segment
+     * @throws IllegalStateException if reading a segment failed or the caller was interrupted
+     */
+    public <T> ScanProgress scan(Class<T> type, int totalSegments, Consumer<? super T> consumer) {
+        return scan(type, totalSegments, null, null, consumer);
+    }
+
+    /**
+     * Method that passes the records of a table matching a filter to the consumer, split into the
+     * default number of segments. The filter only saves transferring and handling records; the scan
+     * still reads, and pays for, the whole table.
+     *
+     * @param filterExpression  DynamoDB filter expression the records must match
+     * @param expressionValues  values of the placeholders in the filter expression, or null
+     * @see #scan(Class, int, Consumer)
+     */
+    public <T> ScanProgress scan(Class<T> type, String filterExpression, Map<String, AttributeValue> expressionValues,
+                                 Consumer<? super T> consumer) {
+        return scan(type, totalSegments, filterExpression, expressionValues, consumer);
+    }
+
+    private <T> ScanProgress scan(Class<T> type, int totalSegments, String filterExpression,
+                                  Map<String, AttributeValue> expressionValues, Consumer<? super T> consumer) {
+        ScanProgress progress = new ScanProgress(totalSegments);
+        RateLimiter rateLimiter = RateLimiter.create(readUnitsPerSecond);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Future<?>> workers = new ArrayList<>(totalSegments);
+        for (int segment = 0; segment < totalSegments; ++segment) {
+            int current = segment;
+            workers.add(executor.submit(() -> scanSegment(type, current, totalSegments, filterExpression,
+                    expressionValues, consumer, rateLimiter, progress, cancelled)));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException ex) {
+            cancel(workers, cancelled);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning " + type.getSimpleName(), ex);
+        } catch (ExecutionException ex) {
+            cancel(workers, cancelled);
+            throw new IllegalStateException("Parallel scan of " + type.getSimpleName() + " failed", ex.getCause());
+        }
+        log.info("Scanned {} {} records in {} segments", progress.getItems(), type.getSimpleName(), totalSegments);
+        return progress;
+    }
+
+    private <T> void scanSegment(Class<T> type, int segment, int totalSegments, String filterExpression,
+                                 Map<String, AttributeValue> expressionValues, Consumer<? super T> consumer,
+                                 RateLimiter rateLimiter, ScanProgress progress, AtomicBoolean cancelled) {
+        Map<String, AttributeValue> startKey = null;
+        do {
+            if (cancelled.get()) {
+                return;
+            }
+            DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                    .withSegment(segment)
+                    .withTotalSegments(totalSegments)
+                    .withLimit(pageSize)
+                    .withExclusiveStartKey(startKey)
+                    .withFilterExpression(filterExpression)
+                    .withExpressionAttributeValues(expressionValues)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+            ScanResultPage<T> page = dynamoDBMapper.scanPage(type, scanExpression);
+            for (T record : page.getResults()) {
+                consumer.accept(record);
+            }
+            progress.items.addAndGet(segment, page.getResults().size());
+            progress.pages.incrementAndGet(segment);
+            rateLimiter.acquire(readUnits(page.getConsumedCapacity()));
+            startKey = page.getLastEvaluatedKey();
+        } while (startKey != null && !startKey.isEmpty());
+        progress.finished.set(segment, 1);
+        log.debug("Segment {}/{} of {} finished after {} items", segment + 1, totalSegments, type.getSimpleName(),
+                progress.getItems(segment));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // A page without reported capacity still costs one permit, so the limiter paces every request
+    private static int readUnits(ConsumedCapacity consumedCapacity) {
+        if (consumedCapacity == null || consumedCapacity.getCapacityUnits() == null) {
+            return 1;
+        }
+        return Math.max(1, (int) Math.ceil(consumedCapacity.getCapacityUnits()));
+    }
+
+    private static void cancel(List<Future<?>> workers, AtomicBoolean cancelled) {
+        cancelled.set(true);
+        for (Future<?> worker : workers) {
+            worker.cancel(true);
+        }
+    }
+}
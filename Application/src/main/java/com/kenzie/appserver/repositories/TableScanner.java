@@ -0,0 +1,101 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.kenzie.appserver.repositories.model.ScanPage;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Scans tables a page at a time, which the {@code findAll} of the repositories cannot do: their
+ * lazily loaded results keep every page read so far in memory.
+ *
+ * Paged scans hand out the scan's {@code LastEvaluatedKey} as an opaque cursor, the URL-safe base64
+ * of its attributes as JSON. Every table here has a string hash key, so only string attributes are
+ * carried.
+ */
+public class TableScanner {
+
+    private static final Gson GSON = new Gson();
+    private static final Type CURSOR_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+
+    // Each page is dropped once iterated, so memory use stays at one page whatever the table size
+    private static final DynamoDBMapperConfig ITERATION_ONLY = DynamoDBMapperConfig.builder()
+            .withPaginationLoadingStrategy(DynamoDBMapperConfig.PaginationLoadingStrategy.ITERATION_ONLY)
+            .build();
+
+    private final DynamoDBMapper dynamoDBMapper;
+
+    public TableScanner(DynamoDBMapper dynamoDBMapper) {
+        this.dynamoDBMapper = dynamoDBMapper;
+    }
+
+    /**
+     * Method that reads one page of a table.
+     *
+     * @param type   the record class mapped to the table
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of records in the page
+     * @return the page, with the cursor of the next one
+     * @throws IllegalArgumentException if the cursor was not handed out by a scan
+     */
+    public <T> ScanPage<T> scanPage(Class<T> type, String cursor, int limit) {
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                .withLimit(limit)
+                .withExclusiveStartKey(decodeCursor(cursor));
+        ScanResultPage<T> page = dynamoDBMapper.scanPage(type, scanExpression);
+        return new ScanPage<>(page.getResults(), encodeCursor(page.getLastEvaluatedKey()));
+    }
+
+    /**
+     * Method that passes every record of a table to the consumer as the scan pages arrive.
+     *
+     * @param type     the record class mapped to the table
+     * @param consumer called once per record, in scan order
+     */
+    public <T> void scanEach(Class<T> type, Consumer<? super T> consumer) {
+        for (T record : dynamoDBMapper.scan(type, new DynamoDBScanExpression(), ITERATION_ONLY)) {
+            consumer.accept(record);
+        }
+    }
+
+    static String encodeCursor(Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+        Map<String, String> attributes = new HashMap<>();
+        lastEvaluatedKey.forEach((name, value) -> attributes.put(name, value.getS()));
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(GSON.toJson(attributes).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Map<String, AttributeValue> decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        Map<String, String> attributes;
+        try {
+            attributes = GSON.fromJson(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8),
+                    CURSOR_TYPE);
+        } catch (IllegalArgumentException | JsonParseException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+        if (attributes == null || attributes.isEmpty() || attributes.containsValue(null)) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+        Map<String, AttributeValue> startKey = new HashMap<>();
+        attributes.forEach((name, value) -> startKey.put(name, new AttributeValue().withS(value)));
+        return startKey;
+    }
+}
@@ -1,9 +1,20 @@
 package com.kenzie.appserver.repositories;
 
+import com.kenzie.appserver.config.CacheConfig;
 import com.kenzie.appserver.repositories.model.UserRecord;
 import org.socialsignin.spring.data.dynamodb.repository.EnableScan;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.repository.CrudRepository;
 
 @EnableScan
 public interface UserRepository extends CrudRepository<UserRecord, String> {
+
+    // Every write evicts the cached copy, whichever service made it
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS, key = "#p0.userID")
+    <S extends UserRecord> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS, key = "#p0")
+    void deleteById(String id);
 }
@@ -0,0 +1,63 @@
+package com.kenzie.appserver.repositories.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Composite key of an attendance edge, for the Spring Data repository.
+ */
+public class AttendanceId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String eventId;
+
+    private String userId;
+
+    public AttendanceId(String eventId, String userId) {
+        this.eventId = eventId;
+        this.userId = userId;
+    }
+
+    public AttendanceId() {
+
+    }
+
+    @DynamoDBHashKey(attributeName = AttendanceRecord.EVENT_ID_ATTRIBUTE)
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+
+    @DynamoDBRangeKey(attributeName = AttendanceRecord.USER_ID_ATTRIBUTE)
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AttendanceId)) {
+            return false;
+        }
+        AttendanceId that = (AttendanceId) o;
+        return Objects.equals(eventId, that.eventId) && Objects.equals(userId, that.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(eventId, userId);
+    }
+}
@@ -0,0 +1,78 @@
+package com.kenzie.appserver.repositories.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexRangeKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import org.springframework.data.annotation.Id;
+
+/**
+ * One user attending one event. The table is keyed by event, with the attendees as sort keys, and
+ * its user index by user, with the events they joined as sort keys, so either side's list is a
+ * query and a single membership is a key lookup.
+ *
+ * A sharded event spreads its attendees over partitions keyed {@code <eventId>#<shard>}; see
+ * AttendanceShards. The partition key is then what {@link #getEventId()} returns.
+ */
+@DynamoDBTable(tableName = "Attendance")
+public class AttendanceRecord {
+
+    public static final String EVENT_ID_ATTRIBUTE = "Event_Id";
+    public static final String USER_ID_ATTRIBUTE = "User_Id";
+    public static final String USER_INDEX = "User_Attendance_Index";
+
+    private static final char SHARD_SEPARATOR = '#';
+
+    @Id
+    private AttendanceId attendanceId;
+
+    public AttendanceRecord(String eventId, String userId) {
+        this.attendanceId = new AttendanceId(eventId, userId);
+    }
+
+    public AttendanceRecord() {
+        this.attendanceId = new AttendanceId();
+    }
+
+    @DynamoDBIgnore
+    public AttendanceId getAttendanceId() {
+        return attendanceId;
+    }
+
+    @DynamoDBHashKey(attributeName = EVENT_ID_ATTRIBUTE)
+    @DynamoDBIndexRangeKey(globalSecondaryIndexName = USER_INDEX, attributeName = EVENT_ID_ATTRIBUTE)
+    public String getEventId() {
+        return attendanceId.getEventId();
+    }
+
+    public void setEventId(String eventId) {
+        attendanceId.setEventId(eventId);
+    }
+
+    @DynamoDBRangeKey(attributeName = USER_ID_ATTRIBUTE)
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = USER_INDEX, attributeName = USER_ID_ATTRIBUTE)
+    public String getUserId() {
+        return attendanceId.getUserId();
+    }
+
+    public void setUserId(String userId) {
+        attendanceId.setUserId(userId);
+    }
+
+    /**
+     * @return the partition key of one shard of the event's attendees
+     */
+    public static String partitionKey(String eventId, int shard) {
+        return eventId + SHARD_SEPARATOR + shard;
+    }
+
+    /**
+     * @return the event id of a partition key, sharded or not
+     */
+    public static String eventIdOf(String partitionKey) {
+        int separator = partitionKey.lastIndexOf(SHARD_SEPARATOR);
+        return separator < 0 ? partitionKey : partitionKey.substring(0, separator);
+    }
+}
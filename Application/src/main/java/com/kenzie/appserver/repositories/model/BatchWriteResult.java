@@ -0,0 +1,64 @@
+package com.kenzie.appserver.repositories.model;
+
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch write: the number of items written, and the items still unprocessed once the
+ * writer ran out of attempts, by table name.
+ */
+public class BatchWriteResult {
+
+    private final int written;
+
+    private final Map<String, List<WriteRequest>> unprocessedItems;
+
+    private final int attempts;
+
+    public BatchWriteResult(int written, Map<String, List<WriteRequest>> unprocessedItems, int attempts) {
+        this.written = written;
+        this.unprocessedItems = Collections.unmodifiableMap(unprocessedItems);
+        this.attempts = attempts;
+    }
+
+    public static BatchWriteResult empty() {
+        return new BatchWriteResult(0, Collections.emptyMap(), 0);
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    public Map<String, List<WriteRequest>> getUnprocessedItems() {
+        return unprocessedItems;
+    }
+
+    public int getFailed() {
+        int failed = 0;
+        for (List<WriteRequest> requests : unprocessedItems.values()) {
+            failed += requests.size();
+        }
+        return failed;
+    }
+
+    /**
+     * @return the most requests any one batch took
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public BatchWriteResult merge(BatchWriteResult other) {
+        Map<String, List<WriteRequest>> unprocessed = new HashMap<>();
+        for (BatchWriteResult result : new BatchWriteResult[]{this, other}) {
+            result.unprocessedItems.forEach((table, requests) ->
+                    unprocessed.computeIfAbsent(table, name -> new ArrayList<>()).addAll(requests));
+        }
+        return new BatchWriteResult(written + other.written, unprocessed, Math.max(attempts, other.attempts));
+    }
+}
@@ -0,0 +1,58 @@
+package com.kenzie.appserver.repositories.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+
+/**
+ * Attendance bookkeeping of a sharded event. The item keyed by the event id holds its shard count;
+ * the items keyed by {@code <eventId>#<shard>} each hold part of its count of sharded joins.
+ */
+@DynamoDBTable(tableName = "Event_Attendance")
+public class EventAttendanceRecord {
+
+    public static final String ID_ATTRIBUTE = "Id";
+    public static final String SHARDS_ATTRIBUTE = "Shards";
+    public static final String ATTENDEES_ATTRIBUTE = "Attendees";
+
+    private String id;
+
+    private Integer shards;
+
+    private Long attendees;
+
+    public EventAttendanceRecord(String id) {
+        this.id = id;
+    }
+
+    public EventAttendanceRecord() {
+
+    }
+
+    @DynamoDBHashKey(attributeName = ID_ATTRIBUTE)
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @DynamoDBAttribute(attributeName = SHARDS_ATTRIBUTE)
+    public Integer getShards() {
+        return shards;
+    }
+
+    public void setShards(Integer shards) {
+        this.shards = shards;
+    }
+
+    @DynamoDBAttribute(attributeName = ATTENDEES_ATTRIBUTE)
+    public Long getAttendees() {
+        return attendees;
+    }
+
+    public void setAttendees(Long attendees) {
+        this.attendees = attendees;
+    }
+}
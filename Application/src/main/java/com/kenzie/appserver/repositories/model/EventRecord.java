@@ -2,15 +2,28 @@ package com.kenzie.appserver.repositories.model;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
 
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @DynamoDBTable(tableName = "Events")
 
 public class EventRecord{
 
+    // Events expire a day after they end. The expiry index files every event under the hour it
+    // expires in, so due events are found by querying the elapsed hours instead of scanning.
+    public static final long EXPIRY_GRACE_HOURS = 24;
+    public static final String EXPIRY_INDEX = "Expiry_Bucket_Index";
+    public static final String EXPIRY_BUCKET_ATTRIBUTE = "Expiry_Bucket";
+    private static final DateTimeFormatter EXPIRY_BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
+
     private String eventID;
     private String name;
     private String location;
@@ -88,6 +101,39 @@ public class EventRecord{
         this.endTime = endTime;
     }
 
+    /**
+     * @return when the event expires, or null if its end time cannot be parsed
+     */
+    @DynamoDBIgnore
+    public LocalDateTime getExpiresAt() {
+        if (endTime == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(endTime).plusHours(EXPIRY_GRACE_HOURS);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    // Derived from the end time on every save, so it can never disagree with it
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = EXPIRY_INDEX, attributeName = EXPIRY_BUCKET_ATTRIBUTE)
+    public String getExpiryBucket() {
+        LocalDateTime expiresAt = getExpiresAt();
+        return expiresAt == null ? null : expiryBucket(expiresAt);
+    }
+
+    public void setExpiryBucket(String expiryBucket) {
+        // Derived from the end time; the stored value is not read back
+    }
+
+    /**
+     * @return the expiry bucket of the hour the time falls in
+     */
+    public static String expiryBucket(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.HOURS).format(EXPIRY_BUCKET_FORMAT);
+    }
+
     @DynamoDBAttribute(attributeName = "People_Attending")
     public List<String> getPeopleAttending() {
         return peopleAttending;
@@ -0,0 +1,63 @@
+package com.kenzie.appserver.repositories.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Composite key of a friendship edge, for the Spring Data repository.
+ */
+public class FriendshipId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String userId;
+
+    private String friendId;
+
+    public FriendshipId(String userId, String friendId) {
+        this.userId = userId;
+        this.friendId = friendId;
+    }
+
+    public FriendshipId() {
+
+    }
+
+    @DynamoDBHashKey(attributeName = FriendshipRecord.USER_ID_ATTRIBUTE)
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    @DynamoDBRangeKey(attributeName = FriendshipRecord.FRIEND_ID_ATTRIBUTE)
+    public String getFriendId() {
+        return friendId;
+    }
+
+    public void setFriendId(String friendId) {
+        this.friendId = friendId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FriendshipId)) {
+            return false;
+        }
+        FriendshipId that = (FriendshipId) o;
+        return Objects.equals(userId, that.userId) && Objects.equals(friendId, that.friendId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, friendId);
+    }
+}
@@ -0,0 +1,52 @@
+package com.kenzie.appserver.repositories.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import org.springframework.data.annotation.Id;
+
+/**
+ * One direction of a friendship: the friend is listed under the user. A friendship is stored as
+ * both directions, so each user's friends are a single query.
+ */
+@DynamoDBTable(tableName = "Friendships")
+public class FriendshipRecord {
+
+    public static final String USER_ID_ATTRIBUTE = "User_Id";
+    public static final String FRIEND_ID_ATTRIBUTE = "Friend_Id";
+
+    @Id
+    private FriendshipId friendshipId;
+
+    public FriendshipRecord(String userId, String friendId) {
+        this.friendshipId = new FriendshipId(userId, friendId);
+    }
+
+    public FriendshipRecord() {
+        this.friendshipId = new FriendshipId();
+    }
+
+    @DynamoDBIgnore
+    public FriendshipId getFriendshipId() {
+        return friendshipId;
+    }
+
+    @DynamoDBHashKey(attributeName = USER_ID_ATTRIBUTE)
+    public String getUserId() {
+        return friendshipId.getUserId();
+    }
+
+    public void setUserId(String userId) {
+        friendshipId.setUserId(userId);
+    }
+
+    @DynamoDBRangeKey(attributeName = FRIEND_ID_ATTRIBUTE)
+    public String getFriendId() {
+        return friendshipId.getFriendId();
+    }
+
+    public void setFriendId(String friendId) {
+        friendshipId.setFriendId(friendId);
+    }
+}
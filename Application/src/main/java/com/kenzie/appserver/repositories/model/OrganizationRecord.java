@@ -9,6 +9,9 @@ import java.util.List;
 @DynamoDBTable(tableName = "Organization")
 public class OrganizationRecord {
 
+    public static final String ID_ATTRIBUTE = "ID";
+    public static final String EVENTS_HELD_ATTRIBUTE = "EventsHeld";
+
     private  String organizationName;
 
     private  List<String> eventsHeldList;
@@ -20,7 +23,7 @@ public class OrganizationRecord {
         this.eventsHeldList = eventsHeldList;
     }
 
-    @DynamoDBHashKey(attributeName = "ID")
+    @DynamoDBHashKey(attributeName = ID_ATTRIBUTE)
     public String getOrganizationName() {
         return organizationName;
     }
@@ -29,7 +32,7 @@ public class OrganizationRecord {
         this.organizationName = organizationName;
     }
 
-    @DynamoDBAttribute(attributeName = "EventsHeld")
+    @DynamoDBAttribute(attributeName = EVENTS_HELD_ATTRIBUTE)
     public List<String> getEventsHeldList() {
         return eventsHeldList;
     }
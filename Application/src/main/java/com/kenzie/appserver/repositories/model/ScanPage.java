@@ -0,0 +1,38 @@
+package com.kenzie.appserver.repositories.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a table scan, with the cursor to pass back for the next page. The cursor is null on
+ * the last page.
+ */
+public class ScanPage<T> {
+
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    public ScanPage(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public <R> ScanPage<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> mapped = new ArrayList<>(items.size());
+        for (T item : items) {
+            mapped.add(mapper.apply(item));
+        }
+        return new ScanPage<>(mapped, nextCursor);
+    }
+}
@@ -0,0 +1,244 @@
+package com.kenzie.appserver.service;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.kenzie.appserver.cache.AttendeeCache;
+import com.kenzie.appserver.cache.CacheClient;
+import com.kenzie.appserver.cache.CacheTags;
+import com.kenzie.appserver.cache.Keyspace;
+import com.kenzie.appserver.cache.KeyspaceTtlPolicy;
+import com.kenzie.appserver.cache.NegativeResultCache;
+import com.kenzie.appserver.repositories.AttendanceShards;
+import com.kenzie.appserver.repositories.BatchWriter;
+import com.kenzie.appserver.repositories.EventExpiryIndex;
+import com.kenzie.appserver.repositories.MembershipIndex;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Expires events a day after they end. Due events are found through the expiry index, one hourly
+ * bucket at a time, from a checkpoint up to the current hour; each run handles at most a bounded
+ * number of batches and later runs pick up where it stopped. A bucket is checkpointed once every
+ * event in it has expired, so the work done grows with the number of expiring events rather than
+ * with the size of the table.
+ *
+ * The checkpoint lives in the shared cache. When there is none, on the first run or after it was
+ * lost, the engine sweeps the table once for the events the index cannot find: events stored before
+ * the index existed, which it expires or adds to the index, and events in buckets older than the
+ * look-back window it restarts from.
+ *
+ * An event written already due, backfilled or given an end time in the past, may fall in a bucket
+ * the checkpoint has passed; {@link #expireIfDue} expires it as it is written instead.
+ */
+@Service
+public class EventExpiryService {
+    static final Logger log = LogManager.getLogger();
+
+    static final String CHECKPOINT_KEY = Keyspace.CHECKPOINT.key("event-expiry");
+
+    private EventExpiryIndex eventExpiryIndex;
+    private BatchWriter batchWriter;
+    private MembershipIndex membershipIndex;
+    private AttendanceShards attendanceShards;
+    private ParallelScanner parallelScanner;
+    private OrganizationService organizationService;
+    private CacheClient cacheClient;
+    private CacheTags cacheTags;
+    private NegativeResultCache negativeResultCache;
+    private KeyspaceTtlPolicy ttlPolicy;
+    private MeterRegistry meterRegistry;
+
+    private int batchSize;
+    private int maxBatchesPerRun;
+    private long lookbackHours;
+
+    private volatile LocalDateTime lastCheckpoint;
+
+    public EventExpiryService(EventExpiryIndex eventExpiryIndex, BatchWriter batchWriter, MembershipIndex membershipIndex,
+                              AttendanceShards attendanceShards, ParallelScanner parallelScanner,
+                              OrganizationService organizationService,
+                              CacheClient cacheClient, CacheTags cacheTags,
+                              NegativeResultCache negativeResultCache, KeyspaceTtlPolicy ttlPolicy,
+                              MeterRegistry meterRegistry,
+                              @Value("${events.expiry.batch-size:100}") int batchSize,
+                              @Value("${events.expiry.max-batches-per-run:50}") int maxBatchesPerRun,
+                              @Value("${events.expiry.lookback-hours:168}") long lookbackHours) {
+        this.eventExpiryIndex = eventExpiryIndex;
+        this.batchWriter = batchWriter;
+        this.membershipIndex = membershipIndex;
+        this.attendanceShards = attendanceShards;
+        this.parallelScanner = parallelScanner;
+        this.organizationService = organizationService;
+        this.cacheClient = cacheClient;
+        this.cacheTags = cacheTags;
+        this.negativeResultCache = negativeResultCache;
+        this.ttlPolicy = ttlPolicy;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.lookbackHours = lookbackHours;
+    }
+
+    @Scheduled(fixedDelayString = "${events.expiry.interval-millis:300000}")
+    public void expireDueEvents() {
+        expireDueEvents(LocalDateTime.now());
+    }
+
+    /**
+     * Method that expires the events due at the given time, within this run's batch budget.
+     *
+     * @param now the current time
+     * @return the number of events expired
+     */
+    int expireDueEvents(LocalDateTime now) {
+        LocalDateTime currentBucket = now.truncatedTo(ChronoUnit.HOURS);
+        Optional<LocalDateTime> checkpoint = loadCheckpoint();
+        int expired = 0;
+        LocalDateTime bucket;
+        if (checkpoint.isPresent()) {
+            bucket = checkpoint.get();
+        } else {
+            bucket = currentBucket.minusHours(lookbackHours);
+            expired += sweepUnindexed(now, bucket);
+            saveCheckpoint(bucket);
+        }
+
+        String cursor = null;
+        for (int batches = 0; !bucket.isAfter(currentBucket) && batches < maxBatchesPerRun; ++batches) {
+            ScanPage<EventRecord> page =
+                    eventExpiryIndex.findExpiringIn(EventRecord.expiryBucket(bucket), cursor, batchSize);
+            List<EventRecord> due = new ArrayList<>();
+            for (EventRecord record : page.getItems()) {
+                if (isDue(record, now)) {
+                    due.add(record);
+                }
+            }
+            expired += expire(due);
+            cursor = page.getNextCursor();
+            if (cursor == null) {
+                // Only an elapsed hour is done for good; the current one still has events to come
+                if (bucket.equals(currentBucket)) {
+                    break;
+                }
+                bucket = bucket.plusHours(1);
+                saveCheckpoint(bucket);
+            }
+        }
+        if (expired > 0) {
+            log.info("Expired {} events, checkpoint at {}", expired, EventRecord.expiryBucket(bucket));
+        }
+        return expired;
+    }
+
+    /**
+     * Method that expires an event just written if it is already due, since the walk may have
+     * checkpointed its bucket already.
+     *
+     * @param eventRecord the event, as written
+     * @return whether the event was expired
+     */
+    public boolean expireIfDue(EventRecord eventRecord) {
+        return expireIfDue(eventRecord, LocalDateTime.now());
+    }
+
+    boolean expireIfDue(EventRecord eventRecord, LocalDateTime now) {
+        if (!isDue(eventRecord, now)) {
+            return false;
+        }
+        log.info("Event {} was written already due, expiring it", eventRecord.getEventID());
+        return expire(Collections.singletonList(eventRecord)) > 0;
+    }
+
+    // Finds events the index cannot: those without a bucket, and those before the restart bucket
+    private int sweepUnindexed(LocalDateTime now, LocalDateTime startBucket) {
+        List<EventRecord> due = Collections.synchronizedList(new ArrayList<>());
+        parallelScanner.scan(EventRecord.class,
+                "attribute_not_exists(" + EventRecord.EXPIRY_BUCKET_ATTRIBUTE + ") OR "
+                        + EventRecord.EXPIRY_BUCKET_ATTRIBUTE + " < :start",
+                Collections.singletonMap(":start", new AttributeValue().withS(EventRecord.expiryBucket(startBucket))),
+                record -> {
+                    if (isDue(record, now)) {
+                        due.add(record);
+                    } else {
+                        eventExpiryIndex.index(record);
+                    }
+                });
+        int expired = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            expired += expire(due.subList(from, Math.min(from + batchSize, due.size())));
+        }
+        return expired;
+    }
+
+    private static boolean isDue(EventRecord record, LocalDateTime now) {
+        LocalDateTime expiresAt = record.getExpiresAt();
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+
+    private int expire(List<EventRecord> due) {
+        if (due.isEmpty()) {
+            return 0;
+        }
+        // Recorded once per event, so a retry after a failed delete or a lagging index does not count it twice
+        organizationService.recordHeldEvents(due);
+        // The events' attendance edges go with them
+        List<Object> deletes = new ArrayList<>(due);
+        for (EventRecord record : due) {
+            deletes.addAll(membershipIndex.findAllAttendanceEdges(record.getEventID()));
+        }
+        batchWriter.deleteAll(deletes);
+        for (EventRecord record : due) {
+            attendanceShards.forget(record.getEventID());
+        }
+        // Only the expired events' entries are dropped, in one round trip, and their cached
+        // responses with them
+        List<String> keys = new ArrayList<>(due.size() * 2);
+        List<String> eventIds = new ArrayList<>(due.size());
+        for (EventRecord record : due) {
+            keys.add(EventService.eventKey(record.getEventID()));
+            keys.add(AttendeeCache.key(record.getEventID()));
+            eventIds.add(record.getEventID());
+        }
+        cacheClient.invalidateAll(keys);
+        negativeResultCache.recordMissing(Keyspace.EVENT, negativeResultCache.versions(Keyspace.EVENT, eventIds));
+        cacheTags.invalidate(EventService.LISTING_TAG);
+        Counter.builder("events.expired")
+                .register(meterRegistry)
+                .increment(due.size());
+        return due.size();
+    }
+
+    // Falls back to this node's last checkpoint, so a Redis outage does not trigger a sweep every run
+    private Optional<LocalDateTime> loadCheckpoint() {
+        Optional<String> stored = cacheClient.getValue(CHECKPOINT_KEY);
+        if (!stored.isPresent()) {
+            return Optional.ofNullable(lastCheckpoint);
+        }
+        try {
+            return Optional.of(LocalDateTime.parse(stored.get()));
+        } catch (DateTimeParseException ex) {
+            log.warn("Ignoring unreadable expiry checkpoint {}", stored.get());
+            return Optional.ofNullable(lastCheckpoint);
+        }
+    }
+
+    private void saveCheckpoint(LocalDateTime bucket) {
+        lastCheckpoint = bucket;
+        cacheClient.setValue(CHECKPOINT_KEY, ttlPolicy.getTtlSeconds(Keyspace.CHECKPOINT), bucket.toString());
+    }
+}
@@ -3,40 +3,115 @@ package com.kenzie.appserver.service;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.kenzie.appserver.cache.AttendeeCache;
 import com.kenzie.appserver.cache.CacheClient;
+import com.kenzie.appserver.cache.CacheEnvelope;
+import com.kenzie.appserver.cache.CacheFreshnessPolicy;
+import com.kenzie.appserver.cache.CacheTags;
+import com.kenzie.appserver.cache.Keyspace;
+import com.kenzie.appserver.cache.KeyspaceTtlPolicy;
+import com.kenzie.appserver.cache.NegativeResultCache;
+import com.kenzie.appserver.cache.RequestCoalescer;
+import com.kenzie.appserver.config.CacheConfig;
+import com.kenzie.appserver.repositories.AttendanceShards;
+import com.kenzie.appserver.repositories.BatchWriter;
 import com.kenzie.appserver.repositories.EventRepository;
+import com.kenzie.appserver.repositories.MembershipIndex;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.TableScanner;
 import com.kenzie.appserver.repositories.UserRepository;
 import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
 
 
 import com.kenzie.appserver.repositories.model.UserRecord;
 import com.kenzie.appserver.service.model.Event;
 import com.kenzie.capstone.service.client.LambdaServiceClient;
 import com.kenzie.capstone.service.model.NotificationData;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 
 @Service
 public class EventService {
+    static final Logger log = LogManager.getLogger();
+
+    // Cache key of the full event listing, and the tag invalidated whenever an event is added,
+    // removed or changed; see listingKey()
+    public static final String ALL_EVENTS_KEY = Keyspace.LISTING.key("events");
+    public static final String LISTING_TAG = "listing:events";
+
     private EventRepository eventRepository;
 
     private UserRepository userRepository;
 
     Gson gson = new Gson();    
     private CacheClient cacheClient;
+    private RequestCoalescer requestCoalescer;
+    private CacheFreshnessPolicy freshnessPolicy;
+    private KeyspaceTtlPolicy ttlPolicy;
+    private CacheTags cacheTags;
+    private AttendeeCache attendeeCache;
+    private NegativeResultCache negativeResultCache;
+    private TaskExecutor taskExecutor;
+    private TableScanner tableScanner;
+    private ParallelScanner parallelScanner;
+    private BatchWriter batchWriter;
+    private MembershipIndex membershipIndex;
+    private AttendanceShards attendanceShards;
+    private EventExpiryService eventExpiryService;
+    private Cache usersCache;
     private LambdaServiceClient lambdaServiceClient;
 
+    // Events with a background refresh queued or running, so a stale entry is refreshed only once
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
 
-    public EventService(EventRepository eventRepository, UserRepository userRepository, CacheClient cacheClient, LambdaServiceClient lambdaServiceClient){
+    public EventService(EventRepository eventRepository, UserRepository userRepository, CacheClient cacheClient,
+                        RequestCoalescer requestCoalescer, CacheFreshnessPolicy freshnessPolicy,
+                        KeyspaceTtlPolicy ttlPolicy, CacheTags cacheTags, AttendeeCache attendeeCache,
+                        NegativeResultCache negativeResultCache, TaskExecutor taskExecutor,
+                        TableScanner tableScanner, @Qualifier("listingScanner") ParallelScanner parallelScanner,
+                        BatchWriter batchWriter, MembershipIndex membershipIndex, AttendanceShards attendanceShards,
+                        EventExpiryService eventExpiryService, CacheManager cacheManager, LambdaServiceClient lambdaServiceClient){
         this.eventRepository = eventRepository;
         this.userRepository = userRepository;
         this.cacheClient = cacheClient;
+        this.requestCoalescer = requestCoalescer;
+        this.freshnessPolicy = freshnessPolicy;
+        this.ttlPolicy = ttlPolicy;
+        this.cacheTags = cacheTags;
+        this.attendeeCache = attendeeCache;
+        this.negativeResultCache = negativeResultCache;
+        this.taskExecutor = taskExecutor;
+        this.tableScanner = tableScanner;
+        this.parallelScanner = parallelScanner;
+        this.batchWriter = batchWriter;
+        this.membershipIndex = membershipIndex;
+        this.attendanceShards = attendanceShards;
+        this.eventExpiryService = eventExpiryService;
+        this.usersCache = cacheManager.getCache(CacheConfig.USERS);
         this.lambdaServiceClient = lambdaServiceClient;
     }
     public NotificationData getNotificationDataFromLambda(String notificationId) {
@@ -50,57 +125,345 @@ public class EventService {
         return gson.fromJson(json, new TypeToken<EventRecord>() { }.getType());
     }
 
+    /**
+     * @return the cache key of the event
+     */
+    public static String eventKey(String eventId) {
+        return Keyspace.EVENT.key(eventId);
+    }
+
+    /**
+     * @return the tag of all cached events of the sponsor; invalidating it drops them all at once
+     */
+    public static String sponsorTag(String sponsor) {
+        return "sponsor:" + sponsor;
+    }
+
+    /**
+     * @return the cache key of the current generation of the event listing
+     */
+    public String listingKey() {
+        return cacheTags.taggedKey(ALL_EVENTS_KEY, LISTING_TAG);
+    }
+
+    /**
+     * @return the version of the event's attendee set, which changes whenever someone joins
+     */
+    public long attendeesVersion(String eventId) {
+        return attendeeCache.version(eventId);
+    }
+
+    // Only the core fields are cached with the event; attendees live in the AttendeeCache
+    private String toCacheValue(EventRecord eventRecord) {
+        EventRecord core = new EventRecord(eventRecord.getEventID(), eventRecord.getName(),
+                eventRecord.getLocation(), eventRecord.getStartTime(), eventRecord.getEndTime(), null,
+                eventRecord.getPeopleAttended(), eventRecord.getEventSponsor());
+        Collection<String> tags = eventRecord.getEventSponsor() == null
+                ? Collections.emptyList()
+                : Collections.singletonList(sponsorTag(eventRecord.getEventSponsor()));
+        return CacheEnvelope.wrap(gson.toJson(core), System.currentTimeMillis(), cacheTags.stamp(tags));
+    }
+
+    private EventRecord withAttendees(CacheEnvelope core, Set<String> attendees) {
+        EventRecord eventRecord = fromJson(core.getPayload());
+        eventRecord.setPeopleAttending(new ArrayList<>(new TreeSet<>(attendees)));
+        return eventRecord;
+    }
+
+    // Attendees are edges in the attendance table; ids still held in the item's own list, from before
+    // the table existed, are kept
+    private EventRecord withAttendanceEdges(EventRecord eventRecord) {
+        Set<String> attendees = new TreeSet<>(membershipIndex.findAllAttendees(eventRecord.getEventID()));
+        if (eventRecord.getPeopleAttending() != null) {
+            attendees.addAll(eventRecord.getPeopleAttending());
+        }
+        eventRecord.setPeopleAttending(new ArrayList<>(attendees));
+        return eventRecord;
+    }
+
+    // An entry built before one of its tags was invalidated is treated as a miss
+    private CacheEnvelope toCurrentEnvelope(String cached) {
+        CacheEnvelope envelope = CacheEnvelope.unwrap(cached);
+        return cacheTags.isCurrent(envelope.getTags()) ? envelope : null;
+    }
+
     public void addRecord(EventRecord eventRecord){
-        cacheClient.setValue(eventRecord.getEventID(), 10000, gson.toJson(eventRecord));
+        cacheClient.setValue(eventKey(eventRecord.getEventID()), ttlPolicy.getTtlSeconds(Keyspace.EVENT),
+                toCacheValue(eventRecord));
+        attendeeCache.putAll(Collections.singletonMap(eventRecord.getEventID(), eventRecord.getPeopleAttending()));
     }
 
-    public EventRecord getRecord(String id){
-        Optional<String> temp = cacheClient.getValue(id);
+    /**
+     * Caches records loaded from DynamoDB, skipping every entry that was invalidated after its
+     * version was read; the loaded copy may predate that write.
+     */
+    private void cacheLoaded(Collection<EventRecord> eventRecords, Map<String, Long> coreVersions,
+                             Map<String, Long> attendeeVersions) {
+        Map<String, String> values = new HashMap<>();
+        Map<String, Long> keyVersions = new HashMap<>();
+        Map<String, List<String>> attendees = new HashMap<>();
+        for (EventRecord eventRecord : eventRecords) {
+            String key = eventKey(eventRecord.getEventID());
+            values.put(key, toCacheValue(eventRecord));
+            keyVersions.put(key, coreVersions.getOrDefault(key, 0L));
+            attendees.put(eventRecord.getEventID(), eventRecord.getPeopleAttending());
+        }
+        cacheClient.setValuesIfVersion(values, keyVersions, ttlPolicy.getTtlSeconds(Keyspace.EVENT));
+        attendeeCache.putAllIfVersion(attendees, attendeeVersions);
+    }
+
+    /**
+     * Writes the core fields of several records into both cache tiers with one pipelined round trip.
+     * Their attendee sets are left to the first read of each event, so preloading costs no read of
+     * the attendance table per event.
+     */
+    public void preloadRecords(Collection<EventRecord> eventRecords) {
+        Map<String, String> values = new HashMap<>();
+        for (EventRecord eventRecord : eventRecords) {
+            values.put(eventKey(eventRecord.getEventID()), toCacheValue(eventRecord));
+        }
+        cacheClient.setValues(values, ttlPolicy.getTtlSeconds(Keyspace.EVENT));
+    }
+
+    private CacheEnvelope getCachedEnvelope(String id) {
+        Optional<String> temp = cacheClient.getValue(eventKey(id));
         if (temp != null && temp.isPresent()) {
-            return fromJson(temp.get());
+            return toCurrentEnvelope(temp.get());
         }
         return null;
     }
 
+    /**
+     * @return the cached core fields of the event, without its attendees, or null if not cached
+     */
+    public EventRecord getRecord(String id){
+        CacheEnvelope envelope = getCachedEnvelope(id);
+        return envelope == null ? null : fromJson(envelope.getPayload());
+    }
+
     public void deleteRecord(String id){
-        cacheClient.invalidate(id);
+        cacheClient.invalidate(eventKey(id));
+        attendeeCache.invalidate(id);
     }
 
 
 
 
+    /**
+     * Method that lists every event as stored in the event table. The attendees recorded in the
+     * attendance table are not read for a listing, which would cost one query per event; they are
+     * read a page at a time with {@link #findAttendeesPage}.
+     */
     public List<Event> findAllEvents() {
-        List<Event> events = new ArrayList<>();
-
-        Iterable<EventRecord> eventRecordIterable = eventRepository.findAll();
-        for (EventRecord record : eventRecordIterable) {
-            events.add(new Event(
-                    record.getEventID(),
-                    record.getName(),
-                    record.getLocation(),
-                    record.getStartTime(),
-                    record.getEndTime(),
-                    record.getPeopleAttending(),
-                    record.getPeopleAttended(),
-                    record.getEventSponsor()));
-        }
+        // Segments are scanned in parallel, so events arrive from several threads in no set order
+        List<Event> events = Collections.synchronizedList(new ArrayList<>());
+        parallelScanner.scan(EventRecord.class, record -> events.add(toEvent(record)));
         return events;
     }
 
+    /**
+     * Method that reads one page of the event table, with the events as stored; see {@link #findAllEvents()}.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of events in the page
+     * @return the page, with the cursor of the next one
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public ScanPage<Event> findEventsPage(String cursor, int limit) {
+        return tableScanner.scanPage(EventRecord.class, cursor, limit).map(this::toEvent);
+    }
+
+    /**
+     * Method that passes every event to the consumer as the scan pages arrive, without holding more
+     * than one page in memory. The events are as stored; see {@link #findAllEvents()}.
+     */
+    public void forEachEvent(Consumer<Event> consumer) {
+        tableScanner.scanEach(EventRecord.class, record -> consumer.accept(toEvent(record)));
+    }
+
+    private EventRecord loadRecord(String eventId) {
+        // Concurrent loads of the same event share one DynamoDB read and cache fill
+        return requestCoalescer.load("event", eventId, () -> {
+            Map<String, Long> coreVersions = cacheClient.getVersions(Collections.singletonList(eventKey(eventId)));
+            Map<String, Long> attendeeVersions = attendeeCache.versions(Collections.singletonList(eventId));
+            long missVersion = negativeResultCache.version(Keyspace.EVENT, eventId);
+            Optional<EventRecord> record = eventRepository.findById(eventId).map(this::withAttendanceEdges);
+            if (record.isPresent()) {
+                cacheLoaded(Collections.singletonList(record.get()), coreVersions, attendeeVersions);
+            } else {
+                negativeResultCache.recordMissing(Keyspace.EVENT, eventId, missVersion);
+            }
+            return record.orElse(null);
+        });
+    }
+
+    private void refreshInBackground(String eventId) {
+        if (!refreshing.add(eventId)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    if (loadRecord(eventId) == null) {
+                        deleteRecord(eventId);
+                    }
+                } catch (RuntimeException ex) {
+                    log.warn("Background refresh of event {} failed, serving the cached copy: {}", eventId, ex.getMessage());
+                } finally {
+                    refreshing.remove(eventId);
+                }
+            });
+        } catch (TaskRejectedException ex) {
+            refreshing.remove(eventId);
+        }
+    }
+
     public Event findByEventId(String eventId){
-        EventRecord eventRecord = getRecord(eventId);
-        if(eventRecord == null){
-            Optional<EventRecord> record = eventRepository.findById(eventId);
-            if(record.isPresent()){
-                eventRecord = record.get();
-                addRecord(eventRecord);
-                return new Event(eventRecord.getEventID(), eventRecord.getName(), eventRecord.getLocation(), eventRecord.getStartTime(), eventRecord.getEndTime(), eventRecord.getPeopleAttending(), eventRecord.getPeopleAttended(), eventRecord.getEventSponsor());
+        CacheEnvelope cached = getCachedEnvelope(eventId);
+        if(cached == null){
+            if (negativeResultCache.isKnownMissing(Keyspace.EVENT, eventId)) {
+                return null;
             }
-            return null;
+            EventRecord eventRecord = loadRecord(eventId);
+            return eventRecord == null ? null : toEvent(eventRecord);
+        }
 
+        long now = System.currentTimeMillis();
+        switch (freshnessPolicy.classify(cached, now)) {
+            case FRESH:
+                return withCachedAttendees(eventId, cached);
+            case STALE:
+                refreshInBackground(eventId);
+                return withCachedAttendees(eventId, cached);
+            default:
+                try {
+                    EventRecord eventRecord = loadRecord(eventId);
+                    return eventRecord == null ? null : toEvent(eventRecord);
+                } catch (RuntimeException ex) {
+                    Optional<Set<String>> attendees = attendeeCache.get(eventId);
+                    if (!freshnessPolicy.isUsableOnError(cached, now) || !attendees.isPresent()) {
+                        throw ex;
+                    }
+                    log.warn("Reloading event {} failed, serving the expired cached copy: {}", eventId, ex.getMessage());
+                    return toEvent(withAttendees(cached, attendees.get()));
+                }
+        }
+    }
+
+    private Event withCachedAttendees(String eventId, CacheEnvelope core) {
+        Optional<Set<String>> attendees = attendeeCache.get(eventId);
+        if (attendees.isPresent()) {
+            return toEvent(withAttendees(core, attendees.get()));
+        }
+        // The attendee set expired before the core entry; the full record refills both
+        EventRecord eventRecord = loadRecord(eventId);
+        return eventRecord == null ? null : toEvent(eventRecord);
+    }
+
+    /**
+     * Looks up several events with one cache round trip, loading any cache misses from DynamoDB in a
+     * single batch. Unknown ids are skipped and remembered as missing for a short time; the result
+     * keeps the order of the requested ids. Stale and expired entries are handled as in {@link #findByEventId(String)}.
+     */
+    public List<Event> findByEventIds(List<String> eventIds) {
+        List<String> keys = new ArrayList<>(eventIds.size());
+        for (String eventId : eventIds) {
+            keys.add(eventKey(eventId));
+        }
+        Map<String, String> cached = cacheClient.getValues(keys);
+        Map<String, CacheEnvelope> cores = new HashMap<>();
+        Map<String, EventRecord> records = new HashMap<>();
+        Map<String, CacheEnvelope> expired = new HashMap<>();
+        // A set, as BatchGetItem rejects a request that names the same key twice
+        Set<String> missing = new LinkedHashSet<>();
+        List<String> uncached = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String eventId : eventIds) {
+            String value = cached.get(eventKey(eventId));
+            CacheEnvelope envelope = value == null ? null : toCurrentEnvelope(value);
+            if (envelope == null) {
+                uncached.add(eventId);
+                continue;
+            }
+            CacheFreshnessPolicy.Freshness freshness = freshnessPolicy.classify(envelope, now);
+            if (freshness == CacheFreshnessPolicy.Freshness.EXPIRED) {
+                expired.put(eventId, envelope);
+                missing.add(eventId);
+                continue;
+            }
+            if (freshness == CacheFreshnessPolicy.Freshness.STALE) {
+                refreshInBackground(eventId);
+            }
+            cores.put(eventId, envelope);
+        }
+
+        // Cores whose attendee set is not cached are loaded in full with the misses
+        List<String> withCore = new ArrayList<>(cores.keySet());
+        withCore.addAll(expired.keySet());
+        Map<String, Set<String>> attendees = withCore.isEmpty()
+                ? Collections.emptyMap()
+                : attendeeCache.getAll(withCore);
+        for (Map.Entry<String, CacheEnvelope> core : cores.entrySet()) {
+            Set<String> members = attendees.get(core.getKey());
+            if (members == null) {
+                missing.add(core.getKey());
+            } else {
+                records.put(core.getKey(), withAttendees(core.getValue(), members));
+            }
         }
-        return new Event(eventRecord.getEventID(), eventRecord.getName(), eventRecord.getLocation(), eventRecord.getStartTime(), eventRecord.getEndTime(), eventRecord.getPeopleAttending(), eventRecord.getPeopleAttended(), eventRecord.getEventSponsor());
 
+        if (!uncached.isEmpty()) {
+            Set<String> knownMissing = negativeResultCache.findKnownMissing(Keyspace.EVENT, uncached);
+            for (String eventId : uncached) {
+                if (!knownMissing.contains(eventId)) {
+                    missing.add(eventId);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            try {
+                List<String> missingKeys = new ArrayList<>(missing.size());
+                for (String eventId : missing) {
+                    missingKeys.add(eventKey(eventId));
+                }
+                Map<String, Long> coreVersions = cacheClient.getVersions(missingKeys);
+                Map<String, Long> attendeeVersions = attendeeCache.versions(missing);
+                Map<String, Long> missVersions = negativeResultCache.versions(Keyspace.EVENT, missing);
+                List<EventRecord> loaded = new ArrayList<>();
+                for (EventRecord record : eventRepository.findAllById(missing)) {
+                    withAttendanceEdges(record);
+                    records.put(record.getEventID(), record);
+                    loaded.add(record);
+                }
+                cacheLoaded(loaded, coreVersions, attendeeVersions);
+                missVersions.keySet().removeAll(records.keySet());
+                negativeResultCache.recordMissing(Keyspace.EVENT, missVersions);
+            } catch (RuntimeException ex) {
+                if (expired.isEmpty()) {
+                    throw ex;
+                }
+                log.warn("Batch load of events failed, serving expired cached copies: {}", ex.getMessage());
+                expired.forEach((eventId, envelope) -> {
+                    Set<String> members = attendees.get(eventId);
+                    if (members != null && freshnessPolicy.isUsableOnError(envelope, now)) {
+                        records.put(eventId, withAttendees(envelope, members));
+                    }
+                });
+            }
+        }
+
+        List<Event> events = new ArrayList<>(eventIds.size());
+        for (String eventId : eventIds) {
+            EventRecord record = records.get(eventId);
+            if (record != null) {
+                events.add(toEvent(record));
+            }
+        }
+        return events;
+    }
+
+    private Event toEvent(EventRecord eventRecord) {
+        return new Event(eventRecord.getEventID(), eventRecord.getName(), eventRecord.getLocation(), eventRecord.getStartTime(), eventRecord.getEndTime(), eventRecord.getPeopleAttending(), eventRecord.getPeopleAttended(), eventRecord.getEventSponsor());
     }
 
     public Event addNewEvent(Event event) {
@@ -114,6 +477,9 @@ public class EventService {
                 event.getPeopleAttended(),
                 event.getEventSponsor());
         eventRepository.save(eventRecord);
+        negativeResultCache.clear(Keyspace.EVENT, event.getEventID());
+        cacheTags.invalidate(LISTING_TAG);
+        eventExpiryService.expireIfDue(eventRecord);
         return event;
     }
 
@@ -134,20 +500,53 @@ public class EventService {
     }
      */
 
+    /**
+     * Method that reads one page of an event's attendees from the attendance table.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of attendees in the page
+     * @return the attendees' user ids, with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public ScanPage<String> findAttendeesPage(String eventId, String cursor, int limit) {
+        return membershipIndex.findAttendees(eventId, cursor, limit);
+    }
+
+    public boolean isAttending(String eventId, String userId) {
+        return membershipIndex.isAttending(eventId, userId);
+    }
+
+    // Counts the attendance table only, not ids left in the list attribute of events stored before it
+    public int countAttendees(String eventId) {
+        return membershipIndex.countAttendees(eventId);
+    }
+
     public void deleteEvent(String eventId) {
         Event event = findByEventId(eventId);
         if(event != null){
             List<String> peopleAttending = event.getPeopleAttending();
+            List<UserRecord> attendees = new ArrayList<>();
             for(int i = 0, size = peopleAttending.size(); i < size; ++i){
                 Optional<UserRecord> ur = userRepository.findById(peopleAttending.get(i));
-                if(ur.isPresent()){
-                    UserRecord userRecord = ur.get();
-                    userRecord.getEventsList().remove(eventId);
-                    userRepository.save(userRecord);
+                // Only users who still list the event in their own item need to be written back
+                if(ur.isPresent() && ur.get().getEventsList() != null && ur.get().getEventsList().remove(eventId)){
+                    attendees.add(ur.get());
                 }
             }
-            deleteRecord(eventId);
+            // Edges of a sharded event are spread over its partitions
+            batchWriter.write(attendees, membershipIndex.findAllAttendanceEdges(eventId));
             eventRepository.deleteById(eventId);
+            attendanceShards.forget(eventId);
+            // Invalidate after the delete, so a load that read the event before it cannot cache it again
+            cacheClient.invalidate(eventKey(eventId));
+            attendeeCache.invalidate(eventId);
+            cacheTags.invalidate(LISTING_TAG);
+            negativeResultCache.recordDeleted(Keyspace.EVENT, eventId);
+            // The batch write bypasses the eviction on UserRepository.save, and every attendee's
+            // cached user lists the event, whether it came from their own item or an edge
+            for (String userId : peopleAttending) {
+                usersCache.evict(userId);
+            }
         }
     }
     private boolean hasEventOccurred(LocalDateTime eventEndTime) {
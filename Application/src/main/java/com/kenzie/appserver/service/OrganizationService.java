@@ -1,60 +1,58 @@
 package com.kenzie.appserver.service;
 
-import com.kenzie.appserver.repositories.EventRepository;
+import com.kenzie.appserver.config.CacheConfig;
+import com.kenzie.appserver.repositories.HeldEventsWriter;
 import com.kenzie.appserver.repositories.OrganizationRepository;
 import com.kenzie.appserver.repositories.model.EventRecord;
 import com.kenzie.appserver.repositories.model.OrganizationRecord;
 import com.kenzie.appserver.service.model.Organization;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.Set;
 
 @Service
 public class OrganizationService {
 
     private final OrganizationRepository organizationRepository;
 
-    private final EventRepository eventRepository;
+    private final HeldEventsWriter heldEventsWriter;
 
+    private final Cache organizationsCache;
 
 
-    public OrganizationService(OrganizationRepository organizationRepository, EventRepository eventRepository) {
+    public OrganizationService(OrganizationRepository organizationRepository, HeldEventsWriter heldEventsWriter,
+                               CacheManager cacheManager) {
         this.organizationRepository = organizationRepository;
-        this.eventRepository = eventRepository;
+        this.heldEventsWriter = heldEventsWriter;
+        this.organizationsCache = cacheManager.getCache(CacheConfig.ORGANIZATIONS);
     }
 
-    @Scheduled(fixedRate = 3600000)
-    public void processExpiredEvents(){
-        LocalDateTime currentDateTime = LocalDateTime.now();
-        Iterable<EventRecord> allEvents = eventRepository.findAll();
-
-        Map<String, Organization> organizationsToUpdate = new HashMap<>();
-
-        for (EventRecord record : allEvents) {
-            if (LocalDateTime.parse(record.getEndTime()).plusHours(24).isAfter(currentDateTime)) {
-                Organization organization = organizationsToUpdate
-                        .computeIfAbsent(record.getEventSponsor(), k -> getOrganizationByName(k));
-
-                organization.getOrganizationEventCount().add(record.getName());
+    /**
+     * Method that adds expired events to the events held by their sponsors. Sponsors without an
+     * organization are skipped, and so are events recorded before, so an expiry that is retried or
+     * reads an event again does not count it twice.
+     *
+     * @param expiredEvents events that have ended and are about to be removed
+     */
+    public void recordHeldEvents(Collection<EventRecord> expiredEvents) {
+        Set<String> updated = new HashSet<>();
+        for (EventRecord record : expiredEvents) {
+            if (record.getEventSponsor() == null) {
+                continue;
+            }
+            if (heldEventsWriter.recordHeld(record.getEventSponsor(), record.getEventID(), record.getName())) {
+                updated.add(record.getEventSponsor());
             }
         }
-
-        for (Organization organization : organizationsToUpdate.values()) {
-            updateOrganization(organization);
+        for (String organizationName : updated) {
+            organizationsCache.evict(organizationName);
         }
-
-        List<EventRecord> recordsToDelete = StreamSupport.stream(allEvents.spliterator(), false)
-                .filter(record -> LocalDateTime.parse(record.getEndTime()).plusHours(24).isAfter(currentDateTime))
-                .collect(Collectors.toList());
-
-        eventRepository.deleteAll(recordsToDelete);
     }
 
 
@@ -84,17 +82,21 @@ public class OrganizationService {
 
     public Organization getOrganizationByName(String name){
 
-        Optional<OrganizationRecord> record = organizationRepository.findById(name);
+        OrganizationRecord record = organizationsCache.get(name,
+                () -> organizationRepository.findById(name).orElse(null));
 
-        if(record.isEmpty()){
+        return toOrganization(record);
+    }
+
+    private Organization toOrganization(OrganizationRecord record) {
+        if(record == null){
             return null;
         }
-        Organization organization = new Organization(record.get().getOrganizationName(),record.get().getEventsHeldList());
-
-        return  organization;
-
-
-
+        // Coalesced callers share the record, so each gets its own copy of the mutable list
+        List<String> eventsHeld = record.getEventsHeldList() == null
+                ? new ArrayList<>()
+                : new ArrayList<>(record.getEventsHeldList());
+        return new Organization(record.getOrganizationName(), eventsHeld);
     }
 
 
@@ -1,35 +1,74 @@
 package com.kenzie.appserver.service;
 
 
+import com.kenzie.appserver.cache.AttendeeCache;
+import com.kenzie.appserver.cache.Keyspace;
+import com.kenzie.appserver.cache.NegativeResultCache;
+import com.kenzie.appserver.config.CacheConfig;
 import com.kenzie.appserver.exception.EventNotFoundException;
 import com.kenzie.appserver.exception.UserAlreadyExistsException;
 import com.kenzie.appserver.exception.UserNotFoundException;
-import com.kenzie.appserver.repositories.EventRepository;
+import com.kenzie.appserver.repositories.MembershipIndex;
+import com.kenzie.appserver.repositories.MembershipWriter;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.TableScanner;
 import com.kenzie.appserver.repositories.UserRepository;
-import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
 import com.kenzie.appserver.repositories.model.UserRecord;
 import com.kenzie.appserver.service.model.User;
 import com.kenzie.capstone.service.client.LambdaServiceClient;
 import com.kenzie.capstone.service.model.NotificationData;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
     private UserRepository userRepository;
 
-    private EventRepository eventRepository;
     private LambdaServiceClient lambdaServiceClient;
 
+    private Cache usersCache;
 
+    private NegativeResultCache negativeResultCache;
 
-    public UserService(UserRepository userRepository, EventRepository eventRepository, LambdaServiceClient lambdaServiceClient) {
+    private AttendeeCache attendeeCache;
+
+
+    private TableScanner tableScanner;
+
+    private ParallelScanner parallelScanner;
+
+    private MembershipWriter membershipWriter;
+
+    private MembershipIndex membershipIndex;
+
+
+    public UserService(UserRepository userRepository, LambdaServiceClient lambdaServiceClient,
+                       CacheManager cacheManager, NegativeResultCache negativeResultCache,
+                       AttendeeCache attendeeCache, TableScanner tableScanner,
+                       @Qualifier("listingScanner") ParallelScanner parallelScanner,
+                       MembershipWriter membershipWriter,
+                       MembershipIndex membershipIndex) {
         this.userRepository = userRepository;
-        this.eventRepository = eventRepository;
         this.lambdaServiceClient = lambdaServiceClient;
+        this.usersCache = cacheManager.getCache(CacheConfig.USERS);
+        this.negativeResultCache = negativeResultCache;
+        this.attendeeCache = attendeeCache;
+        this.tableScanner = tableScanner;
+        this.parallelScanner = parallelScanner;
+        this.membershipWriter = membershipWriter;
+        this.membershipIndex = membershipIndex;
     }
     public NotificationData getNotificationDataFromLambda(String notificationId) {
         return lambdaServiceClient.getNotificationData(notificationId);
@@ -38,8 +77,74 @@ public class UserService {
         return lambdaServiceClient.setNotificationData(data);
     }
 
+    // Only for read paths: writes read DynamoDB directly so they never build on a stale cached copy.
+    // Repository writes evict the cached user. Ids found missing are remembered briefly so repeated
+    // lookups skip DynamoDB.
+    private Optional<UserRecord> loadUser(String id) {
+        if (negativeResultCache.isKnownMissing(Keyspace.USER, id)) {
+            return Optional.empty();
+        }
+        // Read before the load by whichever caller runs it, so a user created meanwhile is not hidden
+        AtomicLong missVersion = new AtomicLong(-1);
+        UserRecord user = usersCache.get(id, () -> {
+            missVersion.set(negativeResultCache.version(Keyspace.USER, id));
+            return userRepository.findById(id).map(this::withMembershipEdges).orElse(null);
+        });
+        if (user == null && missVersion.get() >= 0) {
+            negativeResultCache.recordMissing(Keyspace.USER, id, missVersion.get());
+        }
+        return Optional.ofNullable(user);
+    }
+
+    // Joined events and friends are edges in the membership tables; ids still held in the item's own
+    // lists, from before the tables existed, are kept
+    private UserRecord withMembershipEdges(UserRecord userRecord) {
+        userRecord.setEventsList(union(userRecord.getEventsList(), membershipIndex.findAllJoinedEvents(userRecord.getUserID())));
+        userRecord.setFriends(union(userRecord.getFriends(), membershipIndex.findAllFriends(userRecord.getUserID())));
+        return userRecord;
+    }
+
+    private static List<String> union(List<String> legacy, List<String> edges) {
+        Set<String> members = new LinkedHashSet<>();
+        if (legacy != null) {
+            members.addAll(legacy);
+        }
+        members.addAll(edges);
+        return new ArrayList<>(members);
+    }
+
+    /**
+     * Method that reads one page of the events a user joined from the attendance table.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of events in the page
+     * @return the event ids, with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public ScanPage<String> getJoinedEventsPage(String userId, String cursor, int limit) {
+        return membershipIndex.findJoinedEvents(userId, cursor, limit);
+    }
+
+    /**
+     * Method that reads one page of a user's friends from the friendship table.
+     *
+     * @see #getJoinedEventsPage(String, String, int)
+     */
+    public ScanPage<String> getFriendsPage(String userId, String cursor, int limit) {
+        return membershipIndex.findFriends(userId, cursor, limit);
+    }
+
+    public boolean areFriends(String userId, String friendId) {
+        return membershipIndex.areFriends(userId, friendId);
+    }
+
+    // Counts the friendship table only, not ids left in the list attribute of users stored before it
+    public int countFriends(String userId) {
+        return membershipIndex.countFriends(userId);
+    }
+
     public UserRecord findUserById(String id) {
-        Optional<UserRecord> user = userRepository.findById(id);
+        Optional<UserRecord> user = loadUser(id);
 
         if (user.isEmpty()) throw new UserNotFoundException("User " + id + " does not exist.");
 
@@ -53,7 +158,7 @@ public class UserService {
     }
 
     public boolean validateUser (String id, String password){
-        Optional<UserRecord> user = userRepository.findById(id);
+        Optional<UserRecord> user = loadUser(id);
         if(user.isPresent()){
             UserRecord userRecord = user.get();
             return userRecord.getPassword().equals(password);
@@ -61,66 +166,85 @@ public class UserService {
         return false;
     }
 
+    /**
+     * Method that lists every user as stored in the user table. The joined events and friends
+     * recorded in the attendance and friendship tables are not read for a listing, which would cost
+     * two queries per user; they are read a page at a time with {@link #getJoinedEventsPage} and
+     * {@link #getFriendsPage}.
+     */
     public List<UserRecord> getAllUsers() {
-        List<UserRecord> users = new ArrayList<>();
-        Iterable<UserRecord> pulledUsers = userRepository.findAll();
-
-        for (UserRecord ur : pulledUsers) {
-            UserRecord currentRecord = new UserRecord(ur.getUserID(), ur.getUserName(), ur.getPassword(),
-                    ur.getEventsList(), ur.getEmail(), ur.getFirstName(), ur.getLastName(),
-                    ur.getNotifications(), ur.getUserType(), ur.getFriends());
+        // Segments are scanned in parallel, so users arrive from several threads in no set order
+        List<UserRecord> users = Collections.synchronizedList(new ArrayList<>());
+        parallelScanner.scan(UserRecord.class, users::add);
+        return users;
+    }
 
-            users.add(currentRecord);
-        }
+    /**
+     * Method that reads one page of the user table, with the users as stored; see {@link #getAllUsers()}.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of users in the page
+     * @return the page, with the cursor of the next one
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public ScanPage<UserRecord> getUsersPage(String cursor, int limit) {
+        return tableScanner.scanPage(UserRecord.class, cursor, limit);
+    }
 
-        return users;
+    /**
+     * Method that passes every user to the consumer as the scan pages arrive, without holding more
+     * than one page in memory. The users are as stored; see {@link #getAllUsers()}.
+     */
+    public void forEachUser(Consumer<UserRecord> consumer) {
+        tableScanner.scanEach(UserRecord.class, consumer);
     }
 
     public UserRecord addNewUser(String userName, String password, String email, String firstName, String lastName, String userType) {
         UserRecord ur = new UserRecord(userName, password, email, firstName, lastName, userType);
-        Optional<UserRecord> check = userRepository.findById(ur.getUserName());
-        if(check.isPresent()){
-            throw new UserAlreadyExistsException("User " + userName + " already exists.");
+        // A recorded miss means the id was not taken a moment ago, so the existence check can be skipped
+        if (!negativeResultCache.isKnownMissing(Keyspace.USER, ur.getUserName())) {
+            Optional<UserRecord> check = userRepository.findById(ur.getUserName());
+            if(check.isPresent()){
+                throw new UserAlreadyExistsException("User " + userName + " already exists.");
+            }
         }
         userRepository.save(ur);
+        negativeResultCache.clear(Keyspace.USER, ur.getUserName());
         return ur;
     }
 
 
     public void addEventToList(String userId, String eventId){
-        Optional<UserRecord> ur = userRepository.findById(userId);
-        Optional<EventRecord> er = eventRepository.findById(eventId);
-        if(ur.isEmpty() || er.isEmpty()){
-            if(ur.isEmpty()){
-                throw new UserNotFoundException("User " + userId +" does not exist.");
-            }
-            else{
-                throw new EventNotFoundException("Event " + eventId + " does not exist.");
-            }
+        MembershipWriter.LinkOutcome outcome = membershipWriter.addAttendee(userId, eventId);
+        if(outcome == MembershipWriter.LinkOutcome.FIRST_MISSING){
+            throw new UserNotFoundException("User " + userId +" does not exist.");
+        }
+        if(outcome == MembershipWriter.LinkOutcome.SECOND_MISSING){
+            throw new EventNotFoundException("Event " + eventId + " does not exist.");
         }
-        UserRecord userRecord = ur.get();
-        EventRecord eventRecord = er.get();
-        if(userRecord.getEventsList().contains(eventId)){
+        if(outcome == MembershipWriter.LinkOutcome.ALREADY_LINKED){
             return;
         }
-        userRecord.getEventsList().add(eventId);
-        eventRecord.getPeopleAttending().add(userId);
-        userRepository.save(userRecord);
-        eventRepository.save(eventRecord);
+        usersCache.evict(userId);
+        // Only the attendee set changes; the cached event core and the listing stay as they are
+        attendeeCache.add(eventId, userId);
     }
 
     public void updateUser(User user) {
-        if (userRepository.existsById(user.getUserId())) {
+        Optional<UserRecord> stored = userRepository.findById(user.getUserId());
+        if (stored.isPresent()) {
+            // Joined events and friends change only through their own endpoints. The lists a client
+            // sends back include the edges merged in on read, so the stored ones are kept instead.
             UserRecord ur = new UserRecord(user.getUserId(),
                     user.getUserName(),
                     user.getPassword(),
-                    user.getEventsList(),
+                    stored.get().getEventsList(),
                     user.getEmail(),
                     user.getFirstName(),
                     user.getLastName(),
                     user.getNotifications(),
                     user.getUserType(),
-                    user.getFriends());
+                    stored.get().getFriends());
 
             userRepository.save(ur);
         }
@@ -129,25 +253,18 @@ public class UserService {
 
     public void deleteUserById(String userId) {
         userRepository.deleteById(userId);
+        negativeResultCache.recordDeleted(Keyspace.USER, userId);
     }
 
     public void addFriend(String userId, String friendId){
-        System.out.println(userId + " " + friendId);
-        Optional<UserRecord> ur = userRepository.findById(userId);
-        Optional<UserRecord> fr = userRepository.findById(friendId);
-        if(ur.isPresent() && fr.isPresent()){
-            UserRecord user = ur.get();
-            UserRecord friend = fr.get();
-            if(user.getFriends().contains(friendId)){
-                return;
-            }
-            user.getFriends().add(friendId);
-            friend.getFriends().add(userId);
-            userRepository.save(user);
-            userRepository.save(friend);
-            return;
+        MembershipWriter.LinkOutcome outcome = membershipWriter.addFriendship(userId, friendId);
+        if(outcome == MembershipWriter.LinkOutcome.FIRST_MISSING || outcome == MembershipWriter.LinkOutcome.SECOND_MISSING){
+            throw new UserNotFoundException("User does not exist.");
+        }
+        if(outcome == MembershipWriter.LinkOutcome.LINKED){
+            usersCache.evict(userId);
+            usersCache.evict(friendId);
         }
-        throw new UserNotFoundException("User does not exist.");
     }
 
     public void shareEventWithFriend(String userId, String eventId) {
@@ -0,0 +1,163 @@
+package com.kenzie.appserver.service;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.OrganizationRecord;
+import com.kenzie.appserver.repositories.model.UserRecord;
+import com.kenzie.capstone.service.client.LambdaServiceClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start-up warm-up, so the first requests after a deploy do not pay for opening connections and
+ * filling an empty cache. Each step is timed in {@code app.warmup.step}, tagged with the step name
+ * and outcome; a failing step is logged and does not stop the ones after it.
+ */
+@Service
+public class WarmUpService {
+    static final Logger log = LogManager.getLogger();
+
+    private static final Class<?>[] TABLES = {EventRecord.class, UserRecord.class, OrganizationRecord.class};
+
+    private AmazonDynamoDB amazonDynamoDB;
+    private JedisPool jedisPool;
+    private LambdaServiceClient lambdaServiceClient;
+    private ParallelScanner parallelScanner;
+    private EventService eventService;
+    private MeterRegistry meterRegistry;
+
+    private int redisConnections;
+    private long upcomingHours;
+    private int maxEvents;
+    private int parallelism;
+
+    public WarmUpService(AmazonDynamoDB amazonDynamoDB, JedisPool jedisPool, LambdaServiceClient lambdaServiceClient,
+                         ParallelScanner parallelScanner, EventService eventService, MeterRegistry meterRegistry,
+                         @Value("${app.warmup.redis-connections:8}") int redisConnections,
+                         @Value("${app.warmup.upcoming-hours:48}") long upcomingHours,
+                         @Value("${app.warmup.max-events:500}") int maxEvents,
+                         @Value("${app.warmup.parallelism:4}") int parallelism) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.jedisPool = jedisPool;
+        this.lambdaServiceClient = lambdaServiceClient;
+        this.parallelScanner = parallelScanner;
+        this.eventService = eventService;
+        this.meterRegistry = meterRegistry;
+        this.redisConnections = redisConnections;
+        this.upcomingHours = upcomingHours;
+        this.maxEvents = maxEvents;
+        this.parallelism = parallelism;
+    }
+
+    public void warmUp() {
+        long started = System.nanoTime();
+        step("dynamodb", this::openDynamoDb);
+        step("redis", this::openRedis);
+        step("lambda", () -> lambdaServiceClient.resolveEndpoint());
+        step("events", this::preloadUpcomingEvents);
+        log.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void step(String name, Runnable work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            work.run();
+        } catch (RuntimeException ex) {
+            outcome = "failure";
+            log.warn("Warm-up step {} failed: {}", name, ex.getMessage());
+        }
+        long nanos = sample.stop(Timer.builder("app.warmup.step")
+                .tag("step", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+        log.info("Warm-up step {} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    // Describing each table opens the client's connection and checks the tables exist
+    private void openDynamoDb() {
+        for (Class<?> table : TABLES) {
+            amazonDynamoDB.describeTable(table.getAnnotation(DynamoDBTable.class).tableName());
+        }
+    }
+
+    private void openRedis() {
+        jedisPool.addObjects(redisConnections);
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.ping();
+        }
+    }
+
+    /**
+     * Loads events starting within the configured window into the cache tiers, soonest first,
+     * writing them from a bounded number of threads.
+     */
+    private void preloadUpcomingEvents() {
+        List<EventRecord> upcoming = findUpcomingEvents(LocalDateTime.now());
+        if (upcoming.isEmpty()) {
+            return;
+        }
+        int chunkSize = (upcoming.size() + parallelism - 1) / parallelism;
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int from = 0; from < upcoming.size(); from += chunkSize) {
+                List<EventRecord> chunk = upcoming.subList(from, Math.min(from + chunkSize, upcoming.size()));
+                writes.add(executor.submit(() -> eventService.preloadRecords(chunk)));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Preloading events failed", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Preloaded {} upcoming events into the cache", upcoming.size());
+    }
+
+    List<EventRecord> findUpcomingEvents(LocalDateTime now) {
+        LocalDateTime until = now.plusHours(upcomingHours);
+        List<EventRecord> upcoming = Collections.synchronizedList(new ArrayList<>());
+        parallelScanner.scan(EventRecord.class, record -> {
+            LocalDateTime start = parseTime(record.getStartTime());
+            if (start != null && !start.isBefore(now) && start.isBefore(until)) {
+                upcoming.add(record);
+            }
+        });
+        upcoming.sort(Comparator.comparing(record -> parseTime(record.getStartTime())));
+        return upcoming.size() > maxEvents ? new ArrayList<>(upcoming.subList(0, maxEvents)) : upcoming;
+    }
+
+    private static LocalDateTime parseTime(String time) {
+        if (time == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(time);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
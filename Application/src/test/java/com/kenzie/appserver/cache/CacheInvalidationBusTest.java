@@ -0,0 +1,69 @@
+package com.kenzie.appserver.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheInvalidationBusTest {
+
+    private CacheInvalidationBus bus;
+
+    private List<String> invalidatedKeys;
+
+    private int clears;
+
+    @BeforeEach
+    void setUp() {
+        bus = new CacheInvalidationBus(null, "channel");
+        invalidatedKeys = new ArrayList<>();
+        clears = 0;
+        bus.addListener(new CacheInvalidationBus.Listener() {
+            @Override
+            public void keysInvalidated(Collection<String> keys) {
+                invalidatedKeys.addAll(keys);
+            }
+
+            @Override
+            public void allInvalidated() {
+                clears++;
+            }
+        });
+    }
+
+    @Test
+    void dispatch_KeysFromOtherNode_NotifiesListeners() {
+        // WHEN
+        bus.dispatch("otherNode\nkeys\nevent1\nevent2");
+
+        // THEN
+        assertEquals(Arrays.asList("event1", "event2"), invalidatedKeys);
+    }
+
+    @Test
+    void dispatch_OwnMessage_IsIgnored() {
+        // GIVEN
+        String message = bus.encode("keys", Arrays.asList("event1"));
+
+        // WHEN
+        bus.dispatch(message);
+
+        // THEN
+        assertTrue(invalidatedKeys.isEmpty());
+    }
+
+    @Test
+    void dispatch_ClearFromOtherNode_InvalidatesEverything() {
+        // WHEN
+        bus.dispatch("otherNode\nclear");
+
+        // THEN
+        assertEquals(1, clears);
+        assertTrue(invalidatedKeys.isEmpty());
+    }
+}
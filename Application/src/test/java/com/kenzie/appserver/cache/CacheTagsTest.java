@@ -0,0 +1,83 @@
+package com.kenzie.appserver.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CacheTagsTest {
+
+    private CacheClient cacheClient;
+
+    private CacheTags cacheTags;
+
+    @BeforeEach
+    void setUp() {
+        cacheClient = mock(CacheClient.class);
+        cacheTags = new CacheTags(cacheClient);
+    }
+
+    @Test
+    void stamp_UnknownTagsStartAtGenerationZero() {
+        // GIVEN
+        when(cacheClient.getCounter("tag:sponsor:acme")).thenReturn(3L);
+
+        // WHEN
+        Map<String, Long> stamps = cacheTags.stamp(Arrays.asList("sponsor:acme", "listing:events"));
+
+        // THEN
+        assertEquals(3L, stamps.get("sponsor:acme"));
+        assertEquals(0L, stamps.get("listing:events"));
+    }
+
+    @Test
+    void isCurrent_FalseOnceTagMovesToNewGeneration() {
+        // GIVEN
+        Map<String, Long> stamps = cacheTags.stamp(Collections.singletonList("sponsor:acme"));
+        when(cacheClient.getCounter("tag:sponsor:acme")).thenReturn(1L);
+
+        // WHEN - THEN
+        assertFalse(cacheTags.isCurrent(stamps));
+        assertTrue(cacheTags.isCurrent(Collections.emptyMap()));
+    }
+
+    @Test
+    void taggedKey_ChangesWithGeneration() {
+        // GIVEN
+        String before = cacheTags.taggedKey("listing:events", "listing:events");
+        when(cacheClient.getCounter("tag:listing:events")).thenReturn(1L);
+
+        // WHEN
+        String after = cacheTags.taggedKey("listing:events", "listing:events");
+
+        // THEN
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    void invalidate_IncrementsGenerationCounter() {
+        // WHEN
+        cacheTags.invalidate("sponsor:acme");
+
+        // THEN
+        verify(cacheClient).increment("tag:sponsor:acme");
+    }
+
+    @Test
+    void envelope_KeepsTagStampsThroughSerialization() {
+        // GIVEN
+        String wrapped = CacheEnvelope.wrap("{}", 1000L, Collections.singletonMap("sponsor:acme", 2L));
+
+        // WHEN
+        CacheEnvelope envelope = CacheEnvelope.unwrap(wrapped);
+
+        // THEN
+        assertEquals(Collections.singletonMap("sponsor:acme", 2L), envelope.getTags());
+        assertTrue(CacheEnvelope.unwrap(CacheEnvelope.wrap("{}", 1000L)).getTags().isEmpty());
+    }
+}
@@ -0,0 +1,87 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheValueCodecTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CacheValueCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        codec = new CacheValueCodec(256, meterRegistry);
+    }
+
+    @Test
+    void encode_SmallValue_IsStoredAsPlainUtf8() {
+        // GIVEN
+        String value = "{\"eventID\":\"1\"}";
+
+        // WHEN
+        byte[] stored = codec.encode(value);
+
+        // THEN
+        assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), stored);
+        assertEquals(value, codec.decode(stored));
+    }
+
+    @Test
+    void encode_LargeValue_IsCompressedAndRoundTrips() {
+        // GIVEN
+        StringBuilder attendees = new StringBuilder("{\"peopleAttending\":[");
+        for (int i = 0; i < 500; i++) {
+            attendees.append("\"user-").append(i).append("@example.com\",");
+        }
+        String value = attendees.append("\"last\"]}").toString();
+
+        // WHEN
+        byte[] stored = codec.encode(value);
+
+        // THEN
+        assertTrue(stored.length < value.length() / 2);
+        assertEquals((byte) 0xFF, stored[0]);
+        assertEquals(value, codec.decode(stored));
+        assertEquals(1, meterRegistry.summary("cache.codec.compression.ratio").count());
+        assertEquals(1, meterRegistry.timer("cache.codec.decode", "format", "lz4").count());
+    }
+
+    @Test
+    void encode_IncompressibleValue_IsStoredPlain() {
+        // GIVEN
+        Random random = new Random(7);
+        StringBuilder noise = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            noise.append((char) ('!' + random.nextInt(90)));
+        }
+        String value = noise.toString();
+
+        // WHEN
+        byte[] stored = codec.encode(value);
+
+        // THEN
+        assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), stored);
+        assertEquals(value, codec.decode(stored));
+    }
+
+    @Test
+    void decode_ValueWrittenBeforeCodec_IsReadable() {
+        // GIVEN
+        String legacy = "{\"eventID\":\"1\",\"name\":\"Caf\u00e9 night\"}";
+
+        // WHEN
+        String decoded = codec.decode(legacy.getBytes(StandardCharsets.UTF_8));
+
+        // THEN
+        assertEquals(legacy, decoded);
+        assertNull(codec.decode(null));
+    }
+}
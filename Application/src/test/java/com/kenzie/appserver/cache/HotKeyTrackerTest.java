@@ -0,0 +1,78 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotKeyTrackerTest {
+
+    private AtomicLong nanos;
+
+    private HotKeyTracker hotKeyTracker;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong();
+        hotKeyTracker = new HotKeyTracker(1024, 4000, 100, 10, new SimpleMeterRegistry(), nanos::get);
+    }
+
+    @Test
+    void recordAccess_KeyCrossesThreshold_BecomesHot() {
+        // GIVEN
+        for (int i = 0; i < 99; i++) {
+            assertFalse(hotKeyTracker.recordAccess("viral"));
+        }
+        for (int i = 0; i < 1000; i++) {
+            hotKeyTracker.recordAccess("cold-" + i);
+        }
+
+        // WHEN
+        boolean hot = hotKeyTracker.recordAccess("viral");
+
+        // THEN
+        assertTrue(hot);
+        assertFalse(hotKeyTracker.recordAccess("cold-1"));
+    }
+
+    @Test
+    void recordAccess_AfterWindowSlidesPast_KeyCoolsDown() {
+        // GIVEN
+        for (int i = 0; i < 150; i++) {
+            hotKeyTracker.recordAccess("viral");
+        }
+        assertEquals(1, hotKeyTracker.topKeys(10).size());
+
+        // WHEN
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(4000));
+
+        // THEN
+        assertTrue(hotKeyTracker.topKeys(10).isEmpty());
+        assertFalse(hotKeyTracker.recordAccess("viral"));
+    }
+
+    @Test
+    void topKeys_ReturnsHottestFirstWithRates() {
+        // GIVEN
+        for (int i = 0; i < 400; i++) {
+            hotKeyTracker.recordAccess("hottest");
+        }
+        for (int i = 0; i < 200; i++) {
+            hotKeyTracker.recordAccess("warm");
+        }
+
+        // WHEN
+        List<HotKeyTracker.HotKey> top = hotKeyTracker.topKeys(1);
+
+        // THEN
+        assertEquals(1, top.size());
+        assertEquals("hottest", top.get(0).getKey());
+        assertEquals(400, top.get(0).getReads());
+        assertEquals(100.0, top.get(0).getReadsPerSecond(), 0.001);
+    }
+}
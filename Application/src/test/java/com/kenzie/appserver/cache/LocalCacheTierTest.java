@@ -0,0 +1,268 @@
+package com.kenzie.appserver.cache;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalCacheTierTest {
+
+    private LocalCacheTier localCacheTier;
+
+    @BeforeEach
+    void setUp() {
+        localCacheTier = new LocalCacheTier(1_000_000, 60);
+    }
+
+    @Test
+    void getValue_AfterSetValue_ReturnsValue() {
+        // GIVEN
+        localCacheTier.setValue("key", 10, "value");
+
+        // WHEN
+        Optional<String> value = localCacheTier.getValue("key");
+
+        // THEN
+        assertEquals(Optional.of("value"), value);
+    }
+
+    @Test
+    void bindTo_PublishesHitsAndMissesPerCache() {
+        // GIVEN
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LocalCacheTier usersTier = new LocalCacheTier(1_000_000, 60);
+        localCacheTier.bindTo(meterRegistry, "default");
+        usersTier.bindTo(meterRegistry, "users");
+        usersTier.setValue("key", 10, "value");
+
+        // WHEN
+        usersTier.getValue("key");
+        usersTier.getValue("missing");
+        localCacheTier.getValue("missing");
+
+        // THEN
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "default").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void getValue_UnknownKey_ReturnsEmpty() {
+        // WHEN
+        Optional<String> value = localCacheTier.getValue("missing");
+
+        // THEN
+        assertFalse(value.isPresent());
+    }
+
+    @Test
+    void setValue_NonPositiveTtl_IsNotStored() {
+        // GIVEN
+        localCacheTier.setValue("key", 10, "value");
+
+        // WHEN
+        localCacheTier.setValue("key", 0, "newValue");
+
+        // THEN
+        assertFalse(localCacheTier.getValue("key").isPresent());
+    }
+
+    @Test
+    void invalidate_ExistingKey_ReturnsTrue() {
+        // GIVEN
+        localCacheTier.setValue("key", 10, "value");
+
+        // WHEN
+        boolean removed = localCacheTier.invalidate("key");
+
+        // THEN
+        assertTrue(removed);
+        assertFalse(localCacheTier.getValue("key").isPresent());
+        assertFalse(localCacheTier.invalidate("key"));
+    }
+
+    @Test
+    void getValue_AfterTtlElapses_ReturnsEmptyAndEntryIsRemoved() {
+        // GIVEN
+        AtomicLong nanos = new AtomicLong();
+        LocalCacheTier tier = new LocalCacheTier(1_000_000, 60, 0, 0, nanos::get, Scheduler.disabledScheduler(), Runnable::run);
+        tier.setValue("short", 5, "value");
+        tier.setValue("long", 30, "value");
+
+        // WHEN
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        tier.cleanUp();
+
+        // THEN
+        assertFalse(tier.getValue("short").isPresent());
+        assertTrue(tier.getValue("long").isPresent());
+        assertEquals(1, tier.size());
+    }
+
+    @Test
+    void setValue_TtlAboveMaximum_IsCapped() {
+        // GIVEN
+        AtomicLong nanos = new AtomicLong();
+        LocalCacheTier tier = new LocalCacheTier(1_000_000, 60, 0, 0, nanos::get, Scheduler.disabledScheduler(), Runnable::run);
+        tier.setValue("key", Long.MAX_VALUE, "value");
+
+        // WHEN
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+        // THEN
+        assertFalse(tier.getValue("key").isPresent());
+    }
+
+    @Test
+    void setValue_OverMaximumWeight_EvictsToStayWithinBytes() {
+        // GIVEN
+        LocalCacheTier tier = new LocalCacheTier(1_000, 60, 0, 0, System::nanoTime, Scheduler.disabledScheduler(), Runnable::run);
+        String value = "x".repeat(96);
+
+        // WHEN
+        for (int i = 0; i < 50; i++) {
+            tier.setValue("key" + i, 10, value);
+        }
+        tier.cleanUp();
+
+        // THEN
+        assertTrue(tier.weightedSize() <= 1_000);
+        assertTrue(tier.size() < 50);
+    }
+
+    @Test
+    void hitRate_OnScanPollutedTrace_BeatsLru() {
+        // GIVEN
+        // Popular events are read with a skewed distribution while crawlers probe one-off ids in between
+        String[] trace = recordedTrace(new Random(42), 200_000, 2_000);
+        int entryBytes = "event-0000000".length() + 100;
+        int capacity = 200;
+        LocalCacheTier tier = new LocalCacheTier((long) capacity * entryBytes, 60, 0, 0, System::nanoTime,
+                Scheduler.disabledScheduler(), Runnable::run);
+        Map<String, String> lru = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        String value = "x".repeat(100);
+
+        // WHEN
+        int tierHits = 0;
+        int lruHits = 0;
+        for (String key : trace) {
+            if (tier.getValue(key).isPresent()) {
+                tierHits++;
+            } else {
+                tier.setValue(key, 60, value);
+            }
+            if (lru.get(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, value);
+            }
+        }
+
+        // THEN
+        double tierHitRate = (double) tierHits / trace.length;
+        double lruHitRate = (double) lruHits / trace.length;
+        assertTrue(tierHitRate > lruHitRate * 1.2,
+                "W-TinyLFU hit rate " + tierHitRate + " should clearly beat LRU hit rate " + lruHitRate);
+    }
+
+    // Half the accesses follow a Zipf distribution over the popular ids, half are unique crawler ids
+    private static String[] recordedTrace(Random random, int length, int popularIds) {
+        double[] cumulative = new double[popularIds];
+        double total = 0;
+        for (int i = 0; i < popularIds; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        String[] trace = new String[length];
+        int crawlerIds = 0;
+        for (int i = 0; i < length; i++) {
+            if (random.nextBoolean()) {
+                trace[i] = String.format("event-%07d", popularIds + crawlerIds++);
+                continue;
+            }
+            double sample = random.nextDouble() * total;
+            int low = 0;
+            int high = popularIds - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < sample) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            trace[i] = String.format("event-%07d", low);
+        }
+        return trace;
+    }
+
+    @Test
+    void pin_SurvivesInvalidateUntilPinTtlElapses() {
+        // GIVEN
+        AtomicLong nanos = new AtomicLong();
+        LocalCacheTier tier = new LocalCacheTier(1_000_000, 60, 10, 1000, nanos::get, Scheduler.disabledScheduler(),
+                Runnable::run);
+        tier.setValue("viral", 30, "value");
+        tier.pin("viral", "value");
+
+        // WHEN
+        tier.invalidate("viral");
+        Optional<String> pinnedAfterInvalidate = tier.getPinned("viral");
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+
+        // THEN
+        assertEquals(Optional.of("value"), pinnedAfterInvalidate);
+        assertFalse(tier.getPinned("viral").isPresent());
+    }
+
+    @Test
+    void setValue_PinnedKey_RefreshesPinnedValue() {
+        // GIVEN
+        LocalCacheTier tier = new LocalCacheTier(1_000_000, 60, 10, 1000);
+        tier.setValue("viral", 30, "old");
+        tier.pin("viral", "old");
+
+        // WHEN
+        tier.setValue("viral", 30, "new");
+
+        // THEN
+        assertEquals(Optional.of("new"), tier.getPinned("viral"));
+    }
+
+    @Test
+    void shed_DropsFractionOfEntriesAndKeepsPins() {
+        // GIVEN
+        LocalCacheTier tier = new LocalCacheTier(1_000_000, 60, 10, 1000, System::nanoTime,
+                Scheduler.disabledScheduler(), Runnable::run);
+        for (int i = 0; i < 8; ++i) {
+            tier.setValue("key" + i, 30, "value");
+        }
+        tier.pin("key0", "value");
+
+        // WHEN
+        int halved = tier.shed(0.5);
+        long sizeAfterHalf = tier.size();
+        int rest = tier.shed(1.0);
+
+        // THEN
+        assertEquals(4, halved);
+        assertEquals(4, sizeAfterHalf);
+        assertEquals(4, rest);
+        assertEquals(0, tier.size());
+        assertEquals(Optional.of("value"), tier.getPinned("key0"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class MemoryPressureMonitorTest {
+
+    private LocalCacheTier tier;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MemoryPressureMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        tier = mock(LocalCacheTier.class);
+        meterRegistry = new SimpleMeterRegistry();
+        monitor = new MemoryPressureMonitor(new double[]{0.75, 0.85, 0.95}, new double[]{0.25, 0.5, 1.0},
+                Collections.emptyList(), meterRegistry);
+        monitor.register(tier);
+    }
+
+    @Test
+    void onPressure_ShedsByHighestWatermarkReached() {
+        // GIVEN
+        when(tier.shed(0.5)).thenReturn(40);
+
+        // WHEN
+        int shed = monitor.onPressure("G1 Old Gen", new MemoryUsage(0, 88, 100, 100));
+
+        // THEN
+        assertEquals(40, shed);
+        verify(tier).shed(0.5);
+        assertEquals(1.0, meterRegistry.get("cache.local.shrink").tag("stage", "2").counter().count());
+        assertEquals(40.0, meterRegistry.get("cache.local.shrink.entries").tag("stage", "2").counter().count());
+    }
+
+    @Test
+    void onPressure_BelowLowestWatermark_ShedsNothing() {
+        // WHEN
+        int shed = monitor.onPressure("G1 Old Gen", new MemoryUsage(0, 50, 100, 100));
+
+        // THEN
+        assertEquals(0, shed);
+        verify(tier, never()).shed(anyDouble());
+    }
+
+    @Test
+    void constructor_WatermarksNotAscending_Throws() {
+        // WHEN - THEN
+        assertThrows(IllegalArgumentException.class, () -> new MemoryPressureMonitor(new double[]{0.9, 0.8},
+                new double[]{0.25, 0.5}, Collections.emptyList(), meterRegistry));
+    }
+}
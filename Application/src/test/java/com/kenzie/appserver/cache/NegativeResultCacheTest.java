@@ -0,0 +1,108 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class NegativeResultCacheTest {
+
+    private CacheClient cacheClient;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private NegativeResultCache negativeResultCache;
+
+    @BeforeEach
+    void setUp() {
+        cacheClient = mock(CacheClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+        negativeResultCache = new NegativeResultCache(cacheClient, 30, meterRegistry);
+    }
+
+    @Test
+    void recordMissing_WritesMarkerAtTheVersionReadWithoutAnnouncingIt() {
+        // GIVEN
+        String id = "missingId";
+
+        // WHEN
+        negativeResultCache.recordMissing(Keyspace.EVENT, id, 4L);
+
+        // THEN
+        verify(cacheClient).setValuesIfVersion(Collections.singletonMap("missing:event:" + id, "1"),
+                Collections.singletonMap("missing:event:" + id, 4L), 30, false);
+        verify(cacheClient, never()).setValue(anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    void versions_MapsMarkerVersionsBackToIds() {
+        // GIVEN
+        when(cacheClient.getVersions(anyCollection())).thenReturn(Collections.singletonMap("missing:event:event1", 2L));
+
+        // WHEN
+        Map<String, Long> versions = negativeResultCache.versions(Keyspace.EVENT, Collections.singletonList("event1"));
+
+        // THEN
+        assertEquals(Collections.singletonMap("event1", 2L), versions);
+    }
+
+    @Test
+    void recordDeleted_StoresMarkerWithShortTtl() {
+        // GIVEN
+        String id = "missingId";
+
+        // WHEN
+        negativeResultCache.recordDeleted(Keyspace.EVENT, id);
+
+        // THEN
+        verify(cacheClient).setValue(eq("missing:event:" + id), eq(30), anyString());
+    }
+
+    @Test
+    void isKnownMissing_CountsHitsAndMissesPerType() {
+        // GIVEN
+        when(cacheClient.getValue("missing:event:gone")).thenReturn(Optional.of("1"));
+        when(cacheClient.getValue("missing:event:unknown")).thenReturn(Optional.empty());
+
+        // WHEN
+        boolean gone = negativeResultCache.isKnownMissing(Keyspace.EVENT, "gone");
+        boolean unknown = negativeResultCache.isKnownMissing(Keyspace.EVENT, "unknown");
+
+        // THEN
+        assertTrue(gone);
+        assertFalse(unknown);
+        assertEquals(1, meterRegistry.counter("cache.negative.lookups", "type", "event", "result", "hit").count());
+        assertEquals(1, meterRegistry.counter("cache.negative.lookups", "type", "event", "result", "miss").count());
+    }
+
+    @Test
+    void findKnownMissing_ReturnsOnlyRecordedIds() {
+        // GIVEN
+        Map<String, String> found = Collections.singletonMap("missing:user:gone", "1");
+        when(cacheClient.getValues(anyCollection())).thenReturn(found);
+
+        // WHEN
+        Set<String> missing = negativeResultCache.findKnownMissing(Keyspace.USER, Arrays.asList("gone", "present"));
+
+        // THEN
+        assertEquals(Collections.singleton("gone"), missing);
+    }
+
+    @Test
+    void clear_InvalidatesRecordedMiss() {
+        // WHEN
+        negativeResultCache.clear(Keyspace.USER, "newUser");
+
+        // THEN
+        verify(cacheClient).invalidate("missing:user:newUser");
+    }
+}
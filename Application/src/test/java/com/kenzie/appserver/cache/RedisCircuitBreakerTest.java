@@ -0,0 +1,72 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedisCircuitBreakerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicBoolean redisHealthy = new AtomicBoolean(false);
+
+    private RedisCircuitBreaker circuitBreaker;
+
+    @AfterEach
+    void tearDown() {
+        circuitBreaker.shutdown();
+    }
+
+    @Test
+    void recordFailure_BelowThreshold_StaysClosed() {
+        // GIVEN
+        circuitBreaker = new RedisCircuitBreaker(3, 10, redisHealthy::get, meterRegistry);
+
+        // WHEN
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+
+        // THEN
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void recordFailure_AtThreshold_OpensAndBypassesRedis() {
+        // GIVEN
+        circuitBreaker = new RedisCircuitBreaker(2, 60000, redisHealthy::get, meterRegistry);
+
+        // WHEN
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+
+        // THEN
+        assertFalse(circuitBreaker.allowRequest());
+        assertEquals(1.0, meterRegistry.get("cache.redis.circuit.transitions")
+                .tag("from", "CLOSED").tag("to", "OPEN").counter().count());
+        assertEquals(2.0, meterRegistry.get("cache.redis.circuit.state").gauge().value());
+    }
+
+    @Test
+    void probe_RedisRecovers_ClosesCircuit() throws InterruptedException {
+        // GIVEN
+        circuitBreaker = new RedisCircuitBreaker(1, 10, redisHealthy::get, meterRegistry);
+        circuitBreaker.recordFailure();
+
+        // WHEN
+        redisHealthy.set(true);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!circuitBreaker.allowRequest() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // THEN
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
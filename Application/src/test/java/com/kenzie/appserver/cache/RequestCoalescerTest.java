@@ -0,0 +1,126 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RequestCoalescer requestCoalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        requestCoalescer = new RequestCoalescer(meterRegistry);
+    }
+
+    @Test
+    void load_ConcurrentCallersForSameKey_RunLoaderOnce() throws Exception {
+        // GIVEN
+        int callers = 8;
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<String>> results = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> requestCoalescer.load("event", "event1", () -> {
+                loaderCalls.incrementAndGet();
+                try {
+                    releaseLoader.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "loaded";
+            })));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (collapsedLoads() < callers - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        releaseLoader.countDown();
+
+        // THEN
+        for (Future<String> result : results) {
+            assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, loaderCalls.get());
+        assertEquals(callers - 1, collapsedLoads());
+    }
+
+    @Test
+    void load_SequentialCalls_EachRunLoader() {
+        // GIVEN
+        AtomicInteger loaderCalls = new AtomicInteger();
+
+        // WHEN
+        requestCoalescer.load("event", "event1", loaderCalls::incrementAndGet);
+        requestCoalescer.load("event", "event1", loaderCalls::incrementAndGet);
+
+        // THEN
+        assertEquals(2, loaderCalls.get());
+    }
+
+    @Test
+    void load_LoaderThrows_ExceptionPropagates() {
+        // WHEN - THEN
+        assertThrows(IllegalStateException.class, () -> requestCoalescer.load("event", "event1", () -> {
+            throw new IllegalStateException("throttled");
+        }));
+    }
+
+    @Test
+    void load_LoaderThrowsError_WaitersFailInsteadOfHanging() throws Exception {
+        // GIVEN
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Object> leader = executor.submit(() -> requestCoalescer.load("event", "event1", () -> {
+            try {
+                releaseLoader.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throw new StackOverflowError();
+        }));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.find("cache.coalescer.loads").tag("role", "leader").counter() == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Future<Object> waiter = executor.submit(() -> requestCoalescer.load("event", "event1", () -> "loaded"));
+        while (collapsedLoads() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // WHEN
+        releaseLoader.countDown();
+
+        // THEN
+        ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderFailure.getCause() instanceof StackOverflowError);
+        ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(waiterFailure.getCause() instanceof StackOverflowError);
+        executor.shutdown();
+    }
+
+    private double collapsedLoads() {
+        return meterRegistry.find("cache.coalescer.loads").tag("role", "collapsed").counters()
+                .stream().mapToDouble(counter -> counter.count()).sum();
+    }
+}
@@ -0,0 +1,160 @@
+package com.kenzie.appserver.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ResponseBytesCacheTest {
+
+    private ResponseBytesCache responseBytesCache;
+
+    private CacheInvalidationBus.Listener cacheListener;
+
+    @BeforeEach
+    void setUp() {
+        CacheClient cacheClient = mock(CacheClient.class);
+        responseBytesCache = new ResponseBytesCache(cacheClient, 1_000_000, 60);
+        ArgumentCaptor<CacheInvalidationBus.Listener> listener = ArgumentCaptor.forClass(CacheInvalidationBus.Listener.class);
+        verify(cacheClient).addListener(listener.capture());
+        cacheListener = listener.getValue();
+    }
+
+    @Test
+    void get_SecondRead_ReusesRenderedBody() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+
+        // WHEN
+        byte[] first = responseBytesCache.get("event1", () -> render(renders, "{}"));
+        byte[] second = responseBytesCache.get("event1", () -> render(renders, "{}"));
+
+        // THEN
+        assertSame(first, second);
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    void get_NullBody_IsNotCached() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+
+        // WHEN
+        byte[] first = responseBytesCache.get("missing", () -> {
+            renders.incrementAndGet();
+            return null;
+        });
+        responseBytesCache.get("missing", () -> render(renders, "{}"));
+
+        // THEN
+        assertNull(first);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void keysInvalidated_DropsOnlyThoseBodies() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+        responseBytesCache.get("event1", () -> render(renders, "{\"v\":1}"));
+        responseBytesCache.get("event2", () -> render(renders, "{}"));
+
+        // WHEN
+        cacheListener.keysInvalidated(Collections.singletonList("event1"));
+        byte[] reloaded = responseBytesCache.get("event1", () -> render(renders, "{\"v\":2}"));
+        responseBytesCache.get("event2", () -> render(renders, "{}"));
+
+        // THEN
+        assertEquals("{\"v\":2}", new String(reloaded, StandardCharsets.UTF_8));
+        assertEquals(3, renders.get());
+    }
+
+    @Test
+    void allInvalidated_DropsEveryBody() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+        responseBytesCache.get("event1", () -> render(renders, "{}"));
+
+        // WHEN
+        cacheListener.allInvalidated();
+        responseBytesCache.get("event1", () -> render(renders, "{}"));
+
+        // THEN
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void get_NewerVersion_RendersAgain() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+        responseBytesCache.get("event:event1", 1, () -> render(renders, "{\"v\":1}"));
+
+        // WHEN
+        byte[] sameVersion = responseBytesCache.get("event:event1", 1, () -> render(renders, "{\"v\":1}"));
+        byte[] newerVersion = responseBytesCache.get("event:event1", 2, () -> render(renders, "{\"v\":2}"));
+
+        // THEN
+        assertEquals("{\"v\":1}", new String(sameVersion, StandardCharsets.UTF_8));
+        assertEquals("{\"v\":2}", new String(newerVersion, StandardCharsets.UTF_8));
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void get_RenderThatWritesTheCache_IsReturnedButNotStored() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+
+        // WHEN
+        byte[] first = responseBytesCache.get("event1", () -> {
+            cacheListener.keysInvalidated(Collections.singletonList("event1"));
+            return render(renders, "{}");
+        });
+        responseBytesCache.get("event1", () -> render(renders, "{}"));
+
+        // THEN
+        assertNotNull(first);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void get_OtherKeyInvalidatedDuringRender_StoresTheBody() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+
+        // WHEN
+        responseBytesCache.get("event1", () -> {
+            cacheListener.keysInvalidated(Collections.singletonList("event2"));
+            return render(renders, "{}");
+        });
+        responseBytesCache.get("event1", () -> render(renders, "{}"));
+
+        // THEN
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    void get_EverythingInvalidatedDuringRender_IsReturnedButNotStored() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+
+        // WHEN
+        responseBytesCache.get("event1", () -> {
+            cacheListener.allInvalidated();
+            return render(renders, "{}");
+        });
+        responseBytesCache.get("event1", () -> render(renders, "{}"));
+
+        // THEN
+        assertEquals(2, renders.get());
+    }
+
+    private static byte[] render(AtomicInteger renders, String json) {
+        renders.incrementAndGet();
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
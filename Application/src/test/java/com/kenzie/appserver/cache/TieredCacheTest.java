@@ -0,0 +1,82 @@
+package com.kenzie.appserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TieredCacheTest {
+
+    private CacheClient cacheClient;
+
+    private TieredCache tieredCache;
+
+    @BeforeEach
+    void setUp() {
+        cacheClient = mock(CacheClient.class);
+        when(cacheClient.getValue(anyString())).thenReturn(Optional.empty());
+        tieredCache = new TieredCache("users", Keyspace.USER, cacheClient, 300, new GsonValueSerializer(String.class),
+                new RequestCoalescer(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void get_Miss_LoadsAndStoresUnderPrefixedKey() {
+        // GIVEN
+        AtomicInteger loads = new AtomicInteger();
+
+        // WHEN
+        String value = tieredCache.get("user1", () -> {
+            loads.incrementAndGet();
+            return "loaded";
+        });
+
+        // THEN
+        assertEquals("loaded", value);
+        assertEquals(1, loads.get());
+        verify(cacheClient).setValuesIfVersion(Collections.singletonMap("user:user1", "\"loaded\""), Collections.singletonMap("user:user1", 0L), 300);
+    }
+
+    @Test
+    void get_Hit_DeserializesWithoutLoading() {
+        // GIVEN
+        when(cacheClient.getValue("user:user1")).thenReturn(Optional.of("\"cached\""));
+
+        // WHEN
+        String value = tieredCache.get("user1", () -> {
+            throw new IllegalStateException("should not load");
+        });
+
+        // THEN
+        assertEquals("cached", value);
+        assertEquals("cached", tieredCache.get("user1").get());
+    }
+
+    @Test
+    void get_LoaderReturnsNull_NothingIsStored() {
+        // WHEN
+        String value = tieredCache.get("missing", () -> null);
+
+        // THEN
+        assertNull(value);
+        verify(cacheClient, never()).setValue(anyString(), anyInt(), anyString());
+        verify(cacheClient, never()).setValuesIfVersion(anyMap(), anyMap(), anyInt());
+        assertNull(tieredCache.get("missing"));
+    }
+
+    @Test
+    void evictAndClear_UsePrefixedKeys() {
+        // WHEN
+        tieredCache.evict("user1");
+        tieredCache.clear();
+
+        // THEN
+        verify(cacheClient).invalidate("user:user1");
+        verify(cacheClient).invalidatePrefix("user:");
+    }
+}
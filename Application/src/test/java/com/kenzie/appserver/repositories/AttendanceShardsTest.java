@@ -0,0 +1,171 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.kenzie.appserver.repositories.model.EventAttendanceRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AttendanceShardsTest {
+
+    private DynamoDBMapper dynamoDBMapper;
+
+    private AmazonDynamoDB amazonDynamoDB;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AttendanceShards attendanceShards;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDBMapper = mock(DynamoDBMapper.class);
+        amazonDynamoDB = mock(AmazonDynamoDB.class);
+        meterRegistry = new SimpleMeterRegistry();
+        attendanceShards = new AttendanceShards(dynamoDBMapper, amazonDynamoDB, meterRegistry, true, 8, 60_000, 1000);
+    }
+
+    @Test
+    void shardsOf_ShardingDisabled_IsOneWithoutReading() {
+        // GIVEN
+        AttendanceShards disabled = new AttendanceShards(dynamoDBMapper, amazonDynamoDB, meterRegistry, false, 8, 60_000, 1000);
+
+        // WHEN - THEN
+        assertEquals(1, disabled.shardsOf("event1"));
+        assertEquals(0, disabled.countShardedJoins("event1"));
+        verifyZeroInteractions(dynamoDBMapper, amazonDynamoDB);
+    }
+
+    @Test
+    void partitionsOf_ListsTheUsersShardOfEveryEarlierCount() {
+        // GIVEN
+        int hash = "user1".hashCode();
+
+        // WHEN
+        List<String> partitions = AttendanceShards.partitionsOf("event1", "user1", 8);
+
+        // THEN
+        assertEquals(Math.floorMod(hash, 8), Integer.parseInt(partitions.get(0).substring("event1#".length())));
+        assertTrue(partitions.contains("event1#" + Math.floorMod(hash, 4)));
+        assertTrue(partitions.contains("event1#" + Math.floorMod(hash, 2)));
+        assertEquals("event1", partitions.get(partitions.size() - 1));
+        assertEquals(Arrays.asList("event1", "event1#0", "event1#1"), AttendanceShards.partitionsOf("event1", 2));
+    }
+
+    @Test
+    void flush_AddsThePendingJoinsToOneCounter() {
+        // GIVEN
+        EventAttendanceRecord layout = new EventAttendanceRecord("event1");
+        layout.setShards(4);
+        when(dynamoDBMapper.load(EventAttendanceRecord.class, "event1")).thenReturn(layout);
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(new UpdateItemResult());
+        for (int i = 0; i < 3; ++i) {
+            attendanceShards.recordJoin("event1");
+        }
+
+        // WHEN
+        attendanceShards.flush();
+        attendanceShards.flush();
+
+        // THEN
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(captor.capture());
+        assertEquals("ADD #attendees :joins", captor.getValue().getUpdateExpression());
+        assertEquals("3", captor.getValue().getExpressionAttributeValues().get(":joins").getN());
+        assertTrue(captor.getValue().getKey().get("Id").getS().matches("event1#[0-3]"));
+    }
+
+    @Test
+    void flush_Fails_KeepsTheJoinsForTheNextFlush() {
+        // GIVEN
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+                .thenThrow(new ProvisionedThroughputExceededException("Throttled"))
+                .thenReturn(new UpdateItemResult());
+        attendanceShards.recordJoin("event1");
+        attendanceShards.recordJoin("event1");
+
+        // WHEN
+        attendanceShards.flush();
+        attendanceShards.flush();
+
+        // THEN
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB, times(2)).updateItem(captor.capture());
+        assertEquals("2", captor.getValue().getExpressionAttributeValues().get(":joins").getN());
+    }
+
+    @Test
+    void countShardedJoins_ReadsTheShardCountOnlyOncePerRefresh() {
+        // GIVEN
+        EventAttendanceRecord layout = new EventAttendanceRecord("event1");
+        layout.setShards(2);
+        when(dynamoDBMapper.load(EventAttendanceRecord.class, "event1")).thenReturn(layout);
+        attendanceShards.recordJoin("event1");
+
+        // WHEN
+        attendanceShards.countShardedJoins("event1");
+        long count = attendanceShards.countShardedJoins("event1");
+
+        // THEN
+        assertEquals(1, count);
+        verify(dynamoDBMapper, times(1)).load(EventAttendanceRecord.class, "event1");
+    }
+
+    @Test
+    void flush_NothingPending_KeepsJoinsCountedAfterward() {
+        // GIVEN
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(new UpdateItemResult());
+        attendanceShards.recordJoin("event1");
+        attendanceShards.flush();
+
+        // WHEN
+        attendanceShards.flush();
+        attendanceShards.recordJoin("event1");
+
+        // THEN
+        assertEquals(1, attendanceShards.countShardedJoins("event1"));
+    }
+
+    @Test
+    void scaleUp_DoublesTheStoredShardCount() {
+        // GIVEN
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(new UpdateItemResult());
+
+        // WHEN
+        int scaled = attendanceShards.scaleUp("event1", 4);
+
+        // THEN
+        assertEquals(8, scaled);
+        assertEquals(8, attendanceShards.shardsOf("event1"));
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(captor.capture());
+        assertEquals("4", captor.getValue().getExpressionAttributeValues().get(":from").getN());
+        assertEquals(1, meterRegistry.get("events.attendance.shards.scaled").counter().count());
+        // Already at the limit
+        assertEquals(8, attendanceShards.scaleUp("event1", 8));
+        verifyNoMoreInteractions(amazonDynamoDB);
+    }
+
+    @Test
+    void scaleUp_ScaledByAnotherNode_ReturnsTheStoredCount() {
+        // GIVEN
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenThrow(new ConditionalCheckFailedException("Changed"));
+        EventAttendanceRecord layout = new EventAttendanceRecord("event1");
+        layout.setShards(4);
+        when(dynamoDBMapper.load(EventAttendanceRecord.class, "event1")).thenReturn(layout);
+
+        // WHEN - THEN
+        assertEquals(4, attendanceShards.scaleUp("event1", 2));
+    }
+}
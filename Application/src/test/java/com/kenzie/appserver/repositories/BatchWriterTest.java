@@ -0,0 +1,155 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.kenzie.appserver.repositories.model.BatchWriteResult;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.UserRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BatchWriterTest {
+
+    private AmazonDynamoDB amazonDynamoDB;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BatchWriter batchWriter;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = mock(AmazonDynamoDB.class);
+        meterRegistry = new SimpleMeterRegistry();
+        batchWriter = new BatchWriter(new DynamoDBMapper(amazonDynamoDB), amazonDynamoDB,
+                Executors.newScheduledThreadPool(2), meterRegistry, 3, 1, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchWriter.shutdown();
+    }
+
+    @Test
+    void write_SplitsIntoBatchesOfTwentyFive() {
+        // GIVEN
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+        List<EventRecord> events = events(30);
+
+        // WHEN
+        BatchWriteResult result = batchWriter.write(Collections.singletonList(user("user1")), events);
+
+        // THEN
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(amazonDynamoDB, times(2)).batchWriteItem(captor.capture());
+        List<Integer> sizes = new ArrayList<>();
+        for (BatchWriteItemRequest request : captor.getAllValues()) {
+            sizes.add(count(request.getRequestItems()));
+        }
+        Collections.sort(sizes);
+        assertEquals(List.of(6, 25), sizes);
+        assertEquals(31, result.getWritten());
+        assertEquals(0, result.getFailed());
+        assertEquals(31, meterRegistry.get("dynamodb.batch.items").tag("outcome", "written").counter().count());
+    }
+
+    @Test
+    void write_RetriesUnprocessedItems() {
+        // GIVEN
+        List<EventRecord> events = events(3);
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = (BatchWriteItemRequest) invocation.getArguments()[0];
+            List<WriteRequest> writes = request.getRequestItems().get("Events");
+            // Every request leaves its last item unprocessed, until only one is sent
+            if (writes.size() == 1) {
+                return new BatchWriteItemResult();
+            }
+            return new BatchWriteItemResult()
+                    .withUnprocessedItems(Collections.singletonMap("Events", writes.subList(writes.size() - 1, writes.size())));
+        });
+
+        // WHEN
+        BatchWriteResult result = batchWriter.deleteAll(events);
+
+        // THEN
+        verify(amazonDynamoDB, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+        assertEquals(3, result.getWritten());
+        assertEquals(2, result.getAttempts());
+        assertEquals(1, meterRegistry.get("dynamodb.batch.retries").counter().count());
+    }
+
+    @Test
+    void write_ItemsStillUnprocessedAfterLastAttempt_Throws() {
+        // GIVEN
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = (BatchWriteItemRequest) invocation.getArguments()[0];
+            return new BatchWriteItemResult().withUnprocessedItems(request.getRequestItems());
+        });
+
+        // WHEN - THEN
+        assertThrows(IllegalStateException.class, () -> batchWriter.putAll(events(2)));
+        verify(amazonDynamoDB, times(3)).batchWriteItem(any(BatchWriteItemRequest.class));
+        assertEquals(2, meterRegistry.get("dynamodb.batch.items").tag("outcome", "failed").counter().count());
+    }
+
+    @Test
+    void submit_StreamsEachBatchResult() {
+        // GIVEN
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+        List<BatchWriteResult> streamed = new CopyOnWriteArrayList<>();
+
+        // WHEN
+        BatchWriteResult result = batchWriter.submit(events(60), Collections.emptyList(), streamed::add).join();
+
+        // THEN
+        assertEquals(3, streamed.size());
+        assertEquals(60, result.getWritten());
+    }
+
+    @Test
+    void backoffMillis_StaysWithinTheCappedExponentialCeiling() {
+        for (int attempt = 0; attempt < 40; ++attempt) {
+            long backoff = batchWriter.backoffMillis(attempt);
+            assertTrue(backoff >= 0 && backoff <= Math.min(5, 1L << Math.min(attempt, 30)));
+        }
+    }
+
+    private static List<EventRecord> events(int count) {
+        List<EventRecord> events = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            EventRecord event = new EventRecord();
+            event.setEventID("event" + i);
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static UserRecord user(String userId) {
+        UserRecord user = new UserRecord();
+        user.setUserID(userId);
+        return user;
+    }
+
+    private static int count(Map<String, List<WriteRequest>> requestItems) {
+        int count = 0;
+        for (List<WriteRequest> writes : requestItems.values()) {
+            count += writes.size();
+        }
+        return count;
+    }
+}
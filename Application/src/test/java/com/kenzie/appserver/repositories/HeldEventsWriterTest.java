@@ -0,0 +1,57 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class HeldEventsWriterTest {
+
+    private AmazonDynamoDB amazonDynamoDB;
+
+    private HeldEventsWriter heldEventsWriter;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = mock(AmazonDynamoDB.class);
+        heldEventsWriter = new HeldEventsWriter(amazonDynamoDB);
+    }
+
+    @Test
+    void recordHeld_AppendsTheNameOnConditionTheIdIsNew() {
+        // GIVEN
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(new UpdateItemResult());
+
+        // WHEN
+        boolean recorded = heldEventsWriter.recordHeld("Organization1", "event1", "Event One");
+
+        // THEN
+        assertTrue(recorded);
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(captor.capture());
+        UpdateItemRequest request = captor.getValue();
+        assertEquals("Organization", request.getTableName());
+        assertEquals("Organization1", request.getKey().get("ID").getS());
+        assertEquals("attribute_exists(#id) AND NOT contains(#heldIds, :eventId)", request.getConditionExpression());
+        assertEquals("Event One", request.getExpressionAttributeValues().get(":name").getL().get(0).getS());
+        assertEquals(Collections.singletonList("event1"), request.getExpressionAttributeValues().get(":ids").getSS());
+        assertEquals(HeldEventsWriter.HELD_EVENT_IDS_ATTRIBUTE, request.getExpressionAttributeNames().get("#heldIds"));
+    }
+
+    @Test
+    void recordHeld_AlreadyRecorded_ReturnsFalse() {
+        // GIVEN
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenThrow(new ConditionalCheckFailedException("Recorded"));
+
+        // WHEN - THEN
+        assertFalse(heldEventsWriter.recordHeld("Organization1", "event1", "Event One"));
+    }
+}
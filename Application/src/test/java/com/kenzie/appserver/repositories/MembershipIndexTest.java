@@ -0,0 +1,127 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.kenzie.appserver.repositories.model.AttendanceRecord;
+import com.kenzie.appserver.repositories.model.FriendshipRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class MembershipIndexTest {
+
+    private DynamoDBMapper dynamoDBMapper;
+
+    private AttendanceShards attendanceShards;
+
+    private MembershipIndex membershipIndex;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDBMapper = mock(DynamoDBMapper.class);
+        attendanceShards = mock(AttendanceShards.class);
+        when(attendanceShards.shardsOf(anyString())).thenReturn(1);
+        membershipIndex = new MembershipIndex(dynamoDBMapper, attendanceShards);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAttendees_QueriesTheEventPartition() {
+        // GIVEN
+        Map<String, AttributeValue> lastKey = Collections.singletonMap("Event_Id", new AttributeValue().withS("event1"));
+        when(dynamoDBMapper.queryPage(eq(AttendanceRecord.class), any(DynamoDBQueryExpression.class)))
+                .thenReturn(page(Arrays.asList(new AttendanceRecord("event1", "user1"), new AttendanceRecord("event1", "user2")), lastKey));
+
+        // WHEN
+        ScanPage<String> page = membershipIndex.findAttendees("event1", null, 2);
+
+        // THEN
+        ArgumentCaptor<DynamoDBQueryExpression> captor = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
+        verify(dynamoDBMapper).queryPage(eq(AttendanceRecord.class), captor.capture());
+        assertEquals("event1", ((AttendanceRecord) captor.getValue().getHashKeyValues()).getEventId());
+        assertEquals(2, captor.getValue().getLimit().intValue());
+        assertEquals(Arrays.asList("user1", "user2"), page.getItems());
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAttendees_ShardedEvent_FillsThePageAcrossPartitions() {
+        // GIVEN
+        when(attendanceShards.shardsOf("event1")).thenReturn(2);
+        when(dynamoDBMapper.queryPage(eq(AttendanceRecord.class), any(DynamoDBQueryExpression.class)))
+                .thenReturn(page(Collections.singletonList(new AttendanceRecord("event1", "user1")), null))
+                .thenReturn(page(Collections.singletonList(new AttendanceRecord("event1#0", "user2")), null))
+                .thenReturn(page(Collections.singletonList(new AttendanceRecord("event1#1", "user3")), null));
+
+        // WHEN
+        ScanPage<String> first = membershipIndex.findAttendees("event1", null, 2);
+        ScanPage<String> second = membershipIndex.findAttendees("event1", first.getNextCursor(), 2);
+
+        // THEN
+        ArgumentCaptor<DynamoDBQueryExpression> captor = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
+        verify(dynamoDBMapper, times(3)).queryPage(eq(AttendanceRecord.class), captor.capture());
+        assertEquals("event1#1", ((AttendanceRecord) captor.getAllValues().get(2).getHashKeyValues()).getEventId());
+        assertNull(captor.getAllValues().get(2).getExclusiveStartKey());
+        assertEquals(Arrays.asList("user1", "user2"), first.getItems());
+        assertEquals(Collections.singletonList("user3"), second.getItems());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAllJoinedEvents_PagesThroughTheUserIndex() {
+        // GIVEN
+        Map<String, AttributeValue> lastKey = Collections.singletonMap("User_Id", new AttributeValue().withS("user1"));
+        when(dynamoDBMapper.queryPage(eq(AttendanceRecord.class), any(DynamoDBQueryExpression.class)))
+                .thenReturn(page(Collections.singletonList(new AttendanceRecord("event1", "user1")), lastKey))
+                .thenReturn(page(Collections.singletonList(new AttendanceRecord("event2#3", "user1")), null));
+
+        // WHEN
+        List<String> events = membershipIndex.findAllJoinedEvents("user1");
+
+        // THEN
+        ArgumentCaptor<DynamoDBQueryExpression> captor = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
+        verify(dynamoDBMapper, times(2)).queryPage(eq(AttendanceRecord.class), captor.capture());
+        assertEquals(AttendanceRecord.USER_INDEX, captor.getValue().getIndexName());
+        assertEquals(Arrays.asList("event1", "event2"), events);
+    }
+
+    @Test
+    void countAttendees_AddsTheShardedJoins() {
+        // GIVEN
+        when(dynamoDBMapper.count(eq(AttendanceRecord.class), any(DynamoDBQueryExpression.class))).thenReturn(3);
+        when(attendanceShards.countShardedJoins("event1")).thenReturn(40L);
+
+        // WHEN - THEN
+        assertEquals(43, membershipIndex.countAttendees("event1"));
+    }
+
+    @Test
+    void areFriends_LooksUpTheEdgeByKey() {
+        // GIVEN
+        when(dynamoDBMapper.load(FriendshipRecord.class, "user1", "user2")).thenReturn(new FriendshipRecord("user1", "user2"));
+
+        // WHEN - THEN
+        assertTrue(membershipIndex.areFriends("user1", "user2"));
+        assertFalse(membershipIndex.areFriends("user2", "user3"));
+    }
+
+    private static <T> QueryResultPage<T> page(List<T> results, Map<String, AttributeValue> lastEvaluatedKey) {
+        QueryResultPage<T> page = new QueryResultPage<>();
+        page.setResults(results);
+        page.setLastEvaluatedKey(lastEvaluatedKey);
+        return page;
+    }
+}
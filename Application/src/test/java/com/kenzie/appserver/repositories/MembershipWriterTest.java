@@ -0,0 +1,202 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.Put;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class MembershipWriterTest {
+
+    private AmazonDynamoDB amazonDynamoDB;
+
+    private AttendanceShards attendanceShards;
+
+    private MembershipWriter membershipWriter;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = mock(AmazonDynamoDB.class);
+        attendanceShards = mock(AttendanceShards.class);
+        when(attendanceShards.shardsOf(anyString())).thenReturn(1);
+        membershipWriter = new MembershipWriter(amazonDynamoDB, attendanceShards);
+    }
+
+    @Test
+    void addAttendee_ChecksBothItemsAndPutsOneEdge() {
+        // GIVEN
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class))).thenReturn(new TransactWriteItemsResult());
+
+        // WHEN
+        MembershipWriter.LinkOutcome outcome = membershipWriter.addAttendee("user1", "event1");
+
+        // THEN
+        assertEquals(MembershipWriter.LinkOutcome.LINKED, outcome);
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(amazonDynamoDB).transactWriteItems(captor.capture());
+        List<TransactWriteItem> items = captor.getValue().getTransactItems();
+        assertEquals(3, items.size());
+        assertEquals("Users", items.get(0).getConditionCheck().getTableName());
+        assertEquals("Events", items.get(1).getConditionCheck().getTableName());
+        Put edge = items.get(2).getPut();
+        assertEquals("Attendance", edge.getTableName());
+        assertEquals("event1", edge.getItem().get("Event_Id").getS());
+        assertEquals("user1", edge.getItem().get("User_Id").getS());
+        assertEquals("attribute_not_exists(#hash)", edge.getConditionExpression());
+    }
+
+    @Test
+    void addAttendee_ShardedEvent_PutsEdgeInTheUsersShardAndChecksEarlierShards() {
+        // GIVEN
+        when(attendanceShards.shardsOf("event1")).thenReturn(4);
+        when(amazonDynamoDB.getItem(any(GetItemRequest.class)))
+                .thenReturn(new GetItemResult().withItem(Collections.singletonMap("id", new AttributeValue().withS("event1"))));
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class))).thenReturn(new TransactWriteItemsResult());
+        List<String> partitions = AttendanceShards.partitionsOf("event1", "user1", 4);
+
+        // WHEN
+        MembershipWriter.LinkOutcome outcome = membershipWriter.addAttendee("user1", "event1");
+
+        // THEN
+        assertEquals(MembershipWriter.LinkOutcome.LINKED, outcome);
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(amazonDynamoDB).transactWriteItems(captor.capture());
+        List<TransactWriteItem> items = captor.getValue().getTransactItems();
+        // No condition check on the event item
+        assertEquals(1 + partitions.size(), items.size());
+        assertEquals("Users", items.get(0).getConditionCheck().getTableName());
+        assertEquals(partitions.get(0), items.get(1).getPut().getItem().get("Event_Id").getS());
+        assertEquals(partitions.get(partitions.size() - 1), items.get(items.size() - 1).getConditionCheck().getKey().get("Event_Id").getS());
+        verify(attendanceShards).recordJoin("event1");
+    }
+
+    @Test
+    void addAttendee_ShardedEventMissing_ReturnsSecondMissing() {
+        // GIVEN
+        when(attendanceShards.shardsOf("event1")).thenReturn(2);
+        when(amazonDynamoDB.getItem(any(GetItemRequest.class))).thenReturn(new GetItemResult());
+
+        // WHEN - THEN
+        assertEquals(MembershipWriter.LinkOutcome.SECOND_MISSING, membershipWriter.addAttendee("user1", "event1"));
+        verify(amazonDynamoDB, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void addAttendee_Throttled_ScalesTheShardsUpAndRetries() {
+        // GIVEN
+        when(attendanceShards.isEnabled()).thenReturn(true);
+        when(attendanceShards.scaleUp("event1", 1)).thenReturn(2);
+        when(amazonDynamoDB.getItem(any(GetItemRequest.class)))
+                .thenReturn(new GetItemResult().withItem(Collections.singletonMap("id", new AttributeValue().withS("event1"))));
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(cancelled("None", "None", "ThrottlingError"))
+                .thenReturn(new TransactWriteItemsResult());
+
+        // WHEN
+        MembershipWriter.LinkOutcome outcome = membershipWriter.addAttendee("user1", "event1");
+
+        // THEN
+        assertEquals(MembershipWriter.LinkOutcome.LINKED, outcome);
+        verify(amazonDynamoDB, times(2)).transactWriteItems(any(TransactWriteItemsRequest.class));
+        verify(attendanceShards).recordJoin("event1");
+    }
+
+    @Test
+    void addAttendee_ThrottledWithShardingDisabled_Throws() {
+        // GIVEN
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(cancelled("None", "None", "ThrottlingError"));
+
+        // WHEN - THEN
+        assertThrows(TransactionCanceledException.class, () -> membershipWriter.addAttendee("user1", "event1"));
+        verify(attendanceShards, never()).scaleUp(anyString(), anyInt());
+    }
+
+    @Test
+    void addFriendship_PutsAnEdgeInEachDirection() {
+        // GIVEN
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class))).thenReturn(new TransactWriteItemsResult());
+
+        // WHEN
+        membershipWriter.addFriendship("user1", "user2");
+
+        // THEN
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(amazonDynamoDB).transactWriteItems(captor.capture());
+        List<TransactWriteItem> items = captor.getValue().getTransactItems();
+        assertEquals(4, items.size());
+        assertEquals("user2", items.get(2).getPut().getItem().get("Friend_Id").getS());
+        assertEquals("user1", items.get(3).getPut().getItem().get("Friend_Id").getS());
+    }
+
+    @Test
+    void addAttendee_EdgeExists_ReturnsAlreadyLinked() {
+        // GIVEN
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(cancelled("None", "None", "ConditionalCheckFailed"));
+
+        // WHEN - THEN
+        assertEquals(MembershipWriter.LinkOutcome.ALREADY_LINKED, membershipWriter.addAttendee("user1", "event1"));
+    }
+
+    @Test
+    void addAttendee_EventMissing_ReturnsSecondMissing() {
+        // GIVEN
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(cancelled("None", "ConditionalCheckFailed", "None"));
+
+        // WHEN - THEN
+        assertEquals(MembershipWriter.LinkOutcome.SECOND_MISSING, membershipWriter.addAttendee("user1", "event1"));
+    }
+
+    @Test
+    void addFriendship_UserMissing_ReturnsFirstMissing() {
+        // GIVEN
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(cancelled("ConditionalCheckFailed", "None", "ConditionalCheckFailed", "None"));
+
+        // WHEN - THEN
+        assertEquals(MembershipWriter.LinkOutcome.FIRST_MISSING, membershipWriter.addFriendship("user1", "user2"));
+    }
+
+    @Test
+    void addFriendship_TransactionConflict_Throws() {
+        // GIVEN
+        when(amazonDynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(cancelled("TransactionConflict", "None", "None", "None"));
+
+        // WHEN - THEN
+        assertThrows(TransactionCanceledException.class, () -> membershipWriter.addFriendship("user1", "user2"));
+    }
+
+    @Test
+    void addFriendship_SameUser_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> membershipWriter.addFriendship("user1", "user1"));
+        verifyZeroInteractions(amazonDynamoDB);
+    }
+
+    private static TransactionCanceledException cancelled(String... codes) {
+        CancellationReason[] reasons = new CancellationReason[codes.length];
+        for (int i = 0; i < codes.length; ++i) {
+            reasons[i] = new CancellationReason().withCode(codes[i]);
+        }
+        TransactionCanceledException ex = new TransactionCanceledException("Transaction cancelled");
+        ex.setCancellationReasons(Arrays.asList(reasons));
+        return ex;
+    }
+}
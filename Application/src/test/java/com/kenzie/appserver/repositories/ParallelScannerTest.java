@@ -0,0 +1,90 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ParallelScannerTest {
+
+    private DynamoDBMapper dynamoDBMapper;
+
+    private ParallelScanner parallelScanner;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDBMapper = mock(DynamoDBMapper.class);
+        parallelScanner = new ParallelScanner(dynamoDBMapper, Executors.newFixedThreadPool(2), 2, 10, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        parallelScanner.shutdown();
+    }
+
+    @Test
+    void scan_ReadsEverySegmentToItsLastPage() {
+        // GIVEN
+        when(dynamoDBMapper.scanPage(eq(EventRecord.class), any(DynamoDBScanExpression.class))).thenAnswer(invocation -> {
+            DynamoDBScanExpression scanExpression = (DynamoDBScanExpression) invocation.getArguments()[1];
+            int segment = scanExpression.getSegment();
+            boolean firstPage = scanExpression.getExclusiveStartKey() == null;
+            // Segment 0 has two pages, segment 1 a single one
+            if (segment == 0 && firstPage) {
+                return page(Arrays.asList(event("a"), event("b")), Collections.singletonMap("id", new AttributeValue().withS("b")));
+            }
+            return page(Collections.singletonList(event(segment == 0 ? "c" : "d")), null);
+        });
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        // WHEN
+        ParallelScanner.ScanProgress progress = parallelScanner.scan(EventRecord.class, record -> seen.add(record.getEventID()));
+
+        // THEN
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d")), seen);
+        assertEquals(4, progress.getItems());
+        assertEquals(3, progress.getItems(0));
+        assertEquals(2, progress.getPages(0));
+        assertEquals(1, progress.getPages(1));
+        assertEquals(2, progress.getFinishedSegments());
+    }
+
+    @Test
+    void scan_FailingSegment_Throws() {
+        // GIVEN
+        when(dynamoDBMapper.scanPage(eq(EventRecord.class), any(DynamoDBScanExpression.class)))
+                .thenThrow(new RuntimeException("throttled"));
+
+        // WHEN - THEN
+        assertThrows(IllegalStateException.class, () -> parallelScanner.scan(EventRecord.class, record -> { }));
+    }
+
+    private static ScanResultPage<EventRecord> page(List<EventRecord> results, Map<String, AttributeValue> lastEvaluatedKey) {
+        ScanResultPage<EventRecord> page = new ScanResultPage<>();
+        page.setResults(results);
+        page.setLastEvaluatedKey(lastEvaluatedKey);
+        return page;
+    }
+
+    private static EventRecord event(String id) {
+        EventRecord record = new EventRecord();
+        record.setEventID(id);
+        return record;
+    }
+}
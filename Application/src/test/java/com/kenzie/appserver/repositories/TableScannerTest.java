@@ -0,0 +1,64 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.kenzie.appserver.repositories.model.ScanPage;
+import com.kenzie.appserver.repositories.model.UserRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TableScannerTest {
+
+    @Test
+    void cursor_RoundTripsLastEvaluatedKey() {
+        // GIVEN
+        Map<String, AttributeValue> lastEvaluatedKey = Collections.singletonMap("id", new AttributeValue().withS("user/42"));
+
+        // WHEN
+        String cursor = TableScanner.encodeCursor(lastEvaluatedKey);
+
+        // THEN
+        assertEquals(lastEvaluatedKey, TableScanner.decodeCursor(cursor));
+        assertNull(TableScanner.encodeCursor(null));
+        assertNull(TableScanner.decodeCursor(null));
+    }
+
+    @Test
+    void decodeCursor_Garbage_ThrowsIllegalArgument() {
+        // WHEN - THEN
+        assertThrows(IllegalArgumentException.class, () -> TableScanner.decodeCursor("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> TableScanner.decodeCursor("W10"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scanPage_StartsAfterCursorAndReturnsNextOne() {
+        // GIVEN
+        DynamoDBMapper dynamoDBMapper = mock(DynamoDBMapper.class);
+        ScanResultPage<UserRecord> resultPage = new ScanResultPage<>();
+        resultPage.setResults(Collections.singletonList(new UserRecord()));
+        resultPage.setLastEvaluatedKey(Collections.singletonMap("id", new AttributeValue().withS("user2")));
+        when(dynamoDBMapper.scanPage(eq(UserRecord.class), any(DynamoDBScanExpression.class))).thenReturn(resultPage);
+        TableScanner tableScanner = new TableScanner(dynamoDBMapper);
+        String cursor = TableScanner.encodeCursor(Collections.singletonMap("id", new AttributeValue().withS("user1")));
+
+        // WHEN
+        ScanPage<UserRecord> page = tableScanner.scanPage(UserRecord.class, cursor, 25);
+
+        // THEN
+        ArgumentCaptor<DynamoDBScanExpression> scanExpression = ArgumentCaptor.forClass(DynamoDBScanExpression.class);
+        verify(dynamoDBMapper).scanPage(eq(UserRecord.class), scanExpression.capture());
+        assertEquals(25, scanExpression.getValue().getLimit());
+        assertEquals("user1", scanExpression.getValue().getExclusiveStartKey().get("id").getS());
+        assertEquals(1, page.getItems().size());
+        assertEquals("user2", TableScanner.decodeCursor(page.getNextCursor()).get("id").getS());
+    }
+}
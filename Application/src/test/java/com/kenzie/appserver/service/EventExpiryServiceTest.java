@@ -0,0 +1,170 @@
+package com.kenzie.appserver.service;
+
+import com.kenzie.appserver.cache.AttendeeCache;
+import com.kenzie.appserver.cache.CacheClient;
+import com.kenzie.appserver.cache.CacheTags;
+import com.kenzie.appserver.cache.Keyspace;
+import com.kenzie.appserver.cache.KeyspaceTtlPolicy;
+import com.kenzie.appserver.cache.NegativeResultCache;
+import com.kenzie.appserver.repositories.AttendanceShards;
+import com.kenzie.appserver.repositories.BatchWriter;
+import com.kenzie.appserver.repositories.EventExpiryIndex;
+import com.kenzie.appserver.repositories.MembershipIndex;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class EventExpiryServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 10, 12, 30);
+
+    private EventExpiryIndex eventExpiryIndex;
+    private BatchWriter batchWriter;
+    private MembershipIndex membershipIndex;
+    private AttendanceShards attendanceShards;
+    private ParallelScanner parallelScanner;
+    private OrganizationService organizationService;
+    private CacheClient cacheClient;
+    private CacheTags cacheTags;
+    private NegativeResultCache negativeResultCache;
+
+    private EventExpiryService eventExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        eventExpiryIndex = mock(EventExpiryIndex.class);
+        batchWriter = mock(BatchWriter.class);
+        membershipIndex = mock(MembershipIndex.class);
+        attendanceShards = mock(AttendanceShards.class);
+        parallelScanner = mock(ParallelScanner.class);
+        organizationService = mock(OrganizationService.class);
+        cacheClient = mock(CacheClient.class);
+        cacheTags = mock(CacheTags.class);
+        negativeResultCache = mock(NegativeResultCache.class);
+        KeyspaceTtlPolicy ttlPolicy = mock(KeyspaceTtlPolicy.class);
+        when(ttlPolicy.getTtlSeconds(Keyspace.CHECKPOINT)).thenReturn(3600);
+        when(eventExpiryIndex.findExpiringIn(anyString(), anyString(), anyInt()))
+                .thenReturn(new ScanPage<>(Collections.emptyList(), null));
+        eventExpiryService = new EventExpiryService(eventExpiryIndex, batchWriter, membershipIndex, attendanceShards,
+                parallelScanner, organizationService, cacheClient, cacheTags, negativeResultCache, ttlPolicy,
+                new SimpleMeterRegistry(), 100, 10, 24);
+    }
+
+    @Test
+    void expireDueEvents_WalksBucketsFromCheckpointAndExpiresOnlyDueEvents() {
+        // GIVEN
+        when(cacheClient.getValue(EventExpiryService.CHECKPOINT_KEY)).thenReturn(Optional.of("2024-05-10T11:00"));
+        EventRecord elapsed = event("elapsed", NOW.minusHours(25));
+        EventRecord dueThisHour = event("dueThisHour", NOW.minusHours(24).minusMinutes(10));
+        EventRecord notYetDue = event("notYetDue", NOW.minusHours(24).plusMinutes(10));
+        when(eventExpiryIndex.findExpiringIn("2024-05-10T11", null, 100))
+                .thenReturn(new ScanPage<>(Collections.singletonList(elapsed), null));
+        when(eventExpiryIndex.findExpiringIn("2024-05-10T12", null, 100))
+                .thenReturn(new ScanPage<>(Arrays.asList(dueThisHour, notYetDue), null));
+
+        // WHEN
+        int expired = eventExpiryService.expireDueEvents(NOW);
+
+        // THEN
+        assertEquals(2, expired);
+        verify(batchWriter).deleteAll(Collections.singletonList(elapsed));
+        verify(batchWriter).deleteAll(Collections.singletonList(dueThisHour));
+        verify(attendanceShards).forget("dueThisHour");
+        verify(cacheClient).setValue(EventExpiryService.CHECKPOINT_KEY, 3600, "2024-05-10T12:00");
+        verify(cacheClient).invalidateAll(Arrays.asList(EventService.eventKey("dueThisHour"), AttendeeCache.key("dueThisHour")));
+        verify(negativeResultCache).versions(Keyspace.EVENT, Collections.singletonList("dueThisHour"));
+        verify(cacheTags, times(2)).invalidate(EventService.LISTING_TAG);
+        verify(cacheTags, never()).invalidate(EventService.sponsorTag("Sponsor"));
+        verify(parallelScanner, never()).scan(any(Class.class), anyString(), anyMap(), any(Consumer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void expireDueEvents_NoCheckpoint_SweepsUnindexedEventsOnce() {
+        // GIVEN
+        when(cacheClient.getValue(EventExpiryService.CHECKPOINT_KEY)).thenReturn(Optional.empty());
+        EventRecord legacyDue = event("legacyDue", NOW.minusDays(3));
+        EventRecord legacyUpcoming = event("legacyUpcoming", NOW.plusDays(3));
+        when(parallelScanner.scan(eq(EventRecord.class), anyString(), anyMap(), any(Consumer.class))).thenAnswer(invocation -> {
+            Arrays.asList(legacyDue, legacyUpcoming).forEach((Consumer<Object>) invocation.getArguments()[3]);
+            return null;
+        });
+
+        // WHEN
+        int expired = eventExpiryService.expireDueEvents(NOW);
+        // The node keeps its checkpoint when the cache loses it
+        eventExpiryService.expireDueEvents(NOW);
+
+        // THEN
+        assertEquals(1, expired);
+        verify(batchWriter).deleteAll(Collections.singletonList(legacyDue));
+        verify(eventExpiryIndex).index(legacyUpcoming);
+        verify(parallelScanner, times(1)).scan(eq(EventRecord.class), anyString(), anyMap(), any(Consumer.class));
+    }
+
+    @Test
+    void expireDueEvents_StopsAfterBatchBudgetWithoutPassingUnfinishedBucket() {
+        // GIVEN
+        when(cacheClient.getValue(EventExpiryService.CHECKPOINT_KEY)).thenReturn(Optional.of("2024-05-09T00:00"));
+        List<EventRecord> page = new ArrayList<>();
+        page.add(event("crowded", LocalDateTime.of(2024, 5, 8, 0, 15)));
+        when(eventExpiryIndex.findExpiringIn(eq("2024-05-09T00"), any(), eq(100)))
+                .thenReturn(new ScanPage<>(page, "more"));
+
+        // WHEN
+        eventExpiryService.expireDueEvents(NOW);
+
+        // THEN
+        verify(eventExpiryIndex, times(10)).findExpiringIn(eq("2024-05-09T00"), any(), eq(100));
+        verify(cacheClient, never()).setValue(anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    void expireIfDue_EventWrittenBehindTheCheckpoint_ExpiresItNow() {
+        // GIVEN
+        EventRecord backfilled = event("backfilled", NOW.minusDays(3));
+        EventRecord upcoming = event("upcoming", NOW.plusHours(1));
+
+        // WHEN
+        boolean expired = eventExpiryService.expireIfDue(backfilled, NOW);
+        boolean kept = eventExpiryService.expireIfDue(upcoming, NOW);
+
+        // THEN
+        assertTrue(expired);
+        assertFalse(kept);
+        verify(batchWriter).deleteAll(Collections.singletonList(backfilled));
+        verify(attendanceShards).forget("backfilled");
+        verify(cacheClient).invalidateAll(Arrays.asList(EventService.eventKey("backfilled"), AttendeeCache.key("backfilled")));
+        verifyNoMoreInteractions(batchWriter);
+    }
+
+    @Test
+    void expiryBucket_IsTheHourTheEventExpiresIn() {
+        // GIVEN
+        EventRecord record = event("event1", LocalDateTime.of(2024, 5, 9, 23, 45));
+
+        // WHEN - THEN
+        assertEquals("2024-05-10T23", record.getExpiryBucket());
+        assertNull(new EventRecord().getExpiryBucket());
+    }
+
+    private static EventRecord event(String id, LocalDateTime endTime) {
+        return new EventRecord(id, id, "Location", endTime.minusHours(2).toString(), endTime.toString(),
+                new ArrayList<>(), new ArrayList<>(), "Sponsor");
+    }
+}
@@ -1,20 +1,43 @@
 package com.kenzie.appserver.service;
 
 import com.google.gson.Gson;
+import com.kenzie.appserver.cache.AttendeeCache;
 import com.kenzie.appserver.cache.CacheClient;
+import com.kenzie.appserver.cache.CacheEnvelope;
+import com.kenzie.appserver.cache.CacheFreshnessPolicy;
+import com.kenzie.appserver.cache.CacheTags;
+import com.kenzie.appserver.cache.Keyspace;
+import com.kenzie.appserver.cache.KeyspaceTtlPolicy;
+import com.kenzie.appserver.cache.NegativeResultCache;
+import com.kenzie.appserver.cache.RequestCoalescer;
+import com.kenzie.appserver.config.CacheConfig;
+import com.kenzie.appserver.repositories.AttendanceShards;
+import com.kenzie.appserver.repositories.BatchWriter;
 import com.kenzie.appserver.repositories.EventRepository;
+import com.kenzie.appserver.repositories.MembershipIndex;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.TableScanner;
 import com.kenzie.appserver.repositories.UserRepository;
+import com.kenzie.appserver.repositories.model.AttendanceRecord;
 import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.appserver.repositories.model.ScanPage;
 import com.kenzie.appserver.repositories.model.UserRecord;
 import com.kenzie.appserver.service.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.core.task.TaskExecutor;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -28,6 +51,43 @@ public class EventServiceTest {
 
     @Mock
     private CacheClient cacheClient;
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry());
+
+    @Spy
+    private CacheFreshnessPolicy freshnessPolicy = new CacheFreshnessPolicy(300, 10000, 3600);
+
+    @Mock
+    private KeyspaceTtlPolicy ttlPolicy;
+
+    @Mock
+    private CacheTags cacheTags;
+
+    @Mock
+    private AttendeeCache attendeeCache;
+
+    @Mock
+    private NegativeResultCache negativeResultCache;
+
+    @Mock
+    private TaskExecutor taskExecutor;
+    @Mock
+    private TableScanner tableScanner;
+    @Mock
+    private ParallelScanner parallelScanner;
+    @Mock
+    private BatchWriter batchWriter;
+    @Mock
+    private MembershipIndex membershipIndex;
+    @Mock
+    private AttendanceShards attendanceShards;
+    @Mock
+    private EventExpiryService eventExpiryService;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.USERS);
+
     @InjectMocks
     private EventService eventService;
 
@@ -45,6 +105,8 @@ public class EventServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
+        when(cacheTags.isCurrent(anyMap())).thenReturn(true);
+        when(attendeeCache.get(anyString())).thenReturn(Optional.of(Collections.emptySet()));
     }
 
     @Test
@@ -52,7 +114,7 @@ public class EventServiceTest {
         // GIVEN
         EventRecord mockEventRecord1 = createMockEventRecord("event1", "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), Arrays.asList("user1"), Arrays.asList("user2"), "Sponsor1");
         EventRecord mockEventRecord2 = createMockEventRecord("event2", "Event Two", "Location 2", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(3).toString(), Arrays.asList("user3"), Arrays.asList("user4"), "Sponsor2");
-        when(eventRepository.findAll()).thenReturn(Arrays.asList(mockEventRecord1, mockEventRecord2));
+        stubScan(EventRecord.class, Arrays.asList(mockEventRecord1, mockEventRecord2));
 
         // WHEN
         List<Event> events = eventService.findAllEvents();
@@ -61,6 +123,39 @@ public class EventServiceTest {
         assertNotNull(events);
         assertEquals(2, events.size());
         assertEquals(mockEventRecord1.getEventID(), events.get(0).getEventID());
+        // Attendance edges are read through the paged endpoint, not once per listed event
+        verifyZeroInteractions(membershipIndex);
+    }
+
+    @Test
+    void findEventsPage_MapsRecordsAndKeepsCursor() {
+        // GIVEN
+        EventRecord mockEventRecord = createMockEventRecord("event1", "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), Arrays.asList("user1"), new ArrayList<>(), "Sponsor1");
+        when(tableScanner.scanPage(EventRecord.class, "cursor1", 10)).thenReturn(new ScanPage<>(Collections.singletonList(mockEventRecord), "cursor2"));
+
+        // WHEN
+        ScanPage<Event> page = eventService.findEventsPage("cursor1", 10);
+
+        // THEN
+        assertEquals(1, page.getItems().size());
+        assertEquals("event1", page.getItems().get(0).getEventID());
+        assertEquals("cursor2", page.getNextCursor());
+    }
+
+    @Test
+    void findByEventId_CacheMiss_MergesAttendanceEdgesWithLegacyList() {
+        // GIVEN
+        String eventId = "event1";
+        EventRecord record = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), new ArrayList<>(Arrays.asList("user3", "user1")), new ArrayList<>(), "Sponsor1");
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.empty());
+        when(eventRepository.findById(eventId)).thenReturn(Optional.of(record));
+        when(membershipIndex.findAllAttendees(eventId)).thenReturn(Arrays.asList("user1", "user2"));
+
+        // WHEN
+        Event event = eventService.findByEventId(eventId);
+
+        // THEN
+        assertEquals(Arrays.asList("user1", "user2", "user3"), event.getPeopleAttending());
     }
 
     @Test
@@ -96,12 +191,29 @@ public class EventServiceTest {
         // GIVEN
         String eventId = "nonExistingEventId";
         when(eventRepository.findById(eventId)).thenReturn(Optional.empty());
+        when(negativeResultCache.version(Keyspace.EVENT, eventId)).thenReturn(3L);
+
+        // WHEN
+        Event event = eventService.findByEventId(eventId);
+
+        // THEN
+        assertNull(event);
+        verify(negativeResultCache).recordMissing(Keyspace.EVENT, eventId, 3L);
+    }
+
+    @Test
+    void findByEventId_KnownMissing_SkipsDynamoDB() {
+        // GIVEN
+        String eventId = "nonExistingEventId";
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.empty());
+        when(negativeResultCache.isKnownMissing(Keyspace.EVENT, eventId)).thenReturn(true);
 
         // WHEN
         Event event = eventService.findByEventId(eventId);
 
         // THEN
         assertNull(event);
+        verify(eventRepository, never()).findById(anyString());
     }
 
     @Test
@@ -118,7 +230,7 @@ public class EventServiceTest {
 
         EventRecord mockEventRecord = new EventRecord(eventId, eventName, eventLocation, startTime, endTime, peopleAttending,  peopleAttended, eventSponsor);
         String json = gson.toJson(mockEventRecord);
-        when(cacheClient.getValue(eventId)).thenReturn(Optional.of(json));
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.of(json));
         // WHEN
         Event event = eventService.findByEventId(eventId);
 
@@ -130,6 +242,172 @@ public class EventServiceTest {
     }
 
 
+    @Test
+    void findByEventIds_MixesCacheHitsAndBatchLoadedMisses() {
+        // GIVEN
+        EventRecord cachedRecord = createMockEventRecord("event1", "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), new ArrayList<>(), new ArrayList<>(), "Sponsor1");
+        EventRecord storedRecord = createMockEventRecord("event2", "Event Two", "Location 2", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(3).toString(), new ArrayList<>(), new ArrayList<>(), "Sponsor2");
+        List<String> eventIds = Arrays.asList("event1", "event2", "unknown");
+        Map<String, String> cached = new HashMap<>();
+        cached.put("event:event1", gson.toJson(cachedRecord));
+        when(cacheClient.getValues(Arrays.asList("event:event1", "event:event2", "event:unknown"))).thenReturn(cached);
+        when(attendeeCache.getAll(Collections.singletonList("event1"))).thenReturn(Collections.singletonMap("event1", Collections.emptySet()));
+        when(eventRepository.findAllById(new HashSet<>(Arrays.asList("event2", "unknown")))).thenReturn(Collections.singletonList(storedRecord));
+
+        // WHEN
+        List<Event> events = eventService.findByEventIds(eventIds);
+
+        // THEN
+        assertEquals(2, events.size());
+        assertEquals("event1", events.get(0).getEventID());
+        assertEquals("event2", events.get(1).getEventID());
+        verify(eventRepository, never()).findById(anyString());
+        ArgumentCaptor<Map> cachedValues = ArgumentCaptor.forClass(Map.class);
+        verify(cacheClient).setValuesIfVersion(cachedValues.capture(), anyMap(), anyInt());
+        assertEquals(Collections.singleton("event:event2"), cachedValues.getValue().keySet());
+        EventRecord cachedCore = gson.fromJson(CacheEnvelope.unwrap((String) cachedValues.getValue().get("event:event2")).getPayload(), EventRecord.class);
+        assertEquals("Event Two", cachedCore.getName());
+        assertNull(cachedCore.getPeopleAttending());
+        verify(attendeeCache).putAllIfVersion(eq(Collections.singletonMap("event2", storedRecord.getPeopleAttending())), anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findByEventIds_DuplicateIds_LoadsEachIdOnce() {
+        // GIVEN
+        EventRecord storedRecord = createMockEventRecord("event1", "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), new ArrayList<>(), new ArrayList<>(), "Sponsor1");
+        when(cacheClient.getValues(anyList())).thenReturn(Collections.emptyMap());
+        when(eventRepository.findAllById(any(Iterable.class))).thenReturn(Collections.singletonList(storedRecord));
+
+        // WHEN
+        List<Event> events = eventService.findByEventIds(Arrays.asList("event1", "event1"));
+
+        // THEN
+        ArgumentCaptor<Iterable> ids = ArgumentCaptor.forClass(Iterable.class);
+        verify(eventRepository).findAllById(ids.capture());
+        assertEquals(Collections.singletonList("event1"), new ArrayList<>((Collection<String>) ids.getValue()));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void findByEventId_CachedCore_TakesAttendeesFromAttendeeSet() {
+        // GIVEN
+        String eventId = "event1";
+        EventRecord core = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), null, new ArrayList<>(), "Sponsor1");
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.of(CacheEnvelope.wrap(gson.toJson(core), System.currentTimeMillis())));
+        when(attendeeCache.get(eventId)).thenReturn(Optional.of(new HashSet<>(Arrays.asList("user2", "user1"))));
+
+        // WHEN
+        Event event = eventService.findByEventId(eventId);
+
+        // THEN
+        assertEquals(Arrays.asList("user1", "user2"), event.getPeopleAttending());
+        verify(eventRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void findByEventId_AttendeeSetNotCached_ReloadsFullRecord() {
+        // GIVEN
+        String eventId = "event1";
+        EventRecord record = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), Arrays.asList("user1"), new ArrayList<>(), "Sponsor1");
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.of(CacheEnvelope.wrap(gson.toJson(record), System.currentTimeMillis())));
+        when(attendeeCache.get(eventId)).thenReturn(Optional.empty());
+        when(eventRepository.findById(eventId)).thenReturn(Optional.of(record));
+
+        // WHEN
+        Event event = eventService.findByEventId(eventId);
+
+        // THEN
+        assertEquals(Arrays.asList("user1"), event.getPeopleAttending());
+        verify(attendeeCache).putAllIfVersion(Collections.singletonMap(eventId, record.getPeopleAttending()), Collections.emptyMap());
+    }
+
+    @Test
+    void findByEventId_CacheMiss_WritesBackAtVersionReadBeforeLoading() {
+        // GIVEN
+        String eventId = "event1";
+        String key = EventService.eventKey(eventId);
+        EventRecord record = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), Arrays.asList("user1"), new ArrayList<>(), "Sponsor1");
+        when(cacheClient.getValue(key)).thenReturn(Optional.empty());
+        when(cacheClient.getVersions(Collections.singletonList(key))).thenReturn(Collections.singletonMap(key, 4L));
+        when(attendeeCache.versions(Collections.singletonList(eventId))).thenReturn(Collections.singletonMap(eventId, 2L));
+        when(eventRepository.findById(eventId)).thenReturn(Optional.of(record));
+
+        // WHEN
+        eventService.findByEventId(eventId);
+
+        // THEN
+        verify(cacheClient).setValuesIfVersion(anyMap(), eq(Collections.singletonMap(key, 4L)), anyInt());
+        verify(attendeeCache).putAllIfVersion(Collections.singletonMap(eventId, record.getPeopleAttending()), Collections.singletonMap(eventId, 2L));
+    }
+
+    @Test
+    void findByEventId_FreshCacheEntry_DoesNotRefresh() {
+        // GIVEN
+        String eventId = "event1";
+        EventRecord record = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), new ArrayList<>(), new ArrayList<>(), "Sponsor1");
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.of(CacheEnvelope.wrap(gson.toJson(record), System.currentTimeMillis())));
+
+        // WHEN
+        Event event = eventService.findByEventId(eventId);
+
+        // THEN
+        assertEquals(eventId, event.getEventID());
+        verify(taskExecutor, never()).execute(any(Runnable.class));
+        verify(eventRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void findByEventId_StaleCacheEntry_ServesCachedAndRefreshesInBackground() {
+        // GIVEN
+        String eventId = "event1";
+        EventRecord record = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), new ArrayList<>(), new ArrayList<>(), "Sponsor1");
+        long writtenAt = System.currentTimeMillis() - 600 * 1000L;
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.of(CacheEnvelope.wrap(gson.toJson(record), writtenAt)));
+        when(eventRepository.findById(eventId)).thenReturn(Optional.of(record));
+
+        // WHEN
+        Event event = eventService.findByEventId(eventId);
+
+        // THEN
+        assertEquals(eventId, event.getEventID());
+        verify(eventRepository, never()).findById(anyString());
+        ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskExecutor).execute(refresh.capture());
+        refresh.getValue().run();
+        verify(eventRepository).findById(eventId);
+        verify(cacheClient).setValuesIfVersion(anyMap(), anyMap(), anyInt());
+    }
+
+    @Test
+    void findByEventId_ExpiredCacheEntryAndDynamoDbFails_ServesStaleCopy() {
+        // GIVEN
+        String eventId = "event1";
+        EventRecord record = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), new ArrayList<>(), new ArrayList<>(), "Sponsor1");
+        long writtenAt = System.currentTimeMillis() - 11000 * 1000L;
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.of(CacheEnvelope.wrap(gson.toJson(record), writtenAt)));
+        when(eventRepository.findById(eventId)).thenThrow(new RuntimeException("Throttled"));
+
+        // WHEN
+        Event event = eventService.findByEventId(eventId);
+
+        // THEN
+        assertEquals(eventId, event.getEventID());
+    }
+
+    @Test
+    void findByEventId_ExpiredBeyondStaleBoundAndDynamoDbFails_Throws() {
+        // GIVEN
+        String eventId = "event1";
+        EventRecord record = createMockEventRecord(eventId, "Event One", "Location 1", LocalDateTime.now().toString(), LocalDateTime.now().plusHours(2).toString(), new ArrayList<>(), new ArrayList<>(), "Sponsor1");
+        long writtenAt = System.currentTimeMillis() - 14000 * 1000L;
+        when(cacheClient.getValue(EventService.eventKey(eventId))).thenReturn(Optional.of(CacheEnvelope.wrap(gson.toJson(record), writtenAt)));
+        when(eventRepository.findById(eventId)).thenThrow(new RuntimeException("Throttled"));
+
+        // WHEN - THEN
+        assertThrows(RuntimeException.class, () -> eventService.findByEventId(eventId));
+    }
+
     @Test
     void addNewEvent_Successful() {
         // GIVEN
@@ -155,7 +433,9 @@ public class EventServiceTest {
         assertEquals(mockEvent.getEventID(), savedEvent.getEventID());
         assertEquals(eventName, savedEvent.getName());
         assertEquals(eventLocation, savedEvent.getLocation());
-
+        verify(negativeResultCache).clear(Keyspace.EVENT, eventId);
+        verify(cacheTags).invalidate(EventService.LISTING_TAG);
+        verify(eventExpiryService).expireIfDue(any(EventRecord.class));
     }
 
 
@@ -173,14 +453,29 @@ public class EventServiceTest {
         UserRecord mockUserRecord = createMockUserRecord("user1", "UserOne", "password", "user1@example.com", "User", "One", "Regular", list1, list2, list3);
         when(eventRepository.findById(eventId)).thenReturn(Optional.of(mockEventRecord));
         when(userRepository.findById(anyString())).thenReturn(Optional.of(mockUserRecord));
+        // user2's edge is in a shard of the event
+        when(membershipIndex.findAllAttendanceEdges(eventId)).thenReturn(Arrays.asList(
+                new AttendanceRecord(eventId, "user1"), new AttendanceRecord(eventId + "#1", "user2")));
+        cacheManager.getCache(CacheConfig.USERS).put("user1", mockUserRecord);
+        cacheManager.getCache(CacheConfig.USERS).put("user2", new UserRecord());
 
         // WHEN
         eventService.deleteEvent(eventId);
 
         // THEN
         verify(eventRepository).deleteById(eventId);
-        verify(userRepository, atLeastOnce()).save(any(UserRecord.class));
+        verify(cacheClient).invalidate(EventService.eventKey(eventId));
+        verify(attendeeCache).invalidate(eventId);
+        verify(cacheTags).invalidate(EventService.LISTING_TAG);
+        ArgumentCaptor<List<AttendanceRecord>> edges = ArgumentCaptor.forClass((Class) List.class);
+        verify(batchWriter).write(eq(Collections.singletonList(mockUserRecord)), edges.capture());
+        assertEquals(2, edges.getValue().size());
+        assertEquals(eventId, edges.getValue().get(0).getEventId());
+        assertEquals(eventId + "#1", edges.getValue().get(1).getEventId());
+        verify(attendanceShards).forget(eventId);
         assertTrue(mockUserRecord.getEventsList().isEmpty(), "User events list should be empty after event deletion");
+        assertNull(cacheManager.getCache(CacheConfig.USERS).get("user1"));
+        assertNull(cacheManager.getCache(CacheConfig.USERS).get("user2"));
     }
 
     @Test
@@ -196,6 +491,12 @@ public class EventServiceTest {
         verify(eventRepository, never()).deleteById(anyString());
     }
 
-
+    // Feeds the records to the scan's consumer, as the segment workers would
+    @SuppressWarnings("unchecked")
+    private void stubScan(Class<?> type, List<?> records) {
+        when(parallelScanner.scan(eq(type), any(Consumer.class))).thenAnswer(invocation -> {
+            records.forEach((Consumer<Object>) invocation.getArguments()[1]);
+            return null;
+        });
+    }
 }
-
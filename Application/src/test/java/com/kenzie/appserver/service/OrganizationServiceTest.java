@@ -1,15 +1,20 @@
 package com.kenzie.appserver.service;
 
-import com.kenzie.appserver.repositories.EventRepository;
+import com.kenzie.appserver.config.CacheConfig;
+import com.kenzie.appserver.repositories.HeldEventsWriter;
 import com.kenzie.appserver.repositories.OrganizationRepository;
 import com.kenzie.appserver.repositories.model.EventRecord;
 import com.kenzie.appserver.repositories.model.OrganizationRecord;
 import com.kenzie.appserver.service.model.Organization;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 
 import java.time.LocalDateTime;
@@ -24,10 +29,14 @@ public class OrganizationServiceTest {
     private OrganizationRepository organizationRepository;
 
     @Mock
-    private EventRepository eventRepository;
+    private HeldEventsWriter heldEventsWriter;
 
     @Mock
     private OrganizationRecord mockOrganization;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.ORGANIZATIONS);
+
     @InjectMocks
     private OrganizationService organizationService;
 
@@ -124,25 +133,28 @@ public class OrganizationServiceTest {
     }
 
     @Test
-    void processExpiredEvents_AllEventsExpired_Successful() {
+    void recordHeldEvents_AddsEventsToTheirSponsors() {
         // GIVEN
         LocalDateTime now = LocalDateTime.now();
         List<EventRecord> eventRecords = Arrays.asList(
                 new EventRecord("Event1", "Event1", "Location1", now.minusDays(2).toString(), now.minusDays(1).toString(), new ArrayList<>(), new ArrayList<>(), "Organization1"),
-                new EventRecord("Event2", "Event2", "Location2", now.minusDays(2).toString(), now.minusDays(1).toString(), new ArrayList<>(), new ArrayList<>(), "Organization2")
+                new EventRecord("Event2", "Event2", "Location2", now.minusDays(2).toString(), now.minusDays(1).toString(), new ArrayList<>(), new ArrayList<>(), "Organization1"),
+                new EventRecord("Event3", "Event3", "Location3", now.minusDays(2).toString(), now.minusDays(1).toString(), new ArrayList<>(), new ArrayList<>(), "Unknown")
         );
-        when(eventRepository.findAll()).thenReturn(eventRecords);
-        when(organizationRepository.save(any())).thenReturn(null);
+        when(heldEventsWriter.recordHeld("Organization1", "Event1", "Event1")).thenReturn(true);
+        when(heldEventsWriter.recordHeld("Organization1", "Event2", "Event2")).thenReturn(true);
+        when(heldEventsWriter.recordHeld("Unknown", "Event3", "Event3")).thenReturn(false);
+        cacheManager.getCache(CacheConfig.ORGANIZATIONS).put("Organization1", new OrganizationRecord("Organization1", new ArrayList<>()));
 
         // WHEN
-        organizationService.processExpiredEvents();
+        organizationService.recordHeldEvents(eventRecords);
 
         // THEN
-        verify(eventRepository).deleteAll(any());
+        verify(heldEventsWriter).recordHeld("Organization1", "Event1", "Event1");
+        verify(heldEventsWriter).recordHeld("Organization1", "Event2", "Event2");
+        verify(heldEventsWriter).recordHeld("Unknown", "Event3", "Event3");
+        verify(organizationRepository, never()).save(any(OrganizationRecord.class));
+        assertNull(cacheManager.getCache(CacheConfig.ORGANIZATIONS).get("Organization1"));
     }
 
-
-
-
-
 }
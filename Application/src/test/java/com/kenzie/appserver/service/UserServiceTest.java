@@ -1,22 +1,34 @@
 package com.kenzie.appserver.service;
 
+import com.kenzie.appserver.cache.AttendeeCache;
+import com.kenzie.appserver.cache.Keyspace;
+import com.kenzie.appserver.cache.NegativeResultCache;
+import com.kenzie.appserver.config.CacheConfig;
 import com.kenzie.appserver.exception.EventNotFoundException;
 import com.kenzie.appserver.exception.UserNotFoundException;
-import com.kenzie.appserver.repositories.EventRepository;
+import com.kenzie.appserver.repositories.MembershipIndex;
+import com.kenzie.appserver.repositories.MembershipWriter;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.TableScanner;
 import com.kenzie.appserver.repositories.UserRepository;
-import com.kenzie.appserver.repositories.model.EventRecord;
 import com.kenzie.appserver.repositories.model.UserRecord;
 import com.kenzie.appserver.service.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -28,10 +40,28 @@ public class UserServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private EventRepository eventRepository;
+    private UserRecord mockUser;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.USERS);
 
     @Mock
-    private UserRecord mockUser;
+    private NegativeResultCache negativeResultCache;
+
+    @Mock
+    private AttendeeCache attendeeCache;
+
+    @Mock
+    private TableScanner tableScanner;
+
+    @Mock
+    private ParallelScanner parallelScanner;
+
+    @Mock
+    private MembershipWriter membershipWriter;
+
+    @Mock
+    private MembershipIndex membershipIndex;
 
     @InjectMocks
     private UserService userService;
@@ -67,17 +97,52 @@ public class UserServiceTest {
         assertEquals(mockUser.getUserID(), result.getUserID());
     }
 
+    @Test
+    void findUserById_MergesMembershipEdgesWithLegacyLists() {
+        // GIVEN
+        String userId = "userId";
+        UserRecord user = new UserRecord(userId, "password", "email", "first", "last", "Regular");
+        user.getEventsList().add("event1");
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(membershipIndex.findAllJoinedEvents(userId)).thenReturn(Arrays.asList("event1", "event2"));
+        when(membershipIndex.findAllFriends(userId)).thenReturn(Arrays.asList("friend1"));
+
+        // WHEN
+        UserRecord result = userService.findUserById(userId);
+
+        // THEN
+        assertEquals(Arrays.asList("event1", "event2"), result.getEventsList());
+        assertEquals(Arrays.asList("friend1"), result.getFriends());
+    }
+
     @Test
     void findUserById_WhenUserDoesNotExist() {
         // GIVEN
         String invalidId = "invalidId";
         when(userRepository.findById(invalidId)).thenReturn(Optional.empty());
+        when(negativeResultCache.version(Keyspace.USER, invalidId)).thenReturn(3L);
 
         // WHEN
 
 
         // THEN
         assertThrows(UserNotFoundException.class, () -> userService.findUserById(invalidId));
+        verify(negativeResultCache).recordMissing(Keyspace.USER, invalidId, 3L);
+    }
+
+    @Test
+    void findUserById_KnownMissing_SkipsDynamoDB() {
+        // GIVEN
+        String invalidId = "invalidId";
+        when(negativeResultCache.isKnownMissing(Keyspace.USER, invalidId)).thenReturn(true);
+
+        // WHEN
+        boolean result = userService.validateUser(invalidId, "password");
+
+        // THEN
+        assertFalse(result);
+        assertThrows(UserNotFoundException.class, () -> userService.findUserById(invalidId));
+        verify(userRepository, never()).findById(anyString());
     }
 
     @Test
@@ -97,6 +162,22 @@ public class UserServiceTest {
         assertFalse(invalidResult);
     }
 
+    @Test
+    void validateUser_ThenFindUserById_ReadsDynamoDbOnce() {
+        // GIVEN
+        String validId = "validId";
+        when(userRepository.findById(validId)).thenReturn(Optional.of(mockUser));
+
+        // WHEN
+        boolean valid = userService.validateUser(validId, "testPassword");
+        UserRecord result = userService.findUserById(validId);
+
+        // THEN
+        assertTrue(valid);
+        assertEquals("testUser", result.getUserID());
+        verify(userRepository, times(1)).findById(validId);
+    }
+
     @Test
     void validateUser_WhenUserDoesNotExist() {
         // GIVEN
@@ -114,7 +195,7 @@ public class UserServiceTest {
     @Test
     void getAllUsers_WhenUsersExist() {
         // GIVEN
-        when(userRepository.findAll()).thenReturn(Arrays.asList(mockUser, mockUser));
+        stubScan(UserRecord.class, Arrays.asList(mockUser, mockUser));
 
         // WHEN
         List<UserRecord> result = userService.getAllUsers();
@@ -122,12 +203,14 @@ public class UserServiceTest {
         // THEN
         assertNotNull(result);
         assertEquals(2, result.size());
+        // Membership edges are read through the paged endpoints, not once per listed user
+        verifyZeroInteractions(membershipIndex);
     }
 
     @Test
     void getAllUsers_WhenUsersDoNotExist() {
         // GIVEN
-        when(userRepository.findAll()).thenReturn(Arrays.asList());
+        stubScan(UserRecord.class, Arrays.asList());
 
         // WHEN
         List<UserRecord> result = userService.getAllUsers();
@@ -185,20 +268,28 @@ public class UserServiceTest {
         // THEN
         assertNotNull(result);
         assertEquals(userName, result.getUserName());
+        verify(negativeResultCache).clear(Keyspace.USER, userName);
     }
 
     @Test
-    void updateUser_WhenUserExists() {
+    void updateUser_WhenUserExists_KeepsTheStoredEventsAndFriends() {
         // GIVEN
-        User user = new User("f", "f", "f", "f", "f", "f");
+        // The lists as read, with the edges merged in
+        User user = new User("f", "f", "f", Arrays.asList("legacyEvent", "edgeEvent"), "f", "f", "f",
+                new ArrayList<>(), "f", Arrays.asList("legacyFriend", "edgeFriend"));
+        UserRecord stored = new UserRecord(user.getUserId(), "f", "f", new ArrayList<>(Collections.singletonList("legacyEvent")),
+                "f", "f", "f", new ArrayList<>(), "f", new ArrayList<>(Collections.singletonList("legacyFriend")));
+        when(userRepository.findById(user.getUserId())).thenReturn(Optional.of(stored));
         when(userRepository.save(any(UserRecord.class))).thenReturn(mockUser);
-        when(userRepository.existsById(user.getUserId())).thenReturn(true);
 
         // WHEN
         userService.updateUser(user);
 
         // THEN
-        verify(userRepository).save(any(UserRecord.class));
+        ArgumentCaptor<UserRecord> saved = ArgumentCaptor.forClass(UserRecord.class);
+        verify(userRepository).save(saved.capture());
+        assertEquals(Collections.singletonList("legacyEvent"), saved.getValue().getEventsList());
+        assertEquals(Collections.singletonList("legacyFriend"), saved.getValue().getFriends());
     }
 
 
@@ -206,10 +297,13 @@ public class UserServiceTest {
     void updateUser_UserDoesNotExist() {
         // GIVEN
         User nonExistingUser = new User("f", "f", "f", "f", "f", "f");
-        when(userRepository.existsById(nonExistingUser.getUserId())).thenReturn(false);
+        when(userRepository.findById(nonExistingUser.getUserId())).thenReturn(Optional.empty());
 
-        // WHEN & THEN
+        // WHEN
         userService.updateUser(nonExistingUser);
+
+        // THEN
+        verify(userRepository, never()).save(any(UserRecord.class));
     }
 
 
@@ -279,25 +373,37 @@ public class UserServiceTest {
         // GIVEN
         String userId = "userId";
         String eventId = "eventId";
-        EventRecord eventRecord = new EventRecord();
-        eventRecord.setPeopleAttending(new ArrayList<>());
-        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
-        when(eventRepository.findById(eventId)).thenReturn(Optional.of(eventRecord));
+        when(membershipWriter.addAttendee(userId, eventId)).thenReturn(MembershipWriter.LinkOutcome.LINKED);
+
+        // WHEN
+        userService.addEventToList(userId, eventId);
+
+        // THEN
+        verify(membershipWriter).addAttendee(userId, eventId);
+        verify(userRepository, never()).save(any(UserRecord.class));
+        verify(attendeeCache).add(eventId, userId);
+    }
+
+    @Test
+    void addEventToList_AlreadyJoined_LeavesCachesAlone() {
+        // GIVEN
+        String userId = "userId";
+        String eventId = "eventId";
+        when(membershipWriter.addAttendee(userId, eventId)).thenReturn(MembershipWriter.LinkOutcome.ALREADY_LINKED);
 
         // WHEN
         userService.addEventToList(userId, eventId);
 
         // THEN
-        verify(userRepository).save(mockUser);
-        assertTrue(mockUser.getEventsList().contains(eventId));
+        verify(attendeeCache, never()).add(anyString(), anyString());
     }
+
     @Test
     void addEventToList_UserNotFound() {
         // GIVEN
         String nonExistingUserId = "nonUserId";
         String nonExistingEventId = "nonEventId";
-        when(userRepository.findById(nonExistingUserId)).thenReturn(Optional.empty());
-        when(eventRepository.findById(nonExistingEventId)).thenReturn(Optional.empty());
+        when(membershipWriter.addAttendee(nonExistingUserId, nonExistingEventId)).thenReturn(MembershipWriter.LinkOutcome.FIRST_MISSING);
 
         // WHEN & THEN
         assertThrows(UserNotFoundException.class, () -> userService.addEventToList(nonExistingUserId, nonExistingEventId));
@@ -306,13 +412,12 @@ public class UserServiceTest {
     @Test
     void addEventToList_EventNotFound() {
         // GIVEN
-        String nonExistingUserId = "nonUserId";
+        String userId = "userId";
         String nonExistingEventId = "nonEventId";
-        when(userRepository.findById(nonExistingUserId)).thenReturn(Optional.of(new UserRecord()));
-        when(eventRepository.findById(nonExistingEventId)).thenReturn(Optional.empty());
+        when(membershipWriter.addAttendee(userId, nonExistingEventId)).thenReturn(MembershipWriter.LinkOutcome.SECOND_MISSING);
 
         // WHEN & THEN
-        assertThrows(EventNotFoundException.class, () -> userService.addEventToList(nonExistingUserId, nonExistingEventId));
+        assertThrows(EventNotFoundException.class, () -> userService.addEventToList(userId, nonExistingEventId));
     }
 
     @Test
@@ -321,22 +426,18 @@ public class UserServiceTest {
         String userId = "userId";
         String friendId = "friendId";
         UserRecord user = new UserRecord();
-        user.setUserID("l");
+        user.setUserID(userId);
         user.setFriends(new ArrayList<>());
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        UserRecord friendUser = new UserRecord();
-        friendUser.setUserID("k");
-        friendUser.setFriends(new ArrayList<>());
-        when(userRepository.findById(friendId)).thenReturn(Optional.of(friendUser));
+        cacheManager.getCache(CacheConfig.USERS).put(userId, user);
+        when(membershipWriter.addFriendship(userId, friendId)).thenReturn(MembershipWriter.LinkOutcome.LINKED);
 
         // WHEN
         userService.addFriend(userId, friendId);
 
         // THEN
-        verify(userRepository).save(user);
-        verify(userRepository).save(friendUser);
-        assertTrue(user.getFriends().contains(friendId));
-        assertTrue(friendUser.getFriends().contains(userId));
+        verify(membershipWriter).addFriendship(userId, friendId);
+        verify(userRepository, never()).save(any(UserRecord.class));
+        assertNull(cacheManager.getCache(CacheConfig.USERS).get(userId), "Cached user should be evicted");
     }
 
     @Test
@@ -344,22 +445,13 @@ public class UserServiceTest {
         // GIVEN
         String userId = "userId";
         String friendId = "friendId";
-        UserRecord user = new UserRecord();
-        user.setUserID("l");
-        user.setFriends(new ArrayList<>());
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        UserRecord friendUser = new UserRecord();
-        friendUser.setUserID("k");
-        friendUser.setFriends(new ArrayList<>());
-        user.getFriends().add(friendId);
-        when(userRepository.findById(friendId)).thenReturn(Optional.of(friendUser));
+        when(membershipWriter.addFriendship(userId, friendId)).thenReturn(MembershipWriter.LinkOutcome.ALREADY_LINKED);
 
         // WHEN
         userService.addFriend(userId, friendId);
 
         // THEN
-        verify(userRepository, times(0)).save(user);
-        verify(userRepository, times(0)).save(friendUser);
+        verify(userRepository, never()).save(any(UserRecord.class));
     }
 
 
@@ -368,8 +460,7 @@ public class UserServiceTest {
         // GIVEN
         String nonExistingUserId = "nonUserId";
         String nonExistingFriendId = "nonFriendId";
-        when(userRepository.findById(nonExistingUserId)).thenReturn(Optional.empty());
-        when(userRepository.findById(nonExistingFriendId)).thenReturn(Optional.empty());
+        when(membershipWriter.addFriendship(nonExistingUserId, nonExistingFriendId)).thenReturn(MembershipWriter.LinkOutcome.FIRST_MISSING);
 
         // WHEN & THEN
         assertThrows(UserNotFoundException.class, () -> userService.addFriend(nonExistingUserId, nonExistingFriendId));
@@ -400,6 +491,12 @@ public class UserServiceTest {
         assertThrows(UserNotFoundException.class, () -> userService.viewFriendsEvents(nonExistingUserId));
     }
 
-
+    // Feeds the records to the scan's consumer, as the segment workers would
+    @SuppressWarnings("unchecked")
+    private void stubScan(Class<?> type, List<?> records) {
+        when(parallelScanner.scan(eq(type), any(Consumer.class))).thenAnswer(invocation -> {
+            records.forEach((Consumer<Object>) invocation.getArguments()[1]);
+            return null;
+        });
+    }
 }
-
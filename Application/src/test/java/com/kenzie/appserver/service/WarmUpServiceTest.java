@@ -0,0 +1,101 @@
+package com.kenzie.appserver.service;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.kenzie.appserver.repositories.ParallelScanner;
+import com.kenzie.appserver.repositories.model.EventRecord;
+import com.kenzie.capstone.service.client.LambdaServiceClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class WarmUpServiceTest {
+
+    private AmazonDynamoDB amazonDynamoDB;
+    private JedisPool jedisPool;
+    private LambdaServiceClient lambdaServiceClient;
+    private ParallelScanner parallelScanner;
+    private EventService eventService;
+    private SimpleMeterRegistry meterRegistry;
+
+    private WarmUpService warmUpService;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = mock(AmazonDynamoDB.class);
+        jedisPool = mock(JedisPool.class);
+        lambdaServiceClient = mock(LambdaServiceClient.class);
+        parallelScanner = mock(ParallelScanner.class);
+        eventService = mock(EventService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(jedisPool.getResource()).thenReturn(mock(Jedis.class));
+        warmUpService = new WarmUpService(amazonDynamoDB, jedisPool, lambdaServiceClient, parallelScanner,
+                eventService, meterRegistry, 8, 48, 2, 2);
+    }
+
+    @Test
+    void findUpcomingEvents_KeepsSoonestEventsInsideWindow() {
+        // GIVEN
+        LocalDateTime now = LocalDateTime.now();
+        EventRecord past = event("past", now.minusHours(1));
+        EventRecord later = event("later", now.plusHours(10));
+        EventRecord soon = event("soon", now.plusHours(1));
+        EventRecord latest = event("latest", now.plusHours(20));
+        EventRecord outsideWindow = event("outside", now.plusDays(5));
+        stubScan(EventRecord.class, Arrays.asList(past, later, soon, latest, outsideWindow));
+
+        // WHEN
+        List<EventRecord> upcoming = warmUpService.findUpcomingEvents(now);
+
+        // THEN
+        assertEquals(Arrays.asList(soon, later), upcoming);
+    }
+
+    @Test
+    void warmUp_FailingStep_DoesNotStopLaterSteps() {
+        // GIVEN
+        when(amazonDynamoDB.describeTable(anyString())).thenThrow(new RuntimeException("unreachable"));
+        stubScan(EventRecord.class, Arrays.asList(event("soon", LocalDateTime.now().plusHours(1))));
+        List<EventRecord> preloaded = new ArrayList<>();
+        doAnswer(invocation -> {
+            preloaded.addAll((Collection<EventRecord>) invocation.getArguments()[0]);
+            return null;
+        }).when(eventService).preloadRecords(anyCollection());
+
+        // WHEN
+        warmUpService.warmUp();
+
+        // THEN
+        verify(jedisPool).addObjects(8);
+        verify(lambdaServiceClient).resolveEndpoint();
+        assertEquals(1, preloaded.size());
+        assertEquals(1, meterRegistry.timer("app.warmup.step", "step", "dynamodb", "outcome", "failure").count());
+        assertEquals(1, meterRegistry.timer("app.warmup.step", "step", "events", "outcome", "success").count());
+    }
+
+    private static EventRecord event(String id, LocalDateTime start) {
+        return new EventRecord(id, id, "Location", start.toString(), start.plusHours(2).toString(),
+                new ArrayList<>(), new ArrayList<>(), "Sponsor");
+    }
+
+    // Feeds the records to the scan's consumer, as the segment workers would
+    @SuppressWarnings("unchecked")
+    private void stubScan(Class<?> type, List<?> records) {
+        when(parallelScanner.scan(eq(type), any(Consumer.class))).thenAnswer(invocation -> {
+            records.forEach((Consumer<Object>) invocation.getArguments()[1]);
+            return null;
+        });
+    }
+}
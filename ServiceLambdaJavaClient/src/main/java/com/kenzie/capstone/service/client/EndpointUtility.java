@@ -19,6 +19,9 @@ import static com.kenzie.capstone.service.client.EnvironmentVariableUtility.getE
 public class EndpointUtility {
     private String apiEndpoint;
 
+    // Shared so repeated calls reuse pooled connections instead of a fresh TLS handshake each time
+    private static final HttpClient client = HttpClient.newHttpClient();
+
     //----------------------------------------------------------------------------------------------
     //do not modify any of the inbetween code unless explicitly told to do so
     //VVVVVV
@@ -78,12 +81,14 @@ public class EndpointUtility {
 
     //The code below can be modified as needed to modify how it handles status codes, etc
 
+    public String getApiEndpoint() {
+        return apiEndpoint;
+    }
+
 
     public String postEndpoint(String endpoint, String data) {
-        String api = getApiEndpint();
-        String url = api + endpoint;
+        String url = apiEndpoint + endpoint;
 
-        HttpClient client = HttpClient.newHttpClient();
         URI uri = URI.create(url);
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(uri)
@@ -106,10 +111,8 @@ public class EndpointUtility {
     }
 
     public String getEndpoint(String endpoint) {
-        String api = getApiEndpint();
-        String url = api + endpoint;
+        String url = apiEndpoint + endpoint;
 
-        HttpClient client = HttpClient.newHttpClient();
         URI uri = URI.create(url);
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(uri)
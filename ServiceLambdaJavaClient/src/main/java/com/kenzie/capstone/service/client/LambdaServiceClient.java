@@ -12,13 +12,38 @@ public class LambdaServiceClient {
 
     private ObjectMapper mapper;
 
+    // Resolved on first use; looking the API up in API Gateway on every call is slow
+    private volatile EndpointUtility endpointUtility;
+
     public LambdaServiceClient() {
         this.mapper = new ObjectMapper();
     }
 
+    /**
+     * Looks up the Lambda API endpoint now, if it has not been resolved yet.
+     *
+     * @return the base URL of the Lambda API
+     */
+    public String resolveEndpoint() {
+        return endpointUtility().getApiEndpoint();
+    }
+
+    private EndpointUtility endpointUtility() {
+        EndpointUtility resolved = endpointUtility;
+        if (resolved == null) {
+            synchronized (this) {
+                resolved = endpointUtility;
+                if (resolved == null) {
+                    resolved = new EndpointUtility();
+                    endpointUtility = resolved;
+                }
+            }
+        }
+        return resolved;
+    }
+
     public NotificationData getNotificationData(String id) {
-        EndpointUtility endpointUtility = new EndpointUtility();
-        String response = endpointUtility.getEndpoint(GET_NOTIFICATION_ENDPOINT.replace("{id}", id));
+        String response = endpointUtility().getEndpoint(GET_NOTIFICATION_ENDPOINT.replace("{id}", id));
         NotificationData notificationData;
         try {
             notificationData = mapper.readValue(response, NotificationData.class);
@@ -29,8 +54,7 @@ public class LambdaServiceClient {
     }
 
     public NotificationData setNotificationData(String data) {
-        EndpointUtility endpointUtility = new EndpointUtility();
-        String response = endpointUtility.postEndpoint(SET_NOTIFICATION_ENDPOINT, data);
+        String response = endpointUtility().postEndpoint(SET_NOTIFICATION_ENDPOINT, data);
         NotificationData notificationData;
         try {
             notificationData = mapper.readValue(response, NotificationData.class);